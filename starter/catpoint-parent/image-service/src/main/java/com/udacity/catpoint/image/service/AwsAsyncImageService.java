@@ -0,0 +1,340 @@
+package com.udacity.catpoint.image.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
+import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
+import software.amazon.awssdk.core.SdkBytes;
+import software.amazon.awssdk.core.exception.ApiCallTimeoutException;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.rekognition.RekognitionAsyncClient;
+import software.amazon.awssdk.services.rekognition.RekognitionAsyncClientBuilder;
+import software.amazon.awssdk.services.rekognition.model.DetectLabelsRequest;
+import software.amazon.awssdk.services.rekognition.model.DetectLabelsResponse;
+import software.amazon.awssdk.services.rekognition.model.Image;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.time.Duration;
+import java.util.Properties;
+import java.util.Queue;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Image Recognition Service backed by the non-blocking RekognitionAsyncClient. Unlike AwsImageService
+ * it never parks a thread while a request is outstanding, and it caps the number of requests in
+ * flight: further requests wait in a bounded queue and are sent as earlier ones complete, and
+ * requests that arrive while the queue is full fail fast with a RejectedExecutionException.
+ *
+ * The timeout is enforced by the SDK through the request's apiCallTimeout, which aborts the HTTP
+ * call itself. An in-flight slot is only freed once the SDK reports the call finished, so a request
+ * that timed out can never leave more than maxInFlight calls running against the endpoint.
+ *
+ * Reads the same config.properties keys as AwsImageService, plus these optional ones:
+ *      aws.endpoint=[URI to send requests to instead of AWS, for example a local stand-in]
+ *      aws.maxInFlight=[maximum concurrent requests. Default 8]
+ *      aws.maxQueued=[maximum requests waiting to be sent. Default 256]
+ *      aws.timeoutMillis=[time allowed for a single request. Default 10000]
+ */
+public class AwsAsyncImageService implements ImageService, AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(AwsAsyncImageService.class);
+
+    public static final int DEFAULT_MAX_IN_FLIGHT = 8;
+    public static final int DEFAULT_MAX_QUEUED = 256;
+    public static final Duration DEFAULT_TIMEOUT = Duration.ofSeconds(10);
+
+    //number of most recent requests latency percentiles are computed over
+    private static final int LATENCY_WINDOW = 1024;
+
+    private final RekognitionAsyncClient rekognitionClient;
+    private final ImagePreprocessor preprocessor;
+    private final float minConfidence;
+    private final int maxInFlight;
+    private final int maxQueued;
+    private final Duration timeout;
+
+    private final Semaphore permits;
+    private final Queue<PendingRequest> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger queued = new AtomicInteger();
+
+    private final LongAccumulator peakQueued = new LongAccumulator(Math::max, 0);
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder timedOut = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder queueWaitNanos = new LongAdder();
+    private final LongAdder latencyNanos = new LongAdder();
+    private final LatencyWindow recentLatencies = new LatencyWindow(LATENCY_WINDOW);
+
+    public AwsAsyncImageService() {
+        this(loadProperties());
+    }
+
+    private AwsAsyncImageService(Properties props) {
+        this(buildClient(props),
+                new ImagePreprocessor(
+                        Integer.parseInt(props.getProperty("aws.image.maxEdge", String.valueOf(ImagePreprocessor.DEFAULT_MAX_EDGE))),
+                        Float.parseFloat(props.getProperty("aws.image.jpegQuality", String.valueOf(ImagePreprocessor.DEFAULT_JPEG_QUALITY)))),
+                Float.parseFloat(props.getProperty("aws.minConfidence", String.valueOf(AwsImageService.DEFAULT_MIN_CONFIDENCE))),
+                Integer.parseInt(props.getProperty("aws.maxInFlight", String.valueOf(DEFAULT_MAX_IN_FLIGHT))),
+                Integer.parseInt(props.getProperty("aws.maxQueued", String.valueOf(DEFAULT_MAX_QUEUED))),
+                Duration.ofMillis(Long.parseLong(props.getProperty("aws.timeoutMillis", String.valueOf(DEFAULT_TIMEOUT.toMillis())))));
+    }
+
+    /**
+     * @param rekognitionClient Client to send requests with; closed when this service is closed
+     * @param preprocessor Scales and encodes frames before upload
+     * @param minConfidence Labels below this confidence are not returned
+     * @param maxInFlight Maximum number of requests outstanding at once
+     * @param maxQueued Maximum number of requests waiting for one of those slots
+     * @param timeout Time allowed for a single request once it has been sent
+     */
+    public AwsAsyncImageService(RekognitionAsyncClient rekognitionClient, ImagePreprocessor preprocessor, float minConfidence,
+                                int maxInFlight, int maxQueued, Duration timeout) {
+        this.rekognitionClient = rekognitionClient;
+        this.preprocessor = preprocessor;
+        this.minConfidence = minConfidence;
+        this.maxInFlight = maxInFlight;
+        this.maxQueued = maxQueued;
+        this.timeout = timeout;
+        this.permits = new Semaphore(maxInFlight);
+    }
+
+    /**
+     * Creates a service that talks to the given endpoint, such as a local stand-in server, with
+     * placeholder credentials.
+     */
+    public static AwsAsyncImageService forEndpoint(URI endpoint, int maxInFlight, int maxQueued, Duration timeout) {
+        RekognitionAsyncClient client = RekognitionAsyncClient.builder()
+                .credentialsProvider(StaticCredentialsProvider.create(AwsBasicCredentials.create("local", "local")))
+                .region(Region.US_EAST_1)
+                .endpointOverride(endpoint)
+                .build();
+        return new AwsAsyncImageService(client, new ImagePreprocessor(), AwsImageService.DEFAULT_MIN_CONFIDENCE, maxInFlight, maxQueued, timeout);
+    }
+
+    /**
+     * Returns the labels found in the image, waiting for the asynchronous request.
+     */
+    @Override
+    public ImageClassification classify(BufferedImage image) {
+        try {
+            return classifyAsync(image, Runnable::run).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Encodes the image on the given executor, then sends it as soon as an in-flight slot is free.
+     * The response is handled on the client's completion threads.
+     */
+    @Override
+    public CompletableFuture<ImageClassification> classifyAsync(BufferedImage image, Executor executor) {
+        return CompletableFuture.supplyAsync(() -> buildRequest(image), executor)
+                .thenCompose(this::submit)
+                .thenApply(AwsImageService::toClassification);
+    }
+
+    public int getMaxInFlight() {
+        return maxInFlight;
+    }
+
+    public int getInFlightCount() {
+        return maxInFlight - permits.availablePermits();
+    }
+
+    public int getQueuedCount() {
+        return queued.get();
+    }
+
+    /**
+     * Largest number of requests that were waiting for a slot at the same time.
+     */
+    public long getPeakQueuedCount() {
+        return peakQueued.get();
+    }
+
+    public long getCompletedCount() {
+        return completed.sum();
+    }
+
+    /**
+     * Number of requests that failed, including those that timed out.
+     */
+    public long getFailedCount() {
+        return failed.sum();
+    }
+
+    public long getTimedOutCount() {
+        return timedOut.sum();
+    }
+
+    /**
+     * Number of requests turned away because the queue was full.
+     */
+    public long getRejectedCount() {
+        return rejected.sum();
+    }
+
+    /**
+     * Average time requests spent waiting for an in-flight slot.
+     */
+    public double getAverageQueueWaitMillis() {
+        long count = completed.sum() + failed.sum();
+        return count == 0 ? 0 : queueWaitNanos.sum() / 1e6 / count;
+    }
+
+    /**
+     * Average time from sending a request to its response, excluding the time spent queued.
+     */
+    public double getAverageLatencyMillis() {
+        long count = completed.sum() + failed.sum();
+        return count == 0 ? 0 : latencyNanos.sum() / 1e6 / count;
+    }
+
+    /**
+     * 95th percentile of the time from sending a request to its response, over the last
+     * 1024 requests.
+     */
+    public double getP95LatencyMillis() {
+        return recentLatencies.percentileMillis(95);
+    }
+
+    /**
+     * 99th percentile of the time from sending a request to its response, over the last
+     * 1024 requests.
+     */
+    public double getP99LatencyMillis() {
+        return recentLatencies.percentileMillis(99);
+    }
+
+    @Override
+    public void close() {
+        PendingRequest pending;
+        while ((pending = queue.poll()) != null) {
+            queued.decrementAndGet();
+            pending.result.completeExceptionally(new CancellationException("Image service closed"));
+        }
+        rekognitionClient.close();
+    }
+
+    private DetectLabelsRequest buildRequest(BufferedImage image) {
+        try {
+            //the encoded buffer goes back to the pool afterwards, fromByteBuffer copies it
+            Image awsImage = Image.builder().bytes(preprocessor.encodeJpeg(image, SdkBytes::fromByteBuffer)).build();
+            return DetectLabelsRequest.builder()
+                    .image(awsImage)
+                    .minConfidence(minConfidence)
+                    .overrideConfiguration(o -> o.apiCallTimeout(timeout))
+                    .build();
+        } catch (IOException ioe) {
+            throw new UncheckedIOException("Error building image byte array", ioe);
+        }
+    }
+
+    private CompletableFuture<DetectLabelsResponse> submit(DetectLabelsRequest request) {
+        PendingRequest pending = new PendingRequest(request, System.nanoTime());
+        int depth = queued.incrementAndGet();
+        if (depth > maxQueued) {
+            queued.decrementAndGet();
+            rejected.increment();
+            return CompletableFuture.failedFuture(new RejectedExecutionException(
+                    "Too many pending image requests: " + maxQueued));
+        }
+        peakQueued.accumulate(depth);
+        queue.add(pending);
+        dispatch();
+        return pending.result;
+    }
+
+    /**
+     * Sends queued requests while slots are free. Called after every enqueue and every completion,
+     * so a request is never left waiting while a slot is free.
+     */
+    private void dispatch() {
+        while (!queue.isEmpty() && permits.tryAcquire()) {
+            PendingRequest pending = queue.poll();
+            if (pending == null) {
+                permits.release();
+                continue;
+            }
+            queued.decrementAndGet();
+            send(pending);
+        }
+    }
+
+    private void send(PendingRequest pending) {
+        long sentAt = System.nanoTime();
+        queueWaitNanos.add(sentAt - pending.enqueuedAt);
+        CompletableFuture<DetectLabelsResponse> call;
+        try {
+            call = rekognitionClient.detectLabels(pending.request);
+        } catch (RuntimeException e) {
+            call = CompletableFuture.failedFuture(e);
+        }
+        //the SDK completes the call once the apiCallTimeout has aborted it, only then is the slot free
+        call.whenComplete((response, e) -> {
+            long latency = System.nanoTime() - sentAt;
+            latencyNanos.add(latency);
+            recentLatencies.record(latency);
+            permits.release();
+            dispatch();
+            if (e == null) {
+                completed.increment();
+                pending.result.complete(response);
+            } else {
+                failed.increment();
+                Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+                if (cause instanceof ApiCallTimeoutException) {
+                    timedOut.increment();
+                }
+                log.warn("Rekognition request failed", e);
+                pending.result.completeExceptionally(e);
+            }
+        });
+    }
+
+    private static Properties loadProperties() {
+        Properties props = new Properties();
+        try (InputStream is = AwsAsyncImageService.class.getClassLoader().getResourceAsStream("config.properties")) {
+            props.load(is);
+        } catch (IOException ioe) {
+            throw new UncheckedIOException("Unable to initialize AWS Rekognition, no properties file found", ioe);
+        }
+        return props;
+    }
+
+    private static RekognitionAsyncClient buildClient(Properties props) {
+        RekognitionAsyncClientBuilder builder = RekognitionAsyncClient.builder()
+                .credentialsProvider(StaticCredentialsProvider.create(
+                        AwsBasicCredentials.create(props.getProperty("aws.id"), props.getProperty("aws.secret"))))
+                .region(Region.of(props.getProperty("aws.region")));
+        String endpoint = props.getProperty("aws.endpoint");
+        if (endpoint != null && !endpoint.isBlank()) {
+            builder.endpointOverride(URI.create(endpoint));
+        }
+        return builder.build();
+    }
+
+    private static final class PendingRequest {
+        private final DetectLabelsRequest request;
+        private final long enqueuedAt;
+        private final CompletableFuture<DetectLabelsResponse> result = new CompletableFuture<>();
+
+        private PendingRequest(DetectLabelsRequest request, long enqueuedAt) {
+            this.request = request;
+            this.enqueuedAt = enqueuedAt;
+        }
+    }
+}
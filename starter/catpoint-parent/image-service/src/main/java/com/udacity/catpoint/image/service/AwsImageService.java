@@ -12,9 +12,7 @@ import software.amazon.awssdk.services.rekognition.model.DetectLabelsRequest;
 import software.amazon.awssdk.services.rekognition.model.DetectLabelsResponse;
 import software.amazon.awssdk.services.rekognition.model.Image;
 
-import javax.imageio.ImageIO;
 import java.awt.image.BufferedImage;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.Properties;
@@ -32,6 +30,10 @@ import java.util.stream.Collectors;
  *      aws.id=[your access key id]
  *      aws.secret=[your Secret access key]
  *      aws.region=[an aws region of choice. For example: us-east-2]
+ * Optionally, frames can be scaled down and compressed before upload:
+ *      aws.image.maxEdge=[longest edge in pixels, 0 keeps the original size. Default 1280]
+ *      aws.image.jpegQuality=[JPEG quality between 0 and 1. Default 0.85]
+ * Labels below aws.minConfidence (default 10) are not returned; callers apply their own, higher thresholds.
  */
 public class AwsImageService implements ImageService{
 
@@ -40,12 +42,28 @@ public class AwsImageService implements ImageService{
     //aws recommendation is to maintain only a single instance of client objects
     private static RekognitionClient rekognitionClient;
 
+    public static final float DEFAULT_MIN_CONFIDENCE = 10.0f;
+
+    private final ImagePreprocessor preprocessor;
+    private final float minConfidence;
+
     public AwsImageService() {
         Properties props = new Properties();
+        boolean configured;
         try (InputStream is = getClass().getClassLoader().getResourceAsStream("config.properties")) {
             props.load(is);
+            configured = true;
         } catch (IOException ioe ) {
             log.error("Unable to initialize AWS Rekognition, no properties file found", ioe);
+            configured = false;
+        }
+
+        //settings missing from the file, or the whole file, fall back to the defaults
+        preprocessor = new ImagePreprocessor(
+                Integer.parseInt(props.getProperty("aws.image.maxEdge", String.valueOf(ImagePreprocessor.DEFAULT_MAX_EDGE))),
+                Float.parseFloat(props.getProperty("aws.image.jpegQuality", String.valueOf(ImagePreprocessor.DEFAULT_JPEG_QUALITY))));
+        minConfidence = Float.parseFloat(props.getProperty("aws.minConfidence", String.valueOf(DEFAULT_MIN_CONFIDENCE)));
+        if (!configured) {
             return;
         }
 
@@ -61,25 +79,33 @@ public class AwsImageService implements ImageService{
     }
 
     /**
-     * Returns true if the provided image contains a cat.
+     * Returns the labels Rekognition finds in the image with at least the configured minimum confidence.
      * @param image Image to scan
-     * @param confidenceThreshhold Minimum threshhold to consider for cat. For example, 90.0f would require 90% confidence minimum
-     * @return boolean
+     * @return Every label with its confidence, or no labels if the image could not be encoded
      */
     @Override
-    public boolean imageContainsCat(BufferedImage image, float confidenceThreshhold) {
+    public ImageClassification classify(BufferedImage image) {
         Image awsImage = null;
-        try (ByteArrayOutputStream os = new ByteArrayOutputStream()) {
-            ImageIO.write(image, "jpg", os);
-            awsImage = Image.builder().bytes(SdkBytes.fromByteArray(os.toByteArray())).build();
+        try {
+            //the encoded buffer goes back to the pool afterwards, fromByteBuffer copies it
+            awsImage = Image.builder().bytes(preprocessor.encodeJpeg(image, SdkBytes::fromByteBuffer)).build();
         } catch (IOException ioe) {
             log.error("Error building image byte array", ioe);
-            return false;
+            return ImageClassification.EMPTY;
         }
-        DetectLabelsRequest detectLabelsRequest = DetectLabelsRequest.builder().image(awsImage).minConfidence(confidenceThreshhold).build();
+        DetectLabelsRequest detectLabelsRequest = DetectLabelsRequest.builder().image(awsImage).minConfidence(minConfidence).build();
         DetectLabelsResponse response = rekognitionClient.detectLabels(detectLabelsRequest);
         logLabelsForFun(response);
-        return response.labels().stream().anyMatch(l -> l.name().toLowerCase().contains("cat"));
+        return toClassification(response);
+    }
+
+    /**
+     * Converts Rekognition's labels, which AwsAsyncImageService shares.
+     */
+    static ImageClassification toClassification(DetectLabelsResponse response) {
+        return new ImageClassification(response.labels().stream()
+                .map(label -> new ImageLabel(label.name(), label.confidence()))
+                .toList());
     }
 
     private void logLabelsForFun(DetectLabelsResponse response) {
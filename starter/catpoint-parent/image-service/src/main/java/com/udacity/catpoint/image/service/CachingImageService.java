@@ -0,0 +1,210 @@
+package com.udacity.catpoint.image.service;
+
+import java.awt.image.BufferedImage;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * ImageService decorator that remembers recent classifications by perceptual hash. A frame whose
+ * hash is within a small Hamming distance of a cached frame gets the cached classification without
+ * calling the wrapped service, which saves the JPEG encode and network round trip for the
+ * near-identical frames security cameras produce. Classifications carry every label's confidence,
+ * so one entry serves callers with any threshold. The cache holds a bounded number of entries,
+ * evicts the least recently used one when full and expires entries after a fixed time to live.
+ *
+ * Asynchronous misses for the same hash are collapsed: while one classification of a hash is in
+ * flight, further requests for that hash wait for it rather than calling the wrapped service again.
+ */
+public class CachingImageService implements ImageService {
+
+    public static final int DEFAULT_MAX_ENTRIES = 256;
+    public static final Duration DEFAULT_TIME_TO_LIVE = Duration.ofSeconds(30);
+    public static final int DEFAULT_MAX_DISTANCE = 4;
+
+    private final ImageService delegate;
+    private final int maxEntries;
+    private final long timeToLiveNanos;
+    private final int maxDistance;
+
+    private final LinkedHashMap<Long, Entry> cache;
+    private final Map<Long, CompletableFuture<ImageClassification>> inFlight = new HashMap<>();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder sharedMisses = new LongAdder();
+
+    public CachingImageService(ImageService delegate) {
+        this(delegate, DEFAULT_MAX_ENTRIES, DEFAULT_TIME_TO_LIVE, DEFAULT_MAX_DISTANCE);
+    }
+
+    /**
+     * @param delegate Service that classifies frames missing from the cache
+     * @param maxEntries Maximum number of cached classifications
+     * @param timeToLive How long a classification stays valid
+     * @param maxDistance Maximum number of differing hash bits for two frames to count as the same
+     */
+    public CachingImageService(ImageService delegate, int maxEntries, Duration timeToLive, int maxDistance) {
+        this.delegate = delegate;
+        this.maxEntries = maxEntries;
+        this.timeToLiveNanos = timeToLive.toNanos();
+        this.maxDistance = maxDistance;
+        this.cache = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Entry> eldest) {
+                if (size() > CachingImageService.this.maxEntries) {
+                    evictions.increment();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    @Override
+    public ImageClassification classify(BufferedImage image) {
+        long hash = PerceptualHash.differenceHash(image);
+        ImageClassification cached = lookup(hash);
+        if (cached != null) {
+            return cached;
+        }
+        ImageClassification classification = delegate.classify(image);
+        store(hash, classification);
+        return classification;
+    }
+
+    /**
+     * Answers from the cache, joins a classification of the same hash already in flight, or starts
+     * one. Each caller receives its own future, so cancelling it does not affect the other callers.
+     */
+    @Override
+    public CompletableFuture<ImageClassification> classifyAsync(BufferedImage image, Executor executor) {
+        long hash = PerceptualHash.differenceHash(image);
+        CompletableFuture<ImageClassification> call;
+        synchronized (this) {
+            ImageClassification cached = lookup(hash);
+            if (cached != null) {
+                return CompletableFuture.completedFuture(cached);
+            }
+            CompletableFuture<ImageClassification> existing = inFlight.get(hash);
+            if (existing != null) {
+                sharedMisses.increment();
+                return existing.copy();
+            }
+            call = new CompletableFuture<>();
+            inFlight.put(hash, call);
+        }
+        CompletableFuture<ImageClassification> delegated;
+        try {
+            delegated = delegate.classifyAsync(image, executor);
+        } catch (RuntimeException e) {
+            delegated = CompletableFuture.failedFuture(e);
+        }
+        delegated.whenComplete((classification, e) -> {
+            synchronized (this) {
+                //store before leaving the in-flight map so later requests always find one or the other
+                if (e == null) {
+                    store(hash, classification);
+                }
+                inFlight.remove(hash);
+            }
+            if (e == null) {
+                call.complete(classification);
+            } else {
+                call.completeExceptionally(e);
+            }
+        });
+        return call.copy();
+    }
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    /**
+     * Number of misses that joined a classification of the same hash already in flight instead of
+     * calling the wrapped service.
+     */
+    public long getSharedMissCount() {
+        return sharedMisses.sum();
+    }
+
+    /**
+     * Number of entries removed because the cache was full or they expired.
+     */
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    public double getHitRate() {
+        long hitCount = hits.sum();
+        long total = hitCount + misses.sum();
+        return total == 0 ? 0 : (double) hitCount / total;
+    }
+
+    public synchronized int size() {
+        return cache.size();
+    }
+
+    public synchronized void clear() {
+        cache.clear();
+    }
+
+    /**
+     * Finds a live classification whose hash is close enough, preferring an exact match. Expired
+     * entries met along the way are dropped.
+     */
+    private synchronized ImageClassification lookup(long hash) {
+        long now = System.nanoTime();
+        Entry entry = cache.get(hash);
+        if (entry != null && now - entry.storedAt > timeToLiveNanos) {
+            cache.remove(hash);
+            evictions.increment();
+            entry = null;
+        }
+        if (entry == null && maxDistance > 0) {
+            Long nearest = null;
+            int nearestDistance = Integer.MAX_VALUE;
+            for (Iterator<Map.Entry<Long, Entry>> it = cache.entrySet().iterator(); it.hasNext(); ) {
+                Map.Entry<Long, Entry> cached = it.next();
+                if (now - cached.getValue().storedAt > timeToLiveNanos) {
+                    it.remove();
+                    evictions.increment();
+                    continue;
+                }
+                int distance = PerceptualHash.distance(cached.getKey(), hash);
+                if (distance <= maxDistance && distance < nearestDistance) {
+                    nearest = cached.getKey();
+                    nearestDistance = distance;
+                }
+            }
+            if (nearest != null) {
+                entry = cache.get(nearest); //refreshes its LRU position
+            }
+        }
+
+        if (entry == null) {
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        return entry.classification;
+    }
+
+    private synchronized void store(long hash, ImageClassification classification) {
+        cache.put(hash, new Entry(classification, System.nanoTime()));
+    }
+
+    private record Entry(ImageClassification classification, long storedAt) {
+    }
+}
@@ -1,6 +1,7 @@
 package com.udacity.catpoint.image.service;
 
 import java.awt.image.BufferedImage;
+import java.util.List;
 import java.util.Random;
 
 /**
@@ -10,7 +11,7 @@ public class FakeImageService implements ImageService{
     private final Random r = new Random();
 
     @Override
-    public boolean imageContainsCat(BufferedImage image, float confidenceThreshhold) {
-        return r.nextBoolean();
+    public ImageClassification classify(BufferedImage image) {
+        return new ImageClassification(List.of(new ImageLabel("Cat", r.nextFloat() * 100)));
     }
 }
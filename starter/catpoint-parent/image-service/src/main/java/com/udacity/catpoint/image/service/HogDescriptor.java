@@ -0,0 +1,109 @@
+package com.udacity.catpoint.image.service;
+
+/**
+ * Computes Histogram of Oriented Gradients features for a luminance grid: gradient orientations are
+ * binned per square cell, then each 2x2 group of cells is normalized into a block vector. Blocks
+ * are computed once per image so every detection window can reuse them.
+ */
+final class HogDescriptor {
+
+    static final int BLOCK_CELLS = 2;
+
+    private static final float EPSILON = 1e-3f;
+    private static final float CLIP = 0.2f;
+
+    private final int cellSize;
+    private final int bins;
+
+    HogDescriptor(int cellSize, int bins) {
+        this.cellSize = cellSize;
+        this.bins = bins;
+    }
+
+    int getBlockLength() {
+        return BLOCK_CELLS * BLOCK_CELLS * bins;
+    }
+
+    /**
+     * Normalized block vectors for every block position of a row-major luminance grid.
+     */
+    Blocks compute(int[] luma, int width, int height) {
+        int cellsX = width / cellSize;
+        int cellsY = height / cellSize;
+        float[] cells = cellHistograms(luma, width, height, cellsX, cellsY);
+
+        int blocksX = Math.max(0, cellsX - BLOCK_CELLS + 1);
+        int blocksY = Math.max(0, cellsY - BLOCK_CELLS + 1);
+        int blockLength = getBlockLength();
+        float[] values = new float[blocksX * blocksY * blockLength];
+        for (int by = 0; by < blocksY; by++) {
+            for (int bx = 0; bx < blocksX; bx++) {
+                int offset = (by * blocksX + bx) * blockLength;
+                for (int cy = 0; cy < BLOCK_CELLS; cy++) {
+                    for (int cx = 0; cx < BLOCK_CELLS; cx++) {
+                        System.arraycopy(cells, ((by + cy) * cellsX + bx + cx) * bins,
+                                values, offset + (cy * BLOCK_CELLS + cx) * bins, bins);
+                    }
+                }
+                normalize(values, offset, blockLength);
+            }
+        }
+        return new Blocks(blocksX, blocksY, blockLength, values);
+    }
+
+    /**
+     * Accumulates gradient magnitudes into unsigned orientation bins, splitting each vote linearly
+     * between the two nearest bins.
+     */
+    private float[] cellHistograms(int[] luma, int width, int height, int cellsX, int cellsY) {
+        float[] cells = new float[cellsX * cellsY * bins];
+        float binWidth = (float) Math.PI / bins;
+        for (int y = 0; y < cellsY * cellSize; y++) {
+            int row = y * width;
+            int up = Math.max(y - 1, 0) * width;
+            int down = Math.min(y + 1, height - 1) * width;
+            int cellRow = (y / cellSize) * cellsX;
+            for (int x = 0; x < cellsX * cellSize; x++) {
+                float gx = luma[row + Math.min(x + 1, width - 1)] - luma[row + Math.max(x - 1, 0)];
+                float gy = luma[down + x] - luma[up + x];
+                if (gx == 0 && gy == 0) {
+                    continue;
+                }
+                float magnitude = (float) Math.sqrt(gx * gx + gy * gy);
+                float angle = (float) Math.atan2(gy, gx);
+                if (angle < 0) {
+                    angle += (float) Math.PI;
+                }
+                float position = angle / binWidth - 0.5f;
+                int lower = (int) Math.floor(position);
+                float upperShare = position - lower;
+                int cell = (cellRow + x / cellSize) * bins;
+                cells[cell + Math.floorMod(lower, bins)] += magnitude * (1 - upperShare);
+                cells[cell + Math.floorMod(lower + 1, bins)] += magnitude * upperShare;
+            }
+        }
+        return cells;
+    }
+
+    /**
+     * L2-Hys: L2 normalize, clip large components, then normalize again.
+     */
+    private static void normalize(float[] values, int offset, int length) {
+        for (int pass = 0; pass < 2; pass++) {
+            float sum = EPSILON * EPSILON;
+            for (int i = offset; i < offset + length; i++) {
+                sum += values[i] * values[i];
+            }
+            float scale = (float) (1 / Math.sqrt(sum));
+            for (int i = offset; i < offset + length; i++) {
+                values[i] = pass == 0 ? Math.min(values[i] * scale, CLIP) : values[i] * scale;
+            }
+        }
+    }
+
+    /**
+     * Block vectors laid out row-major by block position.
+     */
+    record Blocks(int blocksX, int blocksY, int blockLength, float[] values) {
+    }
+}
@@ -0,0 +1,160 @@
+package com.udacity.catpoint.image.service;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Image Recognition Service that runs entirely in-process, with no network, credentials or native
+ * code. Frames are reduced to a luminance grid and described with HOG features, and a linear
+ * HogModel scores a sliding detection window at several scales. The best window's score becomes the
+ * confidence of the Cat label.
+ *
+ * Each scale is evaluated as a separate task on the inference executor, and the service holds no
+ * per-call state, so any number of threads may classify at once. Models are produced with
+ * HogModelTrainer; the default constructor loads the cat-hog-model.bin resource shipped next to this
+ * class, trained on the drawn cat silhouettes and clutter of HogImageServiceTest, and warms it up.
+ */
+public class HogImageService implements ImageService {
+
+    public static final String MODEL_RESOURCE = "cat-hog-model.bin";
+    public static final int DEFAULT_WARM_UP_ITERATIONS = 50;
+
+    //window sizes relative to the frame's short side; smaller windows find smaller cats
+    private static final float[] SCALES = {1.0f, 1.5f, 2.0f};
+    //frames wider than this many windows are squeezed, which keeps panoramas from blowing up the cost
+    private static final int MAX_ASPECT = 2;
+    //source rows sampled per grid row; reading every row of a large frame costs more than the HOG itself
+    private static final int ROWS_PER_GRID_ROW = 2;
+
+    private final HogModel model;
+    private final HogDescriptor descriptor;
+    private final Executor inferenceExecutor;
+
+    /**
+     * Loads the shipped model and warms it up, so the first real frame runs compiled code.
+     */
+    public HogImageService() {
+        this(loadModelResource(), ForkJoinPool.commonPool());
+        warmUp(DEFAULT_WARM_UP_ITERATIONS);
+    }
+
+    public HogImageService(Path modelFile) throws IOException {
+        this(readModel(modelFile), ForkJoinPool.commonPool());
+    }
+
+    /**
+     * @param model Classifier to score detection windows with
+     * @param inferenceExecutor Executor the scales of a frame are evaluated on
+     */
+    public HogImageService(HogModel model, Executor inferenceExecutor) {
+        this.model = model;
+        this.descriptor = model.descriptor();
+        this.inferenceExecutor = inferenceExecutor;
+    }
+
+    /**
+     * Returns a single Cat label carrying the best detection window's confidence.
+     */
+    @Override
+    public ImageClassification classify(BufferedImage image) {
+        return new ImageClassification(List.of(new ImageLabel("Cat", catConfidence(image))));
+    }
+
+    /**
+     * Confidence in percent that the image contains a cat, from the best scoring detection window.
+     */
+    public float catConfidence(BufferedImage image) {
+        int window = model.getWindowSize();
+        float largestScale = SCALES[SCALES.length - 1];
+        int shortSide = Math.min(image.getWidth(), image.getHeight());
+        int gridWidth = Math.min(Math.round(image.getWidth() * window * largestScale / shortSide), (int) (MAX_ASPECT * window * largestScale));
+        int gridHeight = Math.min(Math.round(image.getHeight() * window * largestScale / shortSide), (int) (MAX_ASPECT * window * largestScale));
+        if (image.getWidth() < gridWidth || image.getHeight() < gridHeight) {
+            image = upscale(image, gridWidth, gridHeight); //every grid cell needs at least one source pixel
+        }
+        int[] grid = ImageSampling.luminanceGrid(image, gridWidth, gridHeight, ROWS_PER_GRID_ROW);
+
+        List<CompletableFuture<Float>> levels = new ArrayList<>(SCALES.length);
+        for (int i = 0; i < SCALES.length - 1; i++) {
+            float ratio = SCALES[i] / largestScale;
+            int levelWidth = Math.max(window, Math.round(gridWidth * ratio));
+            int levelHeight = Math.max(window, Math.round(gridHeight * ratio));
+            levels.add(CompletableFuture.supplyAsync(() ->
+                    bestScore(ImageSampling.resampleGrid(grid, gridWidth, gridHeight, levelWidth, levelHeight), levelWidth, levelHeight),
+                    inferenceExecutor));
+        }
+        float best = bestScore(grid, gridWidth, gridHeight);
+        for (CompletableFuture<Float> level : levels) {
+            best = Math.max(best, level.join());
+        }
+        return (float) (100 / (1 + Math.exp(-best)));
+    }
+
+    /**
+     * Classifies random frames so the feature and scoring loops are compiled before the first real frame.
+     */
+    public void warmUp(int iterations) {
+        Random random = new Random(0);
+        BufferedImage frame = new BufferedImage(640, 480, BufferedImage.TYPE_INT_RGB);
+        for (int i = 0; i < iterations; i++) {
+            for (int y = 0; y < frame.getHeight(); y += 8) {
+                for (int x = 0; x < frame.getWidth(); x += 8) {
+                    frame.setRGB(x, y, random.nextInt());
+                }
+            }
+            catConfidence(frame);
+        }
+    }
+
+    private float bestScore(int[] grid, int width, int height) {
+        HogDescriptor.Blocks blocks = descriptor.compute(grid, width, height);
+        int windowBlocks = model.windowBlocks();
+        float best = Float.NEGATIVE_INFINITY;
+        for (int by = 0; by + windowBlocks <= blocks.blocksY(); by++) {
+            for (int bx = 0; bx + windowBlocks <= blocks.blocksX(); bx++) {
+                best = Math.max(best, model.score(blocks, bx, by));
+            }
+        }
+        return best;
+    }
+
+    private static BufferedImage upscale(BufferedImage image, int width, int height) {
+        BufferedImage scaled = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = scaled.createGraphics();
+        try {
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g.drawImage(image, 0, 0, width, height, null);
+        } finally {
+            g.dispose();
+        }
+        return scaled;
+    }
+
+    private static HogModel loadModelResource() {
+        try (InputStream is = HogImageService.class.getResourceAsStream(MODEL_RESOURCE)) {
+            if (is == null) {
+                throw new IllegalStateException("No " + MODEL_RESOURCE + " resource, train one with HogModelTrainer");
+            }
+            return HogModel.read(is);
+        } catch (IOException ioe) {
+            throw new UncheckedIOException("Unable to load " + MODEL_RESOURCE, ioe);
+        }
+    }
+
+    private static HogModel readModel(Path modelFile) throws IOException {
+        try (InputStream is = Files.newInputStream(modelFile)) {
+            return HogModel.read(is);
+        }
+    }
+}
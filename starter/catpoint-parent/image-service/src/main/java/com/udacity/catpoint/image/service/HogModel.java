@@ -0,0 +1,115 @@
+package com.udacity.catpoint.image.service;
+
+import java.io.*;
+
+/**
+ * Linear classifier over HOG features of a square detection window. The score of a window is the
+ * dot product of its block vectors with the weights plus the bias; positive scores mean a cat.
+ *
+ * Stored as: magic, version, window size, cell size, bins, weight count, weights, bias, all in
+ * DataOutput big-endian form.
+ */
+public final class HogModel {
+
+    private static final int MAGIC = 0x484F474D; //"HOGM"
+    private static final int VERSION = 1;
+
+    private final int windowSize;
+    private final int cellSize;
+    private final int bins;
+    private final float[] weights;
+    private final float bias;
+
+    public HogModel(int windowSize, int cellSize, int bins, float[] weights, float bias) {
+        int windowBlocks = windowSize / cellSize - HogDescriptor.BLOCK_CELLS + 1;
+        int expected = windowBlocks * windowBlocks * HogDescriptor.BLOCK_CELLS * HogDescriptor.BLOCK_CELLS * bins;
+        if (weights.length != expected) {
+            throw new IllegalArgumentException("Expected " + expected + " weights but got " + weights.length);
+        }
+        this.windowSize = windowSize;
+        this.cellSize = cellSize;
+        this.bins = bins;
+        this.weights = weights.clone();
+        this.bias = bias;
+    }
+
+    public static HogModel read(InputStream in) throws IOException {
+        DataInputStream data = new DataInputStream(new BufferedInputStream(in));
+        if (data.readInt() != MAGIC) {
+            throw new IOException("Not a HOG model");
+        }
+        int version = data.readInt();
+        if (version != VERSION) {
+            throw new IOException("Unsupported HOG model version " + version);
+        }
+        int windowSize = data.readInt();
+        int cellSize = data.readInt();
+        int bins = data.readInt();
+        float[] weights = new float[data.readInt()];
+        for (int i = 0; i < weights.length; i++) {
+            weights[i] = data.readFloat();
+        }
+        float bias = data.readFloat();
+        try {
+            return new HogModel(windowSize, cellSize, bins, weights, bias);
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Corrupt HOG model", e);
+        }
+    }
+
+    public void write(OutputStream out) throws IOException {
+        DataOutputStream data = new DataOutputStream(new BufferedOutputStream(out));
+        data.writeInt(MAGIC);
+        data.writeInt(VERSION);
+        data.writeInt(windowSize);
+        data.writeInt(cellSize);
+        data.writeInt(bins);
+        data.writeInt(weights.length);
+        for (float weight : weights) {
+            data.writeFloat(weight);
+        }
+        data.writeFloat(bias);
+        data.flush();
+    }
+
+    public int getWindowSize() {
+        return windowSize;
+    }
+
+    public int getCellSize() {
+        return cellSize;
+    }
+
+    public int getBins() {
+        return bins;
+    }
+
+    HogDescriptor descriptor() {
+        return new HogDescriptor(cellSize, bins);
+    }
+
+    /**
+     * Number of blocks along each side of the detection window.
+     */
+    int windowBlocks() {
+        return windowSize / cellSize - HogDescriptor.BLOCK_CELLS + 1;
+    }
+
+    /**
+     * Score of the window whose top-left block is at the given block position.
+     */
+    float score(HogDescriptor.Blocks blocks, int blockX, int blockY) {
+        int windowBlocks = windowBlocks();
+        int blockLength = blocks.blockLength();
+        float[] values = blocks.values();
+        float sum = bias;
+        int w = 0;
+        for (int wy = 0; wy < windowBlocks; wy++) {
+            int v = ((blockY + wy) * blocks.blocksX() + blockX) * blockLength;
+            for (int i = 0; i < windowBlocks * blockLength; i++) {
+                sum += weights[w++] * values[v + i];
+            }
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,137 @@
+package com.udacity.catpoint.image.service;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Stream;
+
+/**
+ * Trains a HogModel by logistic regression on labelled example images. Every cat image is used
+ * whole and mirrored; every other image is used whole and as random crops, which teaches the model
+ * to reject the background patches the sliding window will mostly see.
+ *
+ * Usage: HogModelTrainer [cat image dir] [other image dir] [output model file]
+ */
+public final class HogModelTrainer {
+
+    public static final int DEFAULT_WINDOW_SIZE = 64;
+    public static final int DEFAULT_CELL_SIZE = 8;
+    public static final int DEFAULT_BINS = 9;
+
+    private static final int CROPS_PER_NEGATIVE = 8;
+
+    private final int windowSize;
+    private final int cellSize;
+    private final int bins;
+    private final HogDescriptor descriptor;
+    private final int epochs;
+    private final float learningRate;
+    private final float regularization;
+
+    public HogModelTrainer() {
+        this(DEFAULT_WINDOW_SIZE, DEFAULT_CELL_SIZE, DEFAULT_BINS, 30, 0.05f, 1e-4f);
+    }
+
+    public HogModelTrainer(int windowSize, int cellSize, int bins, int epochs, float learningRate, float regularization) {
+        this.windowSize = windowSize;
+        this.cellSize = cellSize;
+        this.bins = bins;
+        this.descriptor = new HogDescriptor(cellSize, bins);
+        this.epochs = epochs;
+        this.learningRate = learningRate;
+        this.regularization = regularization;
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 3) {
+            System.err.println("Usage: HogModelTrainer <cat image dir> <other image dir> <output model file>");
+            System.exit(1);
+        }
+        HogModel model = new HogModelTrainer().train(readImages(Path.of(args[0])), readImages(Path.of(args[1])));
+        try (OutputStream os = Files.newOutputStream(Path.of(args[2]))) {
+            model.write(os);
+        }
+    }
+
+    public HogModel train(List<BufferedImage> cats, List<BufferedImage> others) {
+        Random random = new Random(0);
+        List<Example> examples = new ArrayList<>();
+        for (BufferedImage cat : cats) {
+            examples.add(new Example(features(cat, false), 1));
+            examples.add(new Example(features(cat, true), 1));
+        }
+        for (BufferedImage other : others) {
+            examples.add(new Example(features(other, false), 0));
+            for (int i = 0; i < CROPS_PER_NEGATIVE; i++) {
+                examples.add(new Example(features(randomCrop(other, random), random.nextBoolean()), 0));
+            }
+        }
+        if (examples.isEmpty()) {
+            throw new IllegalArgumentException("No training images");
+        }
+
+        float[] weights = new float[examples.get(0).features.length];
+        float bias = 0;
+        for (int epoch = 0; epoch < epochs; epoch++) {
+            Collections.shuffle(examples, random);
+            float rate = learningRate / (1 + epoch);
+            for (Example example : examples) {
+                float score = bias;
+                for (int i = 0; i < weights.length; i++) {
+                    score += weights[i] * example.features[i];
+                }
+                float error = (float) (1 / (1 + Math.exp(-score))) - example.label;
+                for (int i = 0; i < weights.length; i++) {
+                    weights[i] -= rate * (error * example.features[i] + regularization * weights[i]);
+                }
+                bias -= rate * error;
+            }
+        }
+        return new HogModel(windowSize, cellSize, bins, weights, bias);
+    }
+
+    private float[] features(BufferedImage image, boolean mirror) {
+        int[] grid = ImageSampling.luminanceGrid(image, windowSize, windowSize);
+        if (mirror) {
+            for (int y = 0; y < windowSize; y++) {
+                for (int left = y * windowSize, right = left + windowSize - 1; left < right; left++, right--) {
+                    int swap = grid[left];
+                    grid[left] = grid[right];
+                    grid[right] = swap;
+                }
+            }
+        }
+        return descriptor.compute(grid, windowSize, windowSize).values();
+    }
+
+    private BufferedImage randomCrop(BufferedImage image, Random random) {
+        int side = Math.min(image.getWidth(), image.getHeight());
+        int size = Math.max(Math.min(windowSize, side), side / 2 + random.nextInt(side / 2 + 1));
+        int x = random.nextInt(image.getWidth() - size + 1);
+        int y = random.nextInt(image.getHeight() - size + 1);
+        return image.getSubimage(x, y, size, size);
+    }
+
+    private static List<BufferedImage> readImages(Path directory) throws IOException {
+        List<BufferedImage> images = new ArrayList<>();
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : files.sorted().toList()) {
+                BufferedImage image = ImageIO.read(file.toFile());
+                if (image != null) {
+                    images.add(image);
+                }
+            }
+        }
+        return images;
+    }
+
+    private record Example(float[] features, int label) {
+    }
+}
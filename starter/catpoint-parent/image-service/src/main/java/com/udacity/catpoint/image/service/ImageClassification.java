@@ -0,0 +1,54 @@
+package com.udacity.catpoint.image.service;
+
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Everything an ImageService recognized in one image, with a confidence per label. Callers apply
+ * their own thresholds, so a single classification can be cached and shared by every consumer
+ * regardless of how confident each one needs to be.
+ */
+public record ImageClassification(List<ImageLabel> labels) {
+
+    public static final ImageClassification EMPTY = new ImageClassification(List.of());
+
+    public ImageClassification {
+        labels = List.copyOf(labels);
+    }
+
+    /**
+     * Highest confidence among labels whose name contains the given text, ignoring case, or 0 if
+     * there is none.
+     */
+    public float confidenceOf(String name) {
+        String lowerCaseName = name.toLowerCase(Locale.ROOT);
+        float confidence = 0;
+        for (ImageLabel label : labels) {
+            if (label.name().toLowerCase(Locale.ROOT).contains(lowerCaseName)) {
+                confidence = Math.max(confidence, label.confidence());
+            }
+        }
+        return confidence;
+    }
+
+    public float catConfidence() {
+        return confidenceOf("cat");
+    }
+
+    /**
+     * @param confidenceThreshhold Minimum confidence in percent, for example 90.0f
+     */
+    public boolean containsCat(float confidenceThreshhold) {
+        return hasLabel("cat", confidenceThreshhold);
+    }
+
+    /**
+     * Whether a label containing the given name reaches the threshold. A threshold of 0 still
+     * requires the label to be present.
+     */
+    public boolean hasLabel(String name, float confidenceThreshhold) {
+        String lowerCaseName = name.toLowerCase(Locale.ROOT);
+        return labels.stream().anyMatch(label -> label.confidence() >= confidenceThreshhold
+                && label.name().toLowerCase(Locale.ROOT).contains(lowerCaseName));
+    }
+}
@@ -0,0 +1,40 @@
+package com.udacity.catpoint.image.service;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Factory for the executors image classification runs on when callers don't supply their own.
+ */
+public final class ImageExecutors {
+
+    private ImageExecutors() {
+    }
+
+    /**
+     * Returns an executor that starts a virtual thread per task when the runtime supports them
+     * (Java 21 and later), otherwise a cached pool of daemon threads. Virtual threads are looked up
+     * reflectively so the module still compiles and runs on Java 17.
+     */
+    public static ExecutorService newDefaultExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newCachedThreadPool(daemonThreads("image-scan"));
+        }
+    }
+
+    /**
+     * Thread factory producing daemon threads named prefix-1, prefix-2, ...
+     */
+    public static ThreadFactory daemonThreads(String prefix) {
+        AtomicInteger counter = new AtomicInteger();
+        return r -> {
+            Thread t = new Thread(r, prefix + "-" + counter.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        };
+    }
+}
@@ -0,0 +1,118 @@
+package com.udacity.catpoint.image.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.awt.image.*;
+import java.util.Optional;
+
+/**
+ * Pixel loops used by frame diffing, hashing, downscaling and classification. Rows are read
+ * straight from the raster's DataBufferInt or DataBufferByte array instead of going through
+ * BufferedImage.getRGB. The array loops are plain scalar code by default. Builds made with the
+ * vector profile (mvn -Pvector) also contain Vector API kernels, which are used when the JVM is
+ * started with --add-modules jdk.incubator.vector. They are loaded by name, so the default build
+ * never references the incubating module. Setting the catpoint.image.vector system property to
+ * false forces the scalar loops.
+ *
+ * Reading the data array directly makes Java2D stop caching the image in video memory, which only
+ * matters for images that are drawn repeatedly without changing.
+ */
+public final class ImageKernels {
+
+    private static final Logger log = LoggerFactory.getLogger(ImageKernels.class);
+
+    private static final PixelKernels SCALAR = new ScalarPixelKernels();
+    private static final PixelKernels VECTOR = loadVectorKernels();
+    private static final PixelKernels KERNELS = VECTOR != null ? VECTOR : SCALAR;
+
+    private ImageKernels() {
+    }
+
+    /**
+     * Whether the Vector API implementation is in use.
+     */
+    public static boolean isVectorized() {
+        return KERNELS == VECTOR;
+    }
+
+    /**
+     * Writes the luminance (0-255) of every pixel in row y of the image into out.
+     * @param out Array of at least the image's width
+     */
+    public static void luminanceRow(BufferedImage image, int y, int[] out) {
+        int width = image.getWidth();
+        WritableRaster raster = image.getRaster();
+        SampleModel sampleModel = raster.getSampleModel();
+        DataBuffer buffer = raster.getDataBuffer();
+        int sampleX = -raster.getSampleModelTranslateX();
+        int sampleY = y - raster.getSampleModelTranslateY();
+        switch (image.getType()) {
+            case BufferedImage.TYPE_INT_RGB, BufferedImage.TYPE_INT_ARGB -> {
+                int offset = buffer.getOffset() + ((SinglePixelPackedSampleModel) sampleModel).getOffset(sampleX, sampleY);
+                KERNELS.lumaOfPackedRgb(((DataBufferInt) buffer).getData(), offset, out, width);
+            }
+            case BufferedImage.TYPE_3BYTE_BGR, BufferedImage.TYPE_4BYTE_ABGR -> {
+                ComponentSampleModel components = (ComponentSampleModel) sampleModel;
+                int offset = buffer.getOffset();
+                KERNELS.lumaOfInterleavedBytes(((DataBufferByte) buffer).getData(),
+                        offset + components.getOffset(sampleX, sampleY, 0),
+                        offset + components.getOffset(sampleX, sampleY, 1),
+                        offset + components.getOffset(sampleX, sampleY, 2),
+                        components.getPixelStride(), out, width);
+            }
+            default -> {
+                //other layouts and color models need Java2D's conversion
+                image.getRGB(0, y, width, 1, out, 0, width);
+                KERNELS.lumaOfPackedRgb(out, 0, out, width);
+            }
+        }
+    }
+
+    /**
+     * Adds the first length values element-wise into the accumulator.
+     */
+    public static void add(int[] accumulator, int[] values, int length) {
+        KERNELS.add(accumulator, values, length);
+    }
+
+    /**
+     * Sum of the absolute differences between the first length elements of two arrays of 8-bit values.
+     */
+    public static long sumAbsoluteDifference(int[] values1, int[] values2, int length) {
+        return KERNELS.sumAbsoluteDifference(values1, values2, length);
+    }
+
+    static PixelKernels scalarKernels() {
+        return SCALAR;
+    }
+
+    /**
+     * The Vector API kernels, or null when they are unavailable.
+     */
+    static PixelKernels vectorKernels() {
+        return VECTOR;
+    }
+
+    private static PixelKernels loadVectorKernels() {
+        if (!Boolean.parseBoolean(System.getProperty("catpoint.image.vector", "true"))) {
+            return null;
+        }
+        Optional<Module> vectorModule = ModuleLayer.boot().findModule("jdk.incubator.vector");
+        if (vectorModule.isEmpty()) {
+            return null;
+        }
+        try {
+            //module-info cannot require the incubating module, so the read edge is added here
+            ImageKernels.class.getModule().addReads(vectorModule.get());
+            return (PixelKernels) Class.forName(ImageKernels.class.getPackageName() + ".VectorPixelKernels")
+                    .getDeclaredConstructor().newInstance();
+        } catch (ClassNotFoundException e) {
+            log.info("Image kernels built without the vector profile, using scalar image kernels");
+            return null;
+        } catch (ReflectiveOperationException | LinkageError e) {
+            log.warn("Vector API unavailable, using scalar image kernels", e);
+            return null;
+        }
+    }
+}
@@ -0,0 +1,9 @@
+package com.udacity.catpoint.image.service;
+
+/**
+ * Something an ImageService recognized in an image.
+ * @param name Label name, for example "Cat"
+ * @param confidence Confidence in percent, 0-100
+ */
+public record ImageLabel(String name, float confidence) {
+}
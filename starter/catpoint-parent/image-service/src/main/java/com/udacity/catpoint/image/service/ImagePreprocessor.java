@@ -0,0 +1,57 @@
+package com.udacity.catpoint.image.service;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+
+/**
+ * Prepares frames for upload to a classifier: scales them down so the longest edge fits a maximum,
+ * converts them to plain RGB and encodes them as JPEG with a configurable quality. Camera frames are
+ * often far larger than a classifier needs, so this shrinks both the encode time and the payload.
+ */
+public class ImagePreprocessor {
+
+    public static final int DEFAULT_MAX_EDGE = 1280;
+    public static final float DEFAULT_JPEG_QUALITY = 0.85f;
+
+    private final int maxEdge;
+    private final float jpegQuality;
+
+    public ImagePreprocessor() {
+        this(DEFAULT_MAX_EDGE, DEFAULT_JPEG_QUALITY);
+    }
+
+    /**
+     * @param maxEdge Longest edge in pixels after scaling, or 0 to keep the original size
+     * @param jpegQuality JPEG compression quality between 0 and 1
+     */
+    public ImagePreprocessor(int maxEdge, float jpegQuality) {
+        this.maxEdge = maxEdge;
+        this.jpegQuality = jpegQuality;
+    }
+
+    /**
+     * Scales and converts the image, then encodes it with a pooled JpegEncoder.
+     * @param reader Receives the encoded bytes, which are only valid during the call
+     * @return Whatever the reader returns
+     */
+    public <T> T encodeJpeg(BufferedImage image, JpegEncoder.EncodedImageReader<T> reader) throws IOException {
+        return JpegEncoder.encodePooled(prepare(image), jpegQuality, reader);
+    }
+
+    /**
+     * Returns an RGB image no larger than the maximum edge. Images that already qualify are
+     * returned as is, others are scaled with ImageScaling.scale.
+     */
+    public BufferedImage prepare(BufferedImage image) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        double scale = maxEdge > 0 ? Math.min(1.0, (double) maxEdge / Math.max(width, height)) : 1.0;
+        int targetWidth = Math.max(1, (int) Math.round(width * scale));
+        int targetHeight = Math.max(1, (int) Math.round(height * scale));
+        boolean rgb = image.getType() == BufferedImage.TYPE_INT_RGB || image.getType() == BufferedImage.TYPE_3BYTE_BGR;
+        if (rgb && targetWidth == width && targetHeight == height) {
+            return image;
+        }
+        return ImageScaling.scale(image, targetWidth, targetHeight);
+    }
+}
@@ -0,0 +1,105 @@
+package com.udacity.catpoint.image.service;
+
+import java.awt.image.BufferedImage;
+
+/**
+ * Helpers for reducing a frame to a small grid of luminance values, used to compare and classify
+ * frames cheaply.
+ */
+final class ImageSampling {
+
+    private ImageSampling() {
+    }
+
+    /**
+     * Downsamples the image to a grid of the given size by averaging the luminance of every source
+     * pixel that falls into each cell.
+     * @return Row-major luminance values in the range 0-255
+     */
+    static int[] luminanceGrid(BufferedImage image, int gridWidth, int gridHeight) {
+        return luminanceGrid(image, gridWidth, gridHeight, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Like luminanceGrid, but reads only about maxRowsPerCell evenly spaced source rows for each
+     * grid row. Reading source rows dominates the cost, so this trades a little averaging for
+     * speed when the source is much taller than the grid.
+     */
+    static int[] luminanceGrid(BufferedImage image, int gridWidth, int gridHeight, int maxRowsPerCell) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        long[] sums = new long[gridWidth * gridHeight];
+        int[] counts = new int[gridWidth * gridHeight];
+        int[] row = new int[width];
+        int[] rowSums = new int[width];
+        int[] cellOfColumn = new int[width];
+        for (int x = 0; x < width; x++) {
+            cellOfColumn[x] = x * gridWidth / width;
+        }
+        //rows of the same grid row are summed column-wise first, then spread over the cells once
+        int rowStep = Math.max(1, height / gridHeight / maxRowsPerCell);
+        int summedRows = 0;
+        int summedCellRow = 0;
+        for (int y = 0; y < height; y += rowStep) {
+            int cellRow = y * gridHeight / height;
+            if (cellRow != summedCellRow && summedRows > 0) {
+                addToCells(rowSums, summedRows, summedCellRow * gridWidth, cellOfColumn, sums, counts);
+                summedRows = 0;
+            }
+            summedCellRow = cellRow;
+            ImageKernels.luminanceRow(image, y, row);
+            ImageKernels.add(rowSums, row, width);
+            summedRows++;
+        }
+        if (summedRows > 0) {
+            addToCells(rowSums, summedRows, summedCellRow * gridWidth, cellOfColumn, sums, counts);
+        }
+        int[] grid = new int[sums.length];
+        for (int i = 0; i < grid.length; i++) {
+            grid[i] = counts[i] == 0 ? 0 : (int) (sums[i] / counts[i]);
+        }
+        return grid;
+    }
+
+    private static void addToCells(int[] rowSums, int rows, int cellRowStart, int[] cellOfColumn, long[] sums, int[] counts) {
+        for (int x = 0; x < rowSums.length; x++) {
+            int cell = cellRowStart + cellOfColumn[x];
+            sums[cell] += rowSums[x];
+            counts[cell] += rows;
+            rowSums[x] = 0;
+        }
+    }
+
+    /**
+     * Downsamples a luminance grid to a smaller one by averaging the cells that fall into each
+     * target cell, which is much cheaper than sampling the image again.
+     */
+    static int[] resampleGrid(int[] grid, int width, int height, int newWidth, int newHeight) {
+        long[] sums = new long[newWidth * newHeight];
+        int[] counts = new int[newWidth * newHeight];
+        int[] cellOfColumn = new int[width];
+        for (int x = 0; x < width; x++) {
+            cellOfColumn[x] = x * newWidth / width;
+        }
+        for (int y = 0; y < height; y++) {
+            int cellRow = (y * newHeight / height) * newWidth;
+            for (int x = 0; x < width; x++) {
+                int cell = cellRow + cellOfColumn[x];
+                sums[cell] += grid[y * width + x];
+                counts[cell]++;
+            }
+        }
+        int[] resampled = new int[sums.length];
+        for (int i = 0; i < resampled.length; i++) {
+            resampled[i] = counts[i] == 0 ? 0 : (int) (sums[i] / counts[i]);
+        }
+        return resampled;
+    }
+
+    /**
+     * Average absolute difference between two luminance grids of the same size.
+     */
+    static double meanAbsoluteDifference(int[] grid1, int[] grid2) {
+        return (double) ImageKernels.sumAbsoluteDifference(grid1, grid2, grid1.length) / grid1.length;
+    }
+}
@@ -1,7 +1,33 @@
 package com.udacity.catpoint.image.service;
 
 import java.awt.image.BufferedImage;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 
 public interface ImageService {
-    boolean imageContainsCat(BufferedImage image, float confidenceThreshhold);
+
+    /**
+     * Returns every label recognized in the image with its confidence. Thresholds are applied by
+     * the caller, so one classification can answer any number of questions about the image.
+     */
+    ImageClassification classify(BufferedImage image);
+
+    /**
+     * Asynchronous variant of classify that classifies the image on the given executor.
+     * Implementations backed by a non-blocking client can override this to avoid tying up a thread.
+     */
+    default CompletableFuture<ImageClassification> classifyAsync(BufferedImage image, Executor executor) {
+        return CompletableFuture.supplyAsync(() -> classify(image), executor);
+    }
+
+    default boolean imageContainsCat(BufferedImage image, float confidenceThreshhold) {
+        return classify(image).containsCat(confidenceThreshhold);
+    }
+
+    /**
+     * Asynchronous variant of imageContainsCat.
+     */
+    default CompletableFuture<Boolean> imageContainsCatAsync(BufferedImage image, float confidenceThreshhold, Executor executor) {
+        return classifyAsync(image, executor).thenApply(classification -> classification.containsCat(confidenceThreshhold));
+    }
 }
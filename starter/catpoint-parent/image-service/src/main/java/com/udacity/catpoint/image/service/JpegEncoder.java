@@ -0,0 +1,113 @@
+package com.udacity.catpoint.image.service;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+import javax.imageio.stream.MemoryCacheImageOutputStream;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * JPEG encoder that reuses its ImageWriter and output buffer between calls instead of looking up a
+ * writer and growing a fresh stream for every frame. Instances are not thread-safe; use
+ * {@link #encodePooled} to borrow one from a small shared pool for a single call.
+ *
+ * The pool replaces a per-thread instance, which virtual threads never reuse because each scan
+ * runs on a new one. It keeps at most one idle encoder per processor; an encoder returned to a full
+ * pool is discarded.
+ */
+public final class JpegEncoder {
+
+    private static final BlockingQueue<JpegEncoder> POOL = new ArrayBlockingQueue<>(Runtime.getRuntime().availableProcessors());
+
+    private final ImageWriter writer;
+    private final ImageWriteParam param;
+    private final ReusableOutputStream output = new ReusableOutputStream();
+
+    public JpegEncoder() {
+        writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        param = writer.getDefaultWriteParam();
+        param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+    }
+
+    /**
+     * Receives the encoded bytes of a pooled encode.
+     */
+    @FunctionalInterface
+    public interface EncodedImageReader<T> {
+        T read(ByteBuffer jpeg) throws IOException;
+    }
+
+    /**
+     * Encodes the image with an encoder borrowed from the pool and hands the bytes to the reader
+     * before the encoder is returned, so the buffer is only valid during the reader call.
+     * @param quality Compression quality between 0 and 1
+     * @return Whatever the reader returns
+     */
+    public static <T> T encodePooled(BufferedImage image, float quality, EncodedImageReader<T> reader) throws IOException {
+        JpegEncoder encoder = POOL.poll();
+        if (encoder == null) {
+            encoder = new JpegEncoder();
+        }
+        try {
+            return reader.read(encoder.encode(image, quality));
+        } finally {
+            if (!POOL.offer(encoder)) {
+                encoder.writer.dispose();
+            }
+        }
+    }
+
+    /**
+     * Number of idle encoders in the pool.
+     */
+    static int pooledCount() {
+        return POOL.size();
+    }
+
+    /**
+     * Encodes the image. The image must not have an alpha channel.
+     * @param quality Compression quality between 0 and 1
+     * @return A view of the encoded bytes that stays valid until the next call on this encoder
+     */
+    public ByteBuffer encode(BufferedImage image, float quality) throws IOException {
+        output.reset();
+        param.setCompressionQuality(quality);
+        try (ImageOutputStream ios = new MemoryCacheImageOutputStream(output)) {
+            writer.setOutput(ios);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.reset();
+        }
+        return output.view();
+    }
+
+    /**
+     * Encodes the image into a newly allocated array.
+     */
+    public byte[] encodeToArray(BufferedImage image, float quality) throws IOException {
+        ByteBuffer encoded = encode(image, quality);
+        byte[] bytes = new byte[encoded.remaining()];
+        encoded.get(bytes);
+        return bytes;
+    }
+
+    /**
+     * Byte stream whose backing array is kept between frames and exposed without copying.
+     */
+    private static class ReusableOutputStream extends ByteArrayOutputStream {
+        private ReusableOutputStream() {
+            super(64 * 1024);
+        }
+
+        private ByteBuffer view() {
+            return ByteBuffer.wrap(buf, 0, count);
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package com.udacity.catpoint.image.service;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * The most recent latency samples in a fixed-size ring, from which percentiles are computed on
+ * demand. Recording is lock-free; reading copies and sorts the window, so it suits occasional
+ * metric reads rather than the request path.
+ */
+final class LatencyWindow {
+
+    private final AtomicLongArray samples;
+    private final AtomicLong recorded = new AtomicLong();
+
+    /**
+     * @param size Number of most recent samples percentiles are computed over
+     */
+    LatencyWindow(int size) {
+        this.samples = new AtomicLongArray(size);
+    }
+
+    void record(long nanos) {
+        long index = recorded.getAndIncrement();
+        samples.set((int) (index % samples.length()), nanos);
+    }
+
+    /**
+     * Nearest-rank percentile of the samples in the window.
+     * @param percentile Between 0 and 100, for example 99 for the p99 latency
+     * @return The latency in milliseconds, or 0 if nothing has been recorded
+     */
+    double percentileMillis(double percentile) {
+        int count = (int) Math.min(recorded.get(), samples.length());
+        if (count == 0) {
+            return 0;
+        }
+        long[] sorted = new long[count];
+        for (int i = 0; i < count; i++) {
+            sorted[i] = samples.get(i);
+        }
+        Arrays.sort(sorted);
+        int rank = (int) Math.ceil(percentile / 100 * count);
+        return sorted[Math.max(0, Math.min(count, rank) - 1)] / 1e6;
+    }
+}
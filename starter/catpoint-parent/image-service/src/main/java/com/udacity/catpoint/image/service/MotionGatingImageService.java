@@ -0,0 +1,103 @@
+package com.udacity.catpoint.image.service;
+
+import java.awt.image.BufferedImage;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * ImageService decorator that only classifies frames that changed. Each frame is reduced to a small
+ * luminance grid and compared with the grid of the last frame that was actually classified. When the
+ * average difference stays below the motion threshold the wrapped service is skipped and the previous
+ * classification is returned, so with a static camera the unchanged frames still reach
+ * SecurityService.catDetected without costing a classification.
+ */
+public class MotionGatingImageService implements ImageService {
+
+    public static final int GRID_WIDTH = 32;
+    public static final int GRID_HEIGHT = 24;
+    public static final double DEFAULT_MOTION_THRESHOLD = 3.0;
+
+    private final ImageService delegate;
+    private final double motionThreshold;
+
+    private int[] lastGrid;
+    private ImageClassification lastClassification;
+
+    private final LongAdder classified = new LongAdder();
+    private final LongAdder skipped = new LongAdder();
+
+    public MotionGatingImageService(ImageService delegate) {
+        this(delegate, DEFAULT_MOTION_THRESHOLD);
+    }
+
+    /**
+     * @param delegate Service that classifies frames with enough motion
+     * @param motionThreshold Average per-cell luminance change (0-255) below which a frame counts as unchanged
+     */
+    public MotionGatingImageService(ImageService delegate, double motionThreshold) {
+        this.delegate = delegate;
+        this.motionThreshold = motionThreshold;
+    }
+
+    @Override
+    public ImageClassification classify(BufferedImage image) {
+        int[] grid = ImageSampling.luminanceGrid(image, GRID_WIDTH, GRID_HEIGHT);
+        ImageClassification previous = previousClassification(grid);
+        if (previous != null) {
+            return previous;
+        }
+        ImageClassification classification = delegate.classify(image);
+        remember(grid, classification);
+        return classification;
+    }
+
+    @Override
+    public CompletableFuture<ImageClassification> classifyAsync(BufferedImage image, Executor executor) {
+        int[] grid = ImageSampling.luminanceGrid(image, GRID_WIDTH, GRID_HEIGHT);
+        ImageClassification previous = previousClassification(grid);
+        if (previous != null) {
+            return CompletableFuture.completedFuture(previous);
+        }
+        return delegate.classifyAsync(image, executor)
+                .thenApply(classification -> {
+                    remember(grid, classification);
+                    return classification;
+                });
+    }
+
+    /**
+     * Number of frames passed on to the wrapped service.
+     */
+    public long getClassifiedCount() {
+        return classified.sum();
+    }
+
+    /**
+     * Number of frames answered with the previous classification because they had not changed.
+     */
+    public long getSkippedCount() {
+        return skipped.sum();
+    }
+
+    /**
+     * Forgets the last classified frame so the next frame is always classified.
+     */
+    public synchronized void reset() {
+        lastGrid = null;
+    }
+
+    private synchronized ImageClassification previousClassification(int[] grid) {
+        if (lastGrid != null && ImageSampling.meanAbsoluteDifference(lastGrid, grid) < motionThreshold) {
+            skipped.increment();
+            return lastClassification;
+        }
+        classified.increment();
+        return null;
+    }
+
+    private synchronized void remember(int[] grid, ImageClassification classification) {
+        lastGrid = grid;
+        lastClassification = classification;
+    }
+}
@@ -0,0 +1,39 @@
+package com.udacity.catpoint.image.service;
+
+import java.awt.image.BufferedImage;
+
+/**
+ * Perceptual hashes of frames. Near-identical frames, such as consecutive shots from a static
+ * camera, produce hashes that differ in only a few bits, so the Hamming distance between two hashes
+ * is a cheap measure of how similar the frames look.
+ */
+public final class PerceptualHash {
+
+    private PerceptualHash() {
+    }
+
+    /**
+     * Computes the 64-bit difference hash (dHash) of an image: the image is reduced to a 9x8
+     * luminance grid and each bit records whether a cell is darker than its right-hand neighbour.
+     */
+    public static long differenceHash(BufferedImage image) {
+        int[] grid = ImageSampling.luminanceGrid(image, 9, 8);
+        long hash = 0;
+        for (int y = 0; y < 8; y++) {
+            for (int x = 0; x < 8; x++) {
+                hash <<= 1;
+                if (grid[y * 9 + x] < grid[y * 9 + x + 1]) {
+                    hash |= 1;
+                }
+            }
+        }
+        return hash;
+    }
+
+    /**
+     * Number of bits that differ between two hashes.
+     */
+    public static int distance(long hash1, long hash2) {
+        return Long.bitCount(hash1 ^ hash2);
+    }
+}
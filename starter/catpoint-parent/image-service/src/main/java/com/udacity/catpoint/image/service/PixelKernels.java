@@ -0,0 +1,31 @@
+package com.udacity.catpoint.image.service;
+
+/**
+ * The array loops behind ImageKernels, implemented once with plain scalar code and once with the
+ * Vector API. Luminance is computed as (77 R + 150 G + 29 B) >> 8 in both, so results are identical.
+ */
+interface PixelKernels {
+
+    /**
+     * Luminance of packed 0xRRGGBB pixels, ignoring any alpha byte. May be applied in place.
+     */
+    void lumaOfPackedRgb(int[] pixels, int offset, int[] out, int length);
+
+    /**
+     * Luminance of pixels stored as interleaved bytes, such as TYPE_3BYTE_BGR rasters.
+     * @param redOffset Index of the first pixel's red byte; greenOffset and blueOffset likewise
+     * @param pixelStride Distance in bytes between consecutive pixels
+     */
+    void lumaOfInterleavedBytes(byte[] data, int redOffset, int greenOffset, int blueOffset, int pixelStride,
+                                int[] out, int length);
+
+    /**
+     * Adds values element-wise into the accumulator.
+     */
+    void add(int[] accumulator, int[] values, int length);
+
+    /**
+     * Sum of the absolute element-wise differences. Elements are expected to be 8-bit values.
+     */
+    long sumAbsoluteDifference(int[] values1, int[] values2, int length);
+}
@@ -0,0 +1,40 @@
+package com.udacity.catpoint.image.service;
+
+/**
+ * Plain loop implementation of PixelKernels, used when the Vector API is not available.
+ */
+final class ScalarPixelKernels implements PixelKernels {
+
+    @Override
+    public void lumaOfPackedRgb(int[] pixels, int offset, int[] out, int length) {
+        for (int i = 0; i < length; i++) {
+            int rgb = pixels[offset + i];
+            out[i] = (77 * ((rgb >> 16) & 0xFF) + 150 * ((rgb >> 8) & 0xFF) + 29 * (rgb & 0xFF)) >> 8;
+        }
+    }
+
+    @Override
+    public void lumaOfInterleavedBytes(byte[] data, int redOffset, int greenOffset, int blueOffset, int pixelStride,
+                                       int[] out, int length) {
+        for (int i = 0, p = 0; i < length; i++, p += pixelStride) {
+            out[i] = (77 * (data[redOffset + p] & 0xFF) + 150 * (data[greenOffset + p] & 0xFF)
+                    + 29 * (data[blueOffset + p] & 0xFF)) >> 8;
+        }
+    }
+
+    @Override
+    public void add(int[] accumulator, int[] values, int length) {
+        for (int i = 0; i < length; i++) {
+            accumulator[i] += values[i];
+        }
+    }
+
+    @Override
+    public long sumAbsoluteDifference(int[] values1, int[] values2, int length) {
+        long sum = 0;
+        for (int i = 0; i < length; i++) {
+            sum += Math.abs(values1[i] - values2[i]);
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,168 @@
+package com.udacity.catpoint.image.service;
+
+import java.awt.image.BufferedImage;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * ImageService decorator that collapses concurrent requests for the same frame into one call to the
+ * wrapped service. The first request for a frame is passed on; requests for the same frame that
+ * arrive before it completes wait for that call and receive the same classification or failure.
+ * Nothing is remembered once the call completes, pair this with CachingImageService for that.
+ *
+ * Frames are matched either by object identity, which is free and catches the same BufferedImage
+ * being scanned from several places, or by a hash of their pixels, which also catches copies of a
+ * frame at the cost of reading every pixel.
+ */
+public class SingleFlightImageService implements ImageService {
+
+    public enum FrameKey {
+        /**
+         * Requests share a call only if they pass the same BufferedImage instance.
+         */
+        IDENTITY,
+        /**
+         * Requests share a call if their frames have the same size and pixels.
+         */
+        CONTENT
+    }
+
+    private final ImageService delegate;
+    private final FrameKey frameKey;
+    private final Map<Object, CompletableFuture<ImageClassification>> inFlight = new ConcurrentHashMap<>();
+
+    private final LongAdder calls = new LongAdder();
+    private final LongAdder sharedCalls = new LongAdder();
+
+    public SingleFlightImageService(ImageService delegate) {
+        this(delegate, FrameKey.IDENTITY);
+    }
+
+    public SingleFlightImageService(ImageService delegate, FrameKey frameKey) {
+        this.delegate = delegate;
+        this.frameKey = frameKey;
+    }
+
+    /**
+     * Classifies the image on the calling thread, or waits for a call already classifying it.
+     */
+    @Override
+    public ImageClassification classify(BufferedImage image) {
+        Object key = keyOf(image);
+        CompletableFuture<ImageClassification> call = new CompletableFuture<>();
+        CompletableFuture<ImageClassification> existing = inFlight.putIfAbsent(key, call);
+        if (existing != null) {
+            sharedCalls.increment();
+            return await(existing);
+        }
+        calls.increment();
+        try {
+            ImageClassification classification = delegate.classify(image);
+            call.complete(classification);
+            return classification;
+        } catch (Throwable e) {
+            //an Error must reach the waiters too, or they would wait on the call forever
+            call.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, call);
+        }
+    }
+
+    /**
+     * Starts a call on the given executor, or joins a call already classifying the image. Each
+     * caller receives its own future, so cancelling it does not affect the other callers.
+     */
+    @Override
+    public CompletableFuture<ImageClassification> classifyAsync(BufferedImage image, Executor executor) {
+        Object key = keyOf(image);
+        CompletableFuture<ImageClassification> call = new CompletableFuture<>();
+        CompletableFuture<ImageClassification> existing = inFlight.putIfAbsent(key, call);
+        if (existing != null) {
+            sharedCalls.increment();
+            return existing.copy();
+        }
+        calls.increment();
+        CompletableFuture<ImageClassification> delegated;
+        try {
+            delegated = delegate.classifyAsync(image, executor);
+        } catch (RuntimeException e) {
+            delegated = CompletableFuture.failedFuture(e);
+        }
+        delegated.whenComplete((classification, e) -> {
+            inFlight.remove(key, call);
+            if (e == null) {
+                call.complete(classification);
+            } else {
+                call.completeExceptionally(e);
+            }
+        });
+        return call.copy();
+    }
+
+    /**
+     * Number of calls passed on to the wrapped service.
+     */
+    public long getCallCount() {
+        return calls.sum();
+    }
+
+    /**
+     * Number of requests that joined a call already in flight instead of making their own.
+     */
+    public long getSharedCallCount() {
+        return sharedCalls.sum();
+    }
+
+    /**
+     * Number of calls currently in flight.
+     */
+    public int getInFlightCount() {
+        return inFlight.size();
+    }
+
+    private Object keyOf(BufferedImage image) {
+        return switch (frameKey) {
+            //BufferedImage does not override equals, so the image itself is an identity key
+            case IDENTITY -> image;
+            case CONTENT -> new ContentKey(image.getWidth(), image.getHeight(), contentHash(image));
+        };
+    }
+
+    /**
+     * 64-bit hash of every pixel in the image, read a row at a time.
+     */
+    static long contentHash(BufferedImage image) {
+        int width = image.getWidth();
+        int[] row = new int[width];
+        long hash = 0xcbf29ce484222325L;
+        for (int y = 0; y < image.getHeight(); y++) {
+            image.getRGB(0, y, width, 1, row, 0, width);
+            for (int x = 0; x < width; x++) {
+                hash = (hash ^ row[x]) * 0x100000001b3L;
+            }
+        }
+        return hash;
+    }
+
+    private static ImageClassification await(CompletableFuture<ImageClassification> call) {
+        try {
+            return call.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            if (e.getCause() instanceof Error error) {
+                throw error;
+            }
+            throw e;
+        }
+    }
+
+    private record ContentKey(int width, int height, long hash) {
+    }
+}
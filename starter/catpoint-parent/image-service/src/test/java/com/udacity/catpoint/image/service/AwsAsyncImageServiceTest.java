@@ -0,0 +1,132 @@
+package com.udacity.catpoint.image.service;
+
+import org.junit.jupiter.api.Test;
+import software.amazon.awssdk.core.exception.ApiCallTimeoutException;
+import software.amazon.awssdk.services.rekognition.RekognitionAsyncClient;
+import software.amazon.awssdk.services.rekognition.model.DetectLabelsRequest;
+import software.amazon.awssdk.services.rekognition.model.DetectLabelsResponse;
+import software.amazon.awssdk.services.rekognition.model.Label;
+
+import java.awt.image.BufferedImage;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AwsAsyncImageServiceTest {
+
+    private static final DetectLabelsResponse CAT = DetectLabelsResponse.builder()
+            .labels(Label.builder().name("Cat").confidence(97.5f).build())
+            .build();
+
+    private final FakeClient client = new FakeClient();
+
+    @Test
+    void moreRequestsThanSlots_restQueued_sentAsSlotsFree() {
+        AwsAsyncImageService service = service(2, 10, Duration.ofSeconds(10));
+        List<CompletableFuture<ImageClassification>> results = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            results.add(service.classifyAsync(frame(), Runnable::run));
+        }
+
+        assertEquals(2, client.calls.size());
+        assertEquals(2, service.getInFlightCount());
+        assertEquals(3, service.getQueuedCount());
+        client.calls.get(0).complete(CAT);
+        assertEquals(3, client.calls.size());
+        assertEquals(2, service.getInFlightCount());
+        assertEquals(2, service.getQueuedCount());
+
+        for (int i = 1; i < 5; i++) {
+            client.calls.get(i).complete(CAT);
+        }
+        for (CompletableFuture<ImageClassification> result : results) {
+            assertTrue(result.join().containsCat(90.0f));
+        }
+        assertEquals(0, service.getInFlightCount());
+        assertEquals(5, service.getCompletedCount());
+        assertEquals(3, service.getPeakQueuedCount());
+    }
+
+    @Test
+    void queueFull_requestRejected() {
+        AwsAsyncImageService service = service(1, 1, Duration.ofSeconds(10));
+        service.classifyAsync(frame(), Runnable::run);
+        service.classifyAsync(frame(), Runnable::run);
+        CompletableFuture<ImageClassification> rejected = service.classifyAsync(frame(), Runnable::run);
+
+        CompletionException e = assertThrows(CompletionException.class, rejected::join);
+        assertInstanceOf(RejectedExecutionException.class, e.getCause());
+        assertEquals(1, service.getRejectedCount());
+        assertEquals(1, client.calls.size());
+    }
+
+    @Test
+    void timeout_passedToSdk_slotHeldUntilSdkCallCompletes() {
+        AwsAsyncImageService service = service(1, 10, Duration.ofMillis(50));
+        CompletableFuture<ImageClassification> first = service.classifyAsync(frame(), Runnable::run);
+        service.classifyAsync(frame(), Runnable::run);
+
+        assertEquals(Duration.ofMillis(50), client.requests.get(0).overrideConfiguration()
+                .flatMap(o -> o.apiCallTimeout()).orElseThrow());
+        //however long the SDK takes to give up, the second request must wait for the first
+        assertEquals(1, client.calls.size());
+        assertEquals(1, service.getQueuedCount());
+
+        client.calls.get(0).completeExceptionally(ApiCallTimeoutException.create(50));
+        CompletionException e = assertThrows(CompletionException.class, first::join);
+        assertInstanceOf(ApiCallTimeoutException.class, e.getCause());
+        assertEquals(1, service.getTimedOutCount());
+        assertEquals(1, service.getFailedCount());
+        assertEquals(2, client.calls.size());
+    }
+
+    @Test
+    void latencyPercentiles_reportedAfterCompletion() {
+        AwsAsyncImageService service = service(4, 10, Duration.ofSeconds(10));
+        assertEquals(0.0, service.getP99LatencyMillis());
+        service.classifyAsync(frame(), Runnable::run);
+        client.calls.get(0).complete(CAT);
+
+        assertTrue(service.getP95LatencyMillis() > 0);
+        assertTrue(service.getP99LatencyMillis() >= service.getP95LatencyMillis());
+    }
+
+    private AwsAsyncImageService service(int maxInFlight, int maxQueued, Duration timeout) {
+        return new AwsAsyncImageService(client, new ImagePreprocessor(), AwsImageService.DEFAULT_MIN_CONFIDENCE,
+                maxInFlight, maxQueued, timeout);
+    }
+
+    private static BufferedImage frame() {
+        return new BufferedImage(32, 24, BufferedImage.TYPE_INT_RGB);
+    }
+
+    /**
+     * Client whose calls stay outstanding until the test completes them.
+     */
+    private static class FakeClient implements RekognitionAsyncClient {
+        private final List<DetectLabelsRequest> requests = new ArrayList<>();
+        private final List<CompletableFuture<DetectLabelsResponse>> calls = new ArrayList<>();
+
+        @Override
+        public CompletableFuture<DetectLabelsResponse> detectLabels(DetectLabelsRequest request) {
+            CompletableFuture<DetectLabelsResponse> call = new CompletableFuture<>();
+            requests.add(request);
+            calls.add(call);
+            return call;
+        }
+
+        @Override
+        public String serviceName() {
+            return "rekognition";
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
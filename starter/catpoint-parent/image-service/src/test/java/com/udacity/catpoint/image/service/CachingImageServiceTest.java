@@ -0,0 +1,154 @@
+package com.udacity.catpoint.image.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.image.BufferedImage;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CachingImageServiceTest {
+
+    private static final ImageClassification CAT = new ImageClassification(List.of(new ImageLabel("Cat", 90.0f)));
+
+    private final AtomicInteger calls = new AtomicInteger();
+    private final List<CompletableFuture<ImageClassification>> pendingCalls = new ArrayList<>();
+
+    /**
+     * Counts synchronous calls and leaves asynchronous ones pending until the test completes them.
+     */
+    private final ImageService delegate = new ImageService() {
+        @Override
+        public ImageClassification classify(BufferedImage image) {
+            calls.incrementAndGet();
+            return CAT;
+        }
+
+        @Override
+        public CompletableFuture<ImageClassification> classifyAsync(BufferedImage image, Executor executor) {
+            calls.incrementAndGet();
+            CompletableFuture<ImageClassification> call = new CompletableFuture<>();
+            pendingCalls.add(call);
+            return call;
+        }
+    };
+
+    @Test
+    void sameFrameTwice_secondAnsweredFromCache() {
+        CachingImageService service = new CachingImageService(delegate);
+        BufferedImage frame = gradient(true);
+
+        assertSame(CAT, service.classify(frame));
+        assertSame(CAT, service.classify(frame));
+        assertEquals(1, calls.get());
+        assertEquals(1, service.getHitCount());
+        assertEquals(1, service.getMissCount());
+    }
+
+    @Test
+    void nearIdenticalFrame_answeredFromCache_differentFrameClassified() {
+        CachingImageService service = new CachingImageService(delegate);
+        BufferedImage frame = gradient(true);
+        service.classify(frame);
+        BufferedImage nearCopy = gradient(true);
+        nearCopy.setRGB(3, 3, 0xFFFFFF);
+        service.classify(nearCopy);
+        service.classify(gradient(false));
+
+        assertEquals(2, calls.get());
+        assertEquals(1, service.getHitCount());
+    }
+
+    @Test
+    void entryOlderThanTimeToLive_classifiedAgain() {
+        CachingImageService service = new CachingImageService(delegate, 16, Duration.ofNanos(1), 0);
+        BufferedImage frame = gradient(true);
+        service.classify(frame);
+        long start = System.nanoTime();
+        while (System.nanoTime() - start < 1_000) {
+            Thread.onSpinWait();
+        }
+        service.classify(frame);
+
+        assertEquals(2, calls.get());
+        assertEquals(1, service.getEvictionCount());
+    }
+
+    @Test
+    void cacheFull_leastRecentlyUsedEvicted() {
+        CachingImageService service = new CachingImageService(delegate, 1, CachingImageService.DEFAULT_TIME_TO_LIVE, 0);
+        service.classify(gradient(true));
+        service.classify(gradient(false));
+        service.classify(gradient(true));
+
+        assertEquals(3, calls.get());
+        assertEquals(1, service.size());
+        assertEquals(2, service.getEvictionCount());
+    }
+
+    @Test
+    void concurrentAsyncMisses_sameHash_delegateCalledOnce() {
+        CachingImageService service = new CachingImageService(delegate);
+        CompletableFuture<ImageClassification> first = service.classifyAsync(gradient(true), Runnable::run);
+        CompletableFuture<ImageClassification> second = service.classifyAsync(gradient(true), Runnable::run);
+
+        assertEquals(1, calls.get());
+        assertEquals(1, service.getSharedMissCount());
+        assertFalse(first.isDone());
+        pendingCalls.get(0).complete(CAT);
+        assertSame(CAT, first.join());
+        assertSame(CAT, second.join());
+
+        assertSame(CAT, service.classifyAsync(gradient(true), Runnable::run).join());
+        assertEquals(1, calls.get());
+        assertEquals(1, service.getHitCount());
+    }
+
+    @Test
+    void asyncMissFails_everyWaiterFails_nothingCached() {
+        CachingImageService service = new CachingImageService(delegate);
+        CompletableFuture<ImageClassification> first = service.classifyAsync(gradient(true), Runnable::run);
+        CompletableFuture<ImageClassification> second = service.classifyAsync(gradient(true), Runnable::run);
+        pendingCalls.get(0).completeExceptionally(new IllegalStateException("service down"));
+
+        assertThrows(CompletionException.class, first::join);
+        assertThrows(CompletionException.class, second::join);
+        service.classifyAsync(gradient(true), Runnable::run);
+        assertEquals(2, calls.get());
+        assertEquals(0, service.size());
+    }
+
+    @Test
+    void oneWaiterCancels_otherStillCompletes() {
+        CachingImageService service = new CachingImageService(delegate);
+        CompletableFuture<ImageClassification> first = service.classifyAsync(gradient(true), Runnable::run);
+        CompletableFuture<ImageClassification> second = service.classifyAsync(gradient(true), Runnable::run);
+        first.cancel(true);
+        pendingCalls.get(0).complete(CAT);
+
+        assertTrue(first.isCancelled());
+        assertSame(CAT, second.join());
+        assertEquals(1, service.size());
+    }
+
+    /**
+     * A horizontal gradient, brightening to the right or to the left, so the two directions have
+     * opposite difference hashes.
+     */
+    static BufferedImage gradient(boolean rising) {
+        BufferedImage image = new BufferedImage(64, 48, BufferedImage.TYPE_INT_RGB);
+        for (int y = 0; y < image.getHeight(); y++) {
+            for (int x = 0; x < image.getWidth(); x++) {
+                int level = (rising ? x : image.getWidth() - 1 - x) * 4;
+                image.setRGB(x, y, level << 16 | level << 8 | level);
+            }
+        }
+        return image;
+    }
+}
@@ -0,0 +1,149 @@
+package com.udacity.catpoint.image.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Trains a model on drawn cat silhouettes and clutter, saves it, loads it back through the service
+ * and classifies fixture frames the model has not seen.
+ */
+public class HogImageServiceTest {
+
+    @TempDir
+    Path directory;
+
+    private final HogModel model = train();
+
+    private static HogModel train() {
+        Random random = new Random(1);
+        List<BufferedImage> cats = new ArrayList<>();
+        List<BufferedImage> others = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            cats.add(catFrame(96, 96, random));
+            others.add(clutterFrame(96, 96, random));
+        }
+        return new HogModelTrainer().train(cats, others);
+    }
+
+    @Test
+    void modelLoadedFromFile_catFixtureScoresAboveClutterFixture() throws IOException {
+        Path modelFile = directory.resolve("cat.hog");
+        try (OutputStream os = Files.newOutputStream(modelFile)) {
+            model.write(os);
+        }
+        HogImageService service = new HogImageService(modelFile);
+        Random random = new Random(99);
+        BufferedImage cat = catFrame(320, 240, random);
+        BufferedImage clutter = clutterFrame(320, 240, random);
+
+        ImageClassification catClassification = service.classify(cat);
+        assertEquals(1, catClassification.labels().size());
+        assertEquals("Cat", catClassification.labels().get(0).name());
+        assertTrue(catClassification.catConfidence() > service.catConfidence(clutter),
+                catClassification.catConfidence() + " <= " + service.catConfidence(clutter));
+    }
+
+    @Test
+    void sameFrame_sameConfidence_onAnyExecutor() {
+        BufferedImage frame = catFrame(200, 150, new Random(5));
+        float inline = new HogImageService(model, Runnable::run).catConfidence(frame);
+
+        assertEquals(inline, new HogImageService(model, ForkJoinPool.commonPool()).catConfidence(frame));
+        assertTrue(inline >= 0 && inline <= 100);
+    }
+
+    @Test
+    void shippedModel_catScoresAboveClutter_medianFrameUnderTenMillis() {
+        HogImageService service = new HogImageService();
+        Random random = new Random(7);
+        BufferedImage cat = catFrame(640, 480, random);
+        BufferedImage clutter = clutterFrame(640, 480, random);
+        assertTrue(service.catConfidence(cat) > service.catConfidence(clutter),
+                service.catConfidence(cat) + " <= " + service.catConfidence(clutter));
+
+        long[] nanos = new long[31];
+        for (int i = 0; i < nanos.length; i++) {
+            BufferedImage frame = i % 2 == 0 ? catFrame(640, 480, random) : clutterFrame(640, 480, random);
+            long start = System.nanoTime();
+            service.classify(frame);
+            nanos[i] = System.nanoTime() - start;
+        }
+        Arrays.sort(nanos);
+        long median = nanos[nanos.length / 2];
+        assertTrue(median < 10_000_000, "median frame took " + median / 1_000 + " \u00b5s");
+    }
+
+    /**
+     * A dark head with two pointed ears on a light background, at a random position and size.
+     */
+    static BufferedImage catFrame(int width, int height, Random random) {
+        BufferedImage image = background(width, height, random);
+        Graphics2D g = image.createGraphics();
+        try {
+            int size = (int) (Math.min(width, height) * (0.5 + 0.3 * random.nextDouble()));
+            int x = random.nextInt(width - size + 1);
+            int y = random.nextInt(height - size + 1);
+            int head = size * 3 / 4;
+            int headX = x + (size - head) / 2;
+            int headY = y + size - head;
+            g.setColor(new Color(30 + random.nextInt(40), 30 + random.nextInt(40), 30 + random.nextInt(40)));
+            g.fillOval(headX, headY, head, head);
+            int ear = head / 3;
+            g.fillPolygon(new int[]{headX, headX + ear / 2, headX + ear}, new int[]{headY + ear / 2, y, headY + ear / 4}, 3);
+            g.fillPolygon(new int[]{headX + head - ear, headX + head - ear / 2, headX + head}, new int[]{headY + ear / 4, y, headY + ear / 2}, 3);
+        } finally {
+            g.dispose();
+        }
+        return image;
+    }
+
+    /**
+     * Random rectangles and lines on a light background.
+     */
+    static BufferedImage clutterFrame(int width, int height, Random random) {
+        BufferedImage image = background(width, height, random);
+        Graphics2D g = image.createGraphics();
+        try {
+            for (int i = 0; i < 6; i++) {
+                int gray = random.nextInt(256);
+                g.setColor(new Color(gray, gray, gray));
+                if (random.nextBoolean()) {
+                    g.fillRect(random.nextInt(width), random.nextInt(height), 5 + random.nextInt(width / 2), 5 + random.nextInt(height / 2));
+                } else {
+                    g.setStroke(new BasicStroke(1 + random.nextInt(4)));
+                    g.drawLine(random.nextInt(width), random.nextInt(height), random.nextInt(width), random.nextInt(height));
+                }
+            }
+        } finally {
+            g.dispose();
+        }
+        return image;
+    }
+
+    private static BufferedImage background(int width, int height, Random random) {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = image.createGraphics();
+        try {
+            int level = 180 + random.nextInt(60);
+            g.setColor(new Color(level, level, level));
+            g.fillRect(0, 0, width, height);
+        } finally {
+            g.dispose();
+        }
+        return image;
+    }
+}
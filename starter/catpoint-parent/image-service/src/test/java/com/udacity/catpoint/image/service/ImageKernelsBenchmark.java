@@ -0,0 +1,110 @@
+package com.udacity.catpoint.image.service;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.awt.image.BufferedImage;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the scalar and Vector API pixel kernels on a 1080p frame, plus the getRGB loop the
+ * kernels replaced. Run with:
+ *      mvn -pl image-service -Pvector test-compile
+ *      java -cp image-service/target/test-classes:image-service/target/classes:[test classpath] org.openjdk.jmh.Main ImageKernelsBenchmark
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "--add-modules=jdk.incubator.vector")
+@State(Scope.Thread)
+public class ImageKernelsBenchmark {
+
+    private static final int WIDTH = 1920;
+    private static final int HEIGHT = 1080;
+
+    @Param({"scalar", "vector"})
+    public String kernels;
+
+    private PixelKernels pixelKernels;
+    private BufferedImage intFrame;
+    private BufferedImage byteFrame;
+    private int[] pixels;
+    private int[] luma1;
+    private int[] luma2;
+    private int[] out;
+
+    @Setup
+    public void setUp() {
+        pixelKernels = kernels.equals("vector") ? ImageKernels.vectorKernels() : ImageKernels.scalarKernels();
+        if (pixelKernels == null) {
+            throw new IllegalStateException("Vector API unavailable, run with --add-modules jdk.incubator.vector");
+        }
+        Random random = new Random(0);
+        intFrame = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_RGB);
+        byteFrame = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_3BYTE_BGR);
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                int rgb = random.nextInt();
+                intFrame.setRGB(x, y, rgb);
+                byteFrame.setRGB(x, y, rgb);
+            }
+        }
+        pixels = intFrame.getRGB(0, 0, WIDTH, HEIGHT, null, 0, WIDTH);
+        luma1 = random.ints(WIDTH * HEIGHT, 0, 256).toArray();
+        luma2 = random.ints(WIDTH * HEIGHT, 0, 256).toArray();
+        out = new int[WIDTH * HEIGHT];
+    }
+
+    @Benchmark
+    public int[] lumaOfPackedRgb() {
+        pixelKernels.lumaOfPackedRgb(pixels, 0, out, pixels.length);
+        return out;
+    }
+
+    @Benchmark
+    public long sumAbsoluteDifference() {
+        return pixelKernels.sumAbsoluteDifference(luma1, luma2, luma1.length);
+    }
+
+    @Benchmark
+    public int[] accumulateRows() {
+        int[] sums = new int[WIDTH];
+        for (int y = 0; y < HEIGHT; y++) {
+            System.arraycopy(luma1, y * WIDTH, out, 0, WIDTH);
+            pixelKernels.add(sums, out, WIDTH);
+        }
+        return sums;
+    }
+
+    /**
+     * Whole luminance grid through ImageKernels, which uses the vector kernels when available
+     * regardless of the kernels parameter.
+     */
+    @Benchmark
+    public int[] luminanceGridIntRaster() {
+        return ImageSampling.luminanceGrid(intFrame, 32, 24);
+    }
+
+    @Benchmark
+    public int[] luminanceGridByteRaster() {
+        return ImageSampling.luminanceGrid(byteFrame, 32, 24);
+    }
+
+    /**
+     * The per-row getRGB conversion used before the kernels existed, as a baseline.
+     */
+    @Benchmark
+    public void getRgbBaseline(Blackhole blackhole) {
+        int[] row = new int[WIDTH];
+        for (int y = 0; y < HEIGHT; y++) {
+            byteFrame.getRGB(0, y, WIDTH, 1, row, 0, WIDTH);
+            for (int x = 0; x < WIDTH; x++) {
+                int rgb = row[x];
+                row[x] = (77 * ((rgb >> 16) & 0xFF) + 150 * ((rgb >> 8) & 0xFF) + 29 * (rgb & 0xFF)) >> 8;
+            }
+            blackhole.consume(row);
+        }
+    }
+}
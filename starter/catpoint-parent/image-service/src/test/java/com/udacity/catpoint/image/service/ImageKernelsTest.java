@@ -0,0 +1,108 @@
+package com.udacity.catpoint.image.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.image.BufferedImage;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Checks the kernels against the plain luminance formula, and the Vector API kernels against the
+ * scalar ones. The vector comparison only runs in builds made with -Pvector.
+ */
+public class ImageKernelsTest {
+
+    //lengths around and between common lane counts (4, 8 and 16 ints), plus a 1080p row
+    private static final int[] LENGTHS = {1, 3, 7, 8, 9, 15, 16, 17, 31, 33, 63, 65, 257, 1921};
+
+    @Test
+    void luminanceRow_matchesFormula_forIntAndByteRasters() {
+        Random random = new Random(0);
+        for (int width : LENGTHS) {
+            for (int type : new int[]{BufferedImage.TYPE_INT_RGB, BufferedImage.TYPE_INT_ARGB,
+                    BufferedImage.TYPE_3BYTE_BGR, BufferedImage.TYPE_4BYTE_ABGR, BufferedImage.TYPE_USHORT_565_RGB}) {
+                BufferedImage image = randomImage(width, 3, type, random);
+                int[] row = new int[width];
+                ImageKernels.luminanceRow(image, 1, row);
+                for (int x = 0; x < width; x++) {
+                    assertEquals(luma(image.getRGB(x, 1)), row[x], "type " + type + " width " + width + " x " + x);
+                }
+            }
+        }
+    }
+
+    @Test
+    void scalarKernels_matchFormula() {
+        assertKernelsMatchFormula(ImageKernels.scalarKernels());
+    }
+
+    @Test
+    void vectorKernels_identicalToScalar_onRandomRasters() {
+        PixelKernels vector = ImageKernels.vectorKernels();
+        assumeTrue(vector != null, "Vector kernels need -Pvector and --add-modules jdk.incubator.vector");
+        PixelKernels scalar = ImageKernels.scalarKernels();
+        Random random = new Random(1);
+        for (int length : LENGTHS) {
+            for (int offset : new int[]{0, 1, 5}) {
+                int[] pixels = random.ints(offset + length).toArray();
+                int[] expected = new int[length];
+                int[] actual = new int[length];
+                scalar.lumaOfPackedRgb(pixels, offset, expected, length);
+                vector.lumaOfPackedRgb(pixels, offset, actual, length);
+                assertArrayEquals(expected, actual, "luma length " + length + " offset " + offset);
+            }
+
+            byte[] bytes = new byte[length * 3];
+            random.nextBytes(bytes);
+            int[] expected = new int[length];
+            int[] actual = new int[length];
+            scalar.lumaOfInterleavedBytes(bytes, 2, 1, 0, 3, expected, length);
+            vector.lumaOfInterleavedBytes(bytes, 2, 1, 0, 3, actual, length);
+            assertArrayEquals(expected, actual, "interleaved length " + length);
+
+            int[] values = random.ints(length, 0, 256).toArray();
+            int[] accumulatorScalar = random.ints(length, 0, 1 << 20).toArray();
+            int[] accumulatorVector = accumulatorScalar.clone();
+            scalar.add(accumulatorScalar, values, length);
+            vector.add(accumulatorVector, values, length);
+            assertArrayEquals(accumulatorScalar, accumulatorVector, "add length " + length);
+
+            int[] other = random.ints(length, 0, 256).toArray();
+            assertEquals(scalar.sumAbsoluteDifference(values, other, length),
+                    vector.sumAbsoluteDifference(values, other, length), "sad length " + length);
+        }
+        assertKernelsMatchFormula(vector);
+    }
+
+    private static void assertKernelsMatchFormula(PixelKernels kernels) {
+        Random random = new Random(2);
+        for (int length : LENGTHS) {
+            int[] pixels = random.ints(length).toArray();
+            int[] out = new int[length];
+            kernels.lumaOfPackedRgb(pixels, 0, out, length);
+            long sad = 0;
+            int[] other = random.ints(length, 0, 256).toArray();
+            for (int i = 0; i < length; i++) {
+                assertEquals(luma(pixels[i]), out[i]);
+                sad += Math.abs(out[i] - other[i]);
+            }
+            assertEquals(sad, kernels.sumAbsoluteDifference(out, other, length));
+        }
+    }
+
+    private static int luma(int rgb) {
+        return (77 * ((rgb >> 16) & 0xFF) + 150 * ((rgb >> 8) & 0xFF) + 29 * (rgb & 0xFF)) >> 8;
+    }
+
+    private static BufferedImage randomImage(int width, int height, int type, Random random) {
+        BufferedImage image = new BufferedImage(width, height, type);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                image.setRGB(x, y, random.nextInt());
+            }
+        }
+        return image;
+    }
+}
@@ -0,0 +1,57 @@
+package com.udacity.catpoint.image.service;
+
+import org.junit.jupiter.api.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ImagePreprocessorTest {
+
+    @Test
+    void smallRgbImage_returnedAsIs() {
+        BufferedImage image = new BufferedImage(640, 480, BufferedImage.TYPE_INT_RGB);
+
+        assertSame(image, new ImagePreprocessor().prepare(image));
+    }
+
+    @Test
+    void largeImage_longestEdgeScaledToMaximum_aspectRatioKept() {
+        BufferedImage prepared = new ImagePreprocessor(320, 0.8f).prepare(new BufferedImage(1600, 900, BufferedImage.TYPE_INT_RGB));
+
+        assertEquals(320, prepared.getWidth());
+        assertEquals(180, prepared.getHeight());
+    }
+
+    @Test
+    void imageWithAlpha_convertedToRgb() {
+        BufferedImage prepared = new ImagePreprocessor().prepare(new BufferedImage(64, 48, BufferedImage.TYPE_INT_ARGB));
+
+        assertFalse(prepared.getColorModel().hasAlpha());
+        assertEquals(64, prepared.getWidth());
+        assertEquals(48, prepared.getHeight());
+    }
+
+    @Test
+    void maxEdgeZero_originalSizeKept() {
+        BufferedImage image = new BufferedImage(4000, 3000, BufferedImage.TYPE_3BYTE_BGR);
+
+        assertSame(image, new ImagePreprocessor(0, 0.8f).prepare(image));
+    }
+
+    @Test
+    void encodeJpeg_decodesToPreparedSize() throws IOException {
+        byte[] jpeg = new ImagePreprocessor(100, 0.8f).encodeJpeg(new BufferedImage(400, 200, BufferedImage.TYPE_INT_ARGB), buffer -> {
+            byte[] bytes = new byte[buffer.remaining()];
+            buffer.get(bytes);
+            return bytes;
+        });
+        BufferedImage decoded = ImageIO.read(new ByteArrayInputStream(jpeg));
+
+        assertEquals(100, decoded.getWidth());
+        assertEquals(50, decoded.getHeight());
+    }
+}
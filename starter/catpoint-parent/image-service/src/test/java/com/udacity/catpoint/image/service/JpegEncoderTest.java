@@ -0,0 +1,93 @@
+package com.udacity.catpoint.image.service;
+
+import org.junit.jupiter.api.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class JpegEncoderTest {
+
+    @Test
+    void encode_decodesToSameSize_lowerQualitySmaller() throws IOException {
+        BufferedImage image = noise(160, 120, 1);
+        JpegEncoder encoder = new JpegEncoder();
+        byte[] high = encoder.encodeToArray(image, 0.95f);
+        byte[] low = encoder.encodeToArray(image, 0.3f);
+        BufferedImage decoded = ImageIO.read(new ByteArrayInputStream(high));
+
+        assertEquals(160, decoded.getWidth());
+        assertEquals(120, decoded.getHeight());
+        assertTrue(low.length < high.length);
+    }
+
+    @Test
+    void encode_reusedEncoder_sameOutputForSameInput() throws IOException {
+        BufferedImage image = noise(64, 48, 2);
+        JpegEncoder encoder = new JpegEncoder();
+        byte[] first = encoder.encodeToArray(image, 0.8f);
+        encoder.encodeToArray(noise(320, 240, 3), 0.8f);
+
+        assertArrayEquals(first, encoder.encodeToArray(image, 0.8f));
+    }
+
+    @Test
+    void encodePooled_manyThreads_everyResultMatchesPrivateEncoder_poolBounded() throws Exception {
+        int tasks = 64;
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<byte[]>> results = new ArrayList<>();
+            for (int i = 0; i < tasks; i++) {
+                BufferedImage image = noise(64, 48, i);
+                results.add(pool.submit(() -> JpegEncoder.encodePooled(image, 0.8f, JpegEncoderTest::toArray)));
+            }
+            JpegEncoder reference = new JpegEncoder();
+            for (int i = 0; i < tasks; i++) {
+                assertArrayEquals(reference.encodeToArray(noise(64, 48, i), 0.8f), results.get(i).get(1, TimeUnit.MINUTES));
+            }
+        } finally {
+            pool.shutdown();
+        }
+        assertTrue(JpegEncoder.pooledCount() >= 1);
+        assertTrue(JpegEncoder.pooledCount() <= Runtime.getRuntime().availableProcessors());
+    }
+
+    @Test
+    void encodePooled_readerThrows_encoderStillReturned() throws IOException {
+        JpegEncoder.encodePooled(noise(8, 8, 4), 0.8f, JpegEncoderTest::toArray);
+        int pooled = JpegEncoder.pooledCount();
+
+        assertThrows(IOException.class, () -> JpegEncoder.encodePooled(noise(8, 8, 5), 0.8f, jpeg -> {
+            throw new IOException("reader failure");
+        }));
+        assertEquals(pooled, JpegEncoder.pooledCount());
+    }
+
+    private static byte[] toArray(ByteBuffer jpeg) {
+        byte[] bytes = new byte[jpeg.remaining()];
+        jpeg.get(bytes);
+        return bytes;
+    }
+
+    private static BufferedImage noise(int width, int height, long seed) {
+        Random random = new Random(seed);
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                image.setRGB(x, y, random.nextInt(0x1000000));
+            }
+        }
+        return image;
+    }
+}
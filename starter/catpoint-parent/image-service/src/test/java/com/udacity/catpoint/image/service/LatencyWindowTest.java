@@ -0,0 +1,39 @@
+package com.udacity.catpoint.image.service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class LatencyWindowTest {
+
+    @Test
+    void percentiles_nearestRankOfRecordedSamples() {
+        LatencyWindow window = new LatencyWindow(100);
+        for (int millis = 100; millis >= 1; millis--) {
+            window.record(millis * 1_000_000L);
+        }
+
+        assertEquals(95.0, window.percentileMillis(95));
+        assertEquals(99.0, window.percentileMillis(99));
+        assertEquals(100.0, window.percentileMillis(100));
+        assertEquals(1.0, window.percentileMillis(0));
+    }
+
+    @Test
+    void windowFull_oldestSamplesReplaced() {
+        LatencyWindow window = new LatencyWindow(10);
+        for (int i = 0; i < 10; i++) {
+            window.record(1_000_000_000L);
+        }
+        for (int i = 0; i < 10; i++) {
+            window.record(2_000_000L);
+        }
+
+        assertEquals(2.0, window.percentileMillis(99));
+    }
+
+    @Test
+    void nothingRecorded_zero() {
+        assertEquals(0.0, new LatencyWindow(10).percentileMillis(99));
+    }
+}
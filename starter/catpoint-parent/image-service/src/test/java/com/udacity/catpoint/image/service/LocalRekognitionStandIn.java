@@ -0,0 +1,133 @@
+package com.udacity.catpoint.image.service;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Local HTTP server that answers Rekognition DetectLabels calls with a fixed set of labels after a
+ * configurable delay, so AwsAsyncImageService can be exercised and benchmarked without AWS. Point
+ * the client at it with endpointOverride, for example through AwsAsyncImageService.forEndpoint.
+ *
+ * Requests are not authenticated and the image is not inspected; labels below the request's
+ * MinConfidence are left out of the response as Rekognition would. Responses are scheduled rather
+ * than slept on, so any number of requests can be outstanding at once.
+ *
+ * The JDK server writes headers and body separately, so unless sun.net.httpserver.nodelay is set
+ * every response stalls for the client's delayed ACK (~40ms); the image-service pom sets it for
+ * test runs.
+ */
+public class LocalRekognitionStandIn implements AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(LocalRekognitionStandIn.class);
+
+    private static final Pattern MIN_CONFIDENCE = Pattern.compile("\"MinConfidence\"\\s*:\\s*([0-9.Ee+-]+)");
+
+    private final HttpServer server;
+    private final ExecutorService requestExecutor;
+    private final ScheduledExecutorService responseScheduler;
+    private final long latencyNanos;
+    private final long jitterNanos;
+
+    private volatile Map<String, Float> labels = new LinkedHashMap<>(Map.of("Cat", 97.5f, "Animal", 99.1f));
+    private final LongAdder requests = new LongAdder();
+
+    /**
+     * Starts the server on a free port of the loopback interface.
+     * @param latency Minimum delay before each response
+     * @param jitter Upper bound of a random delay added to each response
+     */
+    public LocalRekognitionStandIn(Duration latency, Duration jitter) throws IOException {
+        this.latencyNanos = latency.toNanos();
+        this.jitterNanos = jitter.toNanos();
+        this.requestExecutor = Executors.newCachedThreadPool(ImageExecutors.daemonThreads("rekognition-stand-in"));
+        this.responseScheduler = Executors.newSingleThreadScheduledExecutor(ImageExecutors.daemonThreads("rekognition-stand-in-timer"));
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        this.server.createContext("/", this::handle);
+        this.server.setExecutor(requestExecutor);
+        this.server.start();
+    }
+
+    /**
+     * Address to use as the client's endpoint override.
+     */
+    public URI getEndpoint() {
+        InetSocketAddress address = server.getAddress();
+        return URI.create("http://" + address.getHostString() + ":" + address.getPort());
+    }
+
+    /**
+     * Replaces the labels returned from now on, mapping each label name to its confidence.
+     */
+    public void setLabels(Map<String, Float> labels) {
+        this.labels = new LinkedHashMap<>(labels);
+    }
+
+    public long getRequestCount() {
+        return requests.sum();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        responseScheduler.shutdownNow();
+        requestExecutor.shutdownNow();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        requests.increment();
+        String body;
+        try (InputStream is = exchange.getRequestBody()) {
+            body = new String(is.readAllBytes(), StandardCharsets.UTF_8);
+        }
+        String target = exchange.getRequestHeaders().getFirst("X-Amz-Target");
+        if (target != null && !target.endsWith(".DetectLabels")) {
+            respond(exchange, 400, "{\"__type\":\"InvalidRequestException\",\"message\":\"Unsupported operation " + target + "\"}");
+            return;
+        }
+
+        Matcher matcher = MIN_CONFIDENCE.matcher(body);
+        float minConfidence = matcher.find() ? Float.parseFloat(matcher.group(1)) : 0;
+        String response = labels.entrySet().stream()
+                .filter(label -> label.getValue() >= minConfidence)
+                .map(label -> String.format(Locale.ROOT,
+                        "{\"Name\":\"%s\",\"Confidence\":%.3f,\"Instances\":[],\"Parents\":[]}", label.getKey(), label.getValue()))
+                .collect(Collectors.joining(",", "{\"Labels\":[", "],\"LabelModelVersion\":\"2.0\"}"));
+
+        long delay = latencyNanos + (jitterNanos > 0 ? ThreadLocalRandom.current().nextLong(jitterNanos) : 0);
+        responseScheduler.schedule(() -> {
+            try {
+                respond(exchange, 200, response);
+            } catch (IOException e) {
+                log.warn("Unable to send stand-in response", e);
+            }
+        }, delay, TimeUnit.NANOSECONDS);
+    }
+
+    private static void respond(HttpExchange exchange, int status, String json) throws IOException {
+        byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/x-amz-json-1.1");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream os = exchange.getResponseBody()) {
+            os.write(bytes);
+        }
+    }
+}
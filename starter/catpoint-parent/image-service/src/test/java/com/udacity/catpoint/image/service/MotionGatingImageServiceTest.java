@@ -0,0 +1,84 @@
+package com.udacity.catpoint.image.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.image.BufferedImage;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MotionGatingImageServiceTest {
+
+    private final AtomicInteger calls = new AtomicInteger();
+
+    //answers each call with a label numbered by the call, so tests can tell which call answered
+    private final ImageService delegate = image -> new ImageClassification(
+            List.of(new ImageLabel("call " + calls.incrementAndGet(), 90.0f)));
+
+    @Test
+    void unchangedFrame_previousClassificationReturned() {
+        MotionGatingImageService service = new MotionGatingImageService(delegate);
+        ImageClassification first = service.classify(flat(100));
+
+        assertSame(first, service.classify(flat(100)));
+        assertEquals(1, calls.get());
+        assertEquals(1, service.getClassifiedCount());
+        assertEquals(1, service.getSkippedCount());
+    }
+
+    @Test
+    void changeBelowThreshold_skipped_changeAboveThreshold_classified() {
+        MotionGatingImageService service = new MotionGatingImageService(delegate, 3.0);
+        service.classify(flat(100));
+        service.classify(flat(102));
+        service.classify(flat(110));
+
+        assertEquals(2, calls.get());
+        assertEquals(1, service.getSkippedCount());
+    }
+
+    @Test
+    void slowDrift_comparedWithLastClassifiedFrame_eventuallyClassified() {
+        MotionGatingImageService service = new MotionGatingImageService(delegate, 3.0);
+        for (int level = 100; level <= 104; level++) {
+            service.classify(flat(level));
+        }
+
+        //each step is below the threshold, but 103 is 3 away from the classified 100
+        assertEquals(2, calls.get());
+    }
+
+    @Test
+    void reset_nextFrameClassified() {
+        MotionGatingImageService service = new MotionGatingImageService(delegate);
+        service.classify(flat(100));
+        service.reset();
+        service.classify(flat(100));
+
+        assertEquals(2, calls.get());
+    }
+
+    @Test
+    void classifyAsync_unchangedFrameAfterCompletion_answeredWithoutDelegate() {
+        MotionGatingImageService service = new MotionGatingImageService(delegate);
+        ImageClassification first = service.classifyAsync(flat(100), Runnable::run).join();
+        CompletableFuture<ImageClassification> second = service.classifyAsync(flat(100), Runnable::run);
+
+        assertTrue(second.isDone());
+        assertSame(first, second.join());
+        assertEquals(1, calls.get());
+    }
+
+    private static BufferedImage flat(int level) {
+        BufferedImage image = new BufferedImage(64, 48, BufferedImage.TYPE_INT_RGB);
+        int rgb = level << 16 | level << 8 | level;
+        for (int y = 0; y < image.getHeight(); y++) {
+            for (int x = 0; x < image.getWidth(); x++) {
+                image.setRGB(x, y, rgb);
+            }
+        }
+        return image;
+    }
+}
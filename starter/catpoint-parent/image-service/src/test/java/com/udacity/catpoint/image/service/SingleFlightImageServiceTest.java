@@ -0,0 +1,204 @@
+package com.udacity.catpoint.image.service;
+
+import com.udacity.catpoint.image.service.SingleFlightImageService.FrameKey;
+import org.junit.jupiter.api.Test;
+
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SingleFlightImageServiceTest {
+
+    private static final ImageClassification CAT = new ImageClassification(List.of(new ImageLabel("Cat", 90.0f)));
+
+    private final AtomicInteger calls = new AtomicInteger();
+    private final CountDownLatch release = new CountDownLatch(1);
+    private volatile Throwable failure;
+
+    /**
+     * Blocks every call until the test releases it, so the callers of a test overlap for certain.
+     */
+    private final ImageService delegate = image -> {
+        calls.incrementAndGet();
+        try {
+            release.await();
+        } catch (InterruptedException e) {
+            throw new IllegalStateException(e);
+        }
+        if (failure instanceof RuntimeException runtimeException) {
+            throw runtimeException;
+        }
+        if (failure instanceof Error error) {
+            throw error;
+        }
+        return CAT;
+    };
+
+    @Test
+    void concurrentClassifyAndClassifyAsync_sameFrame_delegateCalledOnce() throws Exception {
+        SingleFlightImageService service = new SingleFlightImageService(delegate);
+        BufferedImage frame = frame(0);
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        try {
+            CompletableFuture<ImageClassification> async = service.classifyAsync(frame, pool);
+            awaitInFlight(service);
+            List<Future<ImageClassification>> blocking = new ArrayList<>();
+            for (int i = 0; i < 3; i++) {
+                blocking.add(pool.submit(() -> service.classify(frame)));
+            }
+            awaitShared(service, 3);
+            release.countDown();
+
+            assertSame(CAT, async.get(1, TimeUnit.MINUTES));
+            for (Future<ImageClassification> result : blocking) {
+                assertSame(CAT, result.get(1, TimeUnit.MINUTES));
+            }
+        } finally {
+            release.countDown();
+            pool.shutdown();
+        }
+        assertEquals(1, calls.get());
+        assertEquals(1, service.getCallCount());
+        assertEquals(3, service.getSharedCallCount());
+        assertEquals(0, service.getInFlightCount());
+    }
+
+    @Test
+    void delegateFails_failurePropagatesToEveryWaiter() throws Exception {
+        failure = new IllegalStateException("classifier down");
+        SingleFlightImageService service = new SingleFlightImageService(delegate);
+        BufferedImage frame = frame(0);
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        try {
+            CompletableFuture<ImageClassification> first = service.classifyAsync(frame, pool);
+            awaitInFlight(service);
+            CompletableFuture<ImageClassification> second = service.classifyAsync(frame, pool);
+            Future<ImageClassification> blocking = pool.submit(() -> service.classify(frame));
+            awaitShared(service, 2);
+            release.countDown();
+
+            ExecutionException e = assertThrows(ExecutionException.class, () -> first.get(1, TimeUnit.MINUTES));
+            assertSame(failure, e.getCause());
+            e = assertThrows(ExecutionException.class, () -> second.get(1, TimeUnit.MINUTES));
+            assertSame(failure, e.getCause());
+            e = assertThrows(ExecutionException.class, () -> blocking.get(1, TimeUnit.MINUTES));
+            assertSame(failure, e.getCause());
+        } finally {
+            release.countDown();
+            pool.shutdown();
+        }
+        assertEquals(1, calls.get());
+    }
+
+    @Test
+    void delegateThrowsError_waiterReceivesErrorInsteadOfHanging() throws Exception {
+        failure = new StackOverflowError();
+        SingleFlightImageService service = new SingleFlightImageService(delegate);
+        BufferedImage frame = frame(0);
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+        try {
+            Future<ImageClassification> first = pool.submit(() -> service.classify(frame));
+            awaitInFlight(service);
+            Future<ImageClassification> second = pool.submit(() -> service.classify(frame));
+            awaitShared(service, 1);
+            release.countDown();
+
+            ExecutionException e = assertThrows(ExecutionException.class, () -> first.get(1, TimeUnit.MINUTES));
+            assertSame(failure, e.getCause());
+            e = assertThrows(ExecutionException.class, () -> second.get(1, TimeUnit.MINUTES));
+            assertSame(failure, e.getCause());
+        } finally {
+            release.countDown();
+            pool.shutdown();
+        }
+        assertEquals(0, service.getInFlightCount());
+    }
+
+    @Test
+    void oneCallerCancels_otherCallersStillComplete() throws Exception {
+        SingleFlightImageService service = new SingleFlightImageService(delegate);
+        BufferedImage frame = frame(0);
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+        try {
+            CompletableFuture<ImageClassification> first = service.classifyAsync(frame, pool);
+            CompletableFuture<ImageClassification> second = service.classifyAsync(frame, pool);
+            first.cancel(true);
+            release.countDown();
+
+            assertTrue(first.isCancelled());
+            assertSame(CAT, second.get(1, TimeUnit.MINUTES));
+        } finally {
+            release.countDown();
+            pool.shutdown();
+        }
+        assertEquals(1, calls.get());
+    }
+
+    @Test
+    void contentKey_pixelIdenticalCopiesShareCall_identityKeyDoesNot() throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        try {
+            SingleFlightImageService content = new SingleFlightImageService(delegate, FrameKey.CONTENT);
+            CompletableFuture<ImageClassification> original = content.classifyAsync(frame(0), pool);
+            CompletableFuture<ImageClassification> copy = content.classifyAsync(frame(0), pool);
+            CompletableFuture<ImageClassification> different = content.classifyAsync(frame(1), pool);
+            assertEquals(1, content.getSharedCallCount());
+            assertEquals(2, content.getCallCount());
+
+            SingleFlightImageService identity = new SingleFlightImageService(delegate, FrameKey.IDENTITY);
+            CompletableFuture<ImageClassification> first = identity.classifyAsync(frame(0), pool);
+            CompletableFuture<ImageClassification> second = identity.classifyAsync(frame(0), pool);
+            assertEquals(0, identity.getSharedCallCount());
+
+            release.countDown();
+            assertSame(CAT, original.get(1, TimeUnit.MINUTES));
+            assertSame(CAT, copy.get(1, TimeUnit.MINUTES));
+            assertSame(CAT, different.get(1, TimeUnit.MINUTES));
+            assertSame(CAT, first.get(1, TimeUnit.MINUTES));
+            assertSame(CAT, second.get(1, TimeUnit.MINUTES));
+        } finally {
+            release.countDown();
+            pool.shutdown();
+        }
+        assertEquals(4, calls.get());
+    }
+
+    @Test
+    void contentHash_samePixels_sameHash_onePixelChanged_differentHash() {
+        BufferedImage changed = frame(0);
+        changed.setRGB(5, 5, changed.getRGB(5, 5) ^ 1);
+
+        assertEquals(SingleFlightImageService.contentHash(frame(0)), SingleFlightImageService.contentHash(frame(0)));
+        assertNotEquals(SingleFlightImageService.contentHash(frame(0)), SingleFlightImageService.contentHash(changed));
+    }
+
+    private static void awaitInFlight(SingleFlightImageService service) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (service.getInFlightCount() == 0 && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+        assertEquals(1, service.getInFlightCount());
+    }
+
+    private static void awaitShared(SingleFlightImageService service, int shared) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (service.getSharedCallCount() < shared && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+        assertEquals(shared, service.getSharedCallCount());
+    }
+
+    private static BufferedImage frame(int seed) {
+        BufferedImage image = new BufferedImage(32, 24, BufferedImage.TYPE_INT_RGB);
+        for (int y = 0; y < image.getHeight(); y++) {
+            for (int x = 0; x < image.getWidth(); x++) {
+                image.setRGB(x, y, (x * 31 + y * 17 + seed * 101) * 0x010101);
+            }
+        }
+        return image;
+    }
+}
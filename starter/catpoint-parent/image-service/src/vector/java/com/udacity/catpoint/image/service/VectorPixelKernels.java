@@ -0,0 +1,80 @@
+package com.udacity.catpoint.image.service;
+
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * PixelKernels on the incubating Vector API, processing as many pixels per instruction as the CPU's
+ * preferred vector width allows. Compiled only by the vector profile and only loaded when the
+ * jdk.incubator.vector module is present, see ImageKernels. Interleaved byte rasters would need a
+ * gather or shuffle per component, which costs more than it saves, so that kernel stays scalar.
+ */
+final class VectorPixelKernels implements PixelKernels {
+
+    private static final VectorSpecies<Integer> SPECIES = IntVector.SPECIES_PREFERRED;
+    //8-bit differences summed per lane stay far below overflow for blocks of this size
+    private static final int SAD_BLOCK = 1 << 16;
+
+    private final ScalarPixelKernels scalar = new ScalarPixelKernels();
+
+    @Override
+    public void lumaOfPackedRgb(int[] pixels, int offset, int[] out, int length) {
+        int bound = SPECIES.loopBound(length);
+        int i = 0;
+        for (; i < bound; i += SPECIES.length()) {
+            IntVector rgb = IntVector.fromArray(SPECIES, pixels, offset + i);
+            IntVector red = rgb.lanewise(VectorOperators.LSHR, 16).and(0xFF);
+            IntVector green = rgb.lanewise(VectorOperators.LSHR, 8).and(0xFF);
+            IntVector blue = rgb.and(0xFF);
+            red.mul(77).add(green.mul(150)).add(blue.mul(29))
+                    .lanewise(VectorOperators.LSHR, 8)
+                    .intoArray(out, i);
+        }
+        for (; i < length; i++) {
+            int rgb = pixels[offset + i];
+            out[i] = (77 * ((rgb >> 16) & 0xFF) + 150 * ((rgb >> 8) & 0xFF) + 29 * (rgb & 0xFF)) >> 8;
+        }
+    }
+
+    @Override
+    public void lumaOfInterleavedBytes(byte[] data, int redOffset, int greenOffset, int blueOffset, int pixelStride,
+                                       int[] out, int length) {
+        scalar.lumaOfInterleavedBytes(data, redOffset, greenOffset, blueOffset, pixelStride, out, length);
+    }
+
+    @Override
+    public void add(int[] accumulator, int[] values, int length) {
+        int bound = SPECIES.loopBound(length);
+        int i = 0;
+        for (; i < bound; i += SPECIES.length()) {
+            IntVector.fromArray(SPECIES, accumulator, i)
+                    .add(IntVector.fromArray(SPECIES, values, i))
+                    .intoArray(accumulator, i);
+        }
+        for (; i < length; i++) {
+            accumulator[i] += values[i];
+        }
+    }
+
+    @Override
+    public long sumAbsoluteDifference(int[] values1, int[] values2, int length) {
+        int bound = SPECIES.loopBound(length);
+        long sum = 0;
+        int i = 0;
+        while (i < bound) {
+            int blockEnd = Math.min(bound, i + SAD_BLOCK);
+            IntVector lanes = IntVector.zero(SPECIES);
+            for (; i < blockEnd; i += SPECIES.length()) {
+                lanes = lanes.add(IntVector.fromArray(SPECIES, values1, i)
+                        .sub(IntVector.fromArray(SPECIES, values2, i))
+                        .abs());
+            }
+            sum += lanes.reduceLanes(VectorOperators.ADD);
+        }
+        for (; i < length; i++) {
+            sum += Math.abs(values1[i] - values2[i]);
+        }
+        return sum;
+    }
+}
@@ -1,12 +1,21 @@
 package com.udacity.catpoint.security.application;
 
 import com.udacity.catpoint.image.service.FakeImageService;
+import com.udacity.catpoint.image.service.ImageService;
+import com.udacity.catpoint.image.service.MotionGatingImageService;
+import com.udacity.catpoint.image.service.SingleFlightImageService;
 import com.udacity.catpoint.security.data.PretendDatabaseSecurityRepositoryImpl;
 import com.udacity.catpoint.security.data.SecurityRepository;
+import com.udacity.catpoint.security.service.EvidenceRecorder;
+import com.udacity.catpoint.security.service.EvidenceStore;
+import com.udacity.catpoint.security.service.RecordingImageService;
 import com.udacity.catpoint.security.service.SecurityService;
 import net.miginfocom.swing.MigLayout;
 
 import javax.swing.*;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
+import java.nio.file.Path;
 
 /**
  * This is the primary JFrame for the application that contains all the top-level JPanels.
@@ -15,19 +24,35 @@ import javax.swing.*;
  * all our dependencies and providing them to other classes as necessary.
  */
 public class CatpointGui extends JFrame {
-    private SecurityRepository securityRepository = new PretendDatabaseSecurityRepositoryImpl();
-    private FakeImageService imageService = new FakeImageService();
+    private SecurityRepository securityRepository = new PretendDatabaseSecurityRepositoryImpl(PretendDatabaseSecurityRepositoryImpl.DEFAULT_FLUSH_INTERVAL);
+    private EvidenceStore evidenceStore = new EvidenceStore(Path.of(System.getProperty("user.home"), ".catpoint", "evidence"));
+    //the image panel shows one camera at a time, so every scanned frame is stored under one name
+    private RecordingImageService recordingImageService = new RecordingImageService(new FakeImageService(), evidenceStore, "camera");
+    private ImageService imageService = new SingleFlightImageService(new MotionGatingImageService(recordingImageService));
     private SecurityService securityService = new SecurityService(securityRepository, imageService);
     private DisplayPanel displayPanel = new DisplayPanel(securityService);
     private ControlPanel controlPanel = new ControlPanel(securityService);
     private SensorPanel sensorPanel = new SensorPanel(securityService);
-    private ImagePanel imagePanel = new ImagePanel(securityService);
+    private EvidenceRecorder evidenceRecorder = new EvidenceRecorder(evidenceStore);
+    private ImagePanel imagePanel = new ImagePanel(securityService, evidenceRecorder);
 
     public CatpointGui() {
         setLocation(100, 100);
         setSize(600, 850);
         setTitle("Very Secure App");
         setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
+        securityService.setImageResultExecutor(SwingUtilities::invokeLater);
+        securityService.addStatusListener(evidenceRecorder);
+        addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowClosing(WindowEvent e) {
+                //frames still queued for the store are written before it is closed
+                imagePanel.close();
+                evidenceRecorder.close();
+                recordingImageService.close();
+                evidenceStore.close();
+            }
+        });
 
         JPanel mainPanel = new JPanel();
         mainPanel.setLayout(new MigLayout());
@@ -1,8 +1,9 @@
 package com.udacity.catpoint.security.application;
 
+import com.udacity.catpoint.image.service.ImageExecutors;
+import com.udacity.catpoint.image.service.ImageScaling;
 import com.udacity.catpoint.security.data.AlarmStatus;
-import com.udacity.catpoint.security.service.SecurityService;
-import com.udacity.catpoint.security.service.StyleService;
+import com.udacity.catpoint.security.service.*;
 import net.miginfocom.swing.MigLayout;
 
 import javax.imageio.ImageIO;
@@ -11,24 +12,45 @@ import java.awt.*;
 import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.CancellationException;
+import java.util.List;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
 
 /** Panel containing the 'camera' output. Allows users to 'refresh' the camera
  * by uploading their own picture, and 'scan' the picture, sending it for image analysis
  */
 public class ImagePanel extends JPanel implements StatusListener {
     private SecurityService securityService;
+    private EvidenceRecorder evidenceRecorder;
 
     private JLabel cameraHeader;
     private JLabel cameraLabel;
+    private ThumbnailRenderer thumbnailRenderer;
+    //full resolution, for classification; the label only ever holds a thumbnail
     private BufferedImage currentCameraImage;
+    private JButton streamButton;
+    private FrameSource frameSource;
+    private ScanPipeline scanPipeline;
+    private final ExecutorService streamScanExecutor = ImageExecutors.newDefaultExecutor();
 
     private int IMAGE_WIDTH = 300;
     private int IMAGE_HEIGHT = 225;
 
     public ImagePanel(SecurityService securityService) {
+        this(securityService, null);
+    }
+
+    /**
+     * @param evidenceRecorder Buffers streamed frames as alarm evidence, may be null
+     */
+    public ImagePanel(SecurityService securityService, EvidenceRecorder evidenceRecorder) {
         super();
         setLayout(new MigLayout());
         this.securityService = securityService;
+        this.evidenceRecorder = evidenceRecorder;
         securityService.addStatusListener(this);
 
         cameraHeader = new JLabel("Camera Feed");
@@ -38,6 +60,7 @@ public class ImagePanel extends JPanel implements StatusListener {
         cameraLabel.setBackground(Color.WHITE);
         cameraLabel.setPreferredSize(new Dimension(IMAGE_WIDTH, IMAGE_HEIGHT));
         cameraLabel.setBorder(BorderFactory.createLineBorder(Color.DARK_GRAY));
+        thumbnailRenderer = new ThumbnailRenderer(cameraLabel, IMAGE_WIDTH, IMAGE_HEIGHT);
 
         //button allowing users to select a file to be the current camera image
         JButton addPictureButton = new JButton("Refresh Camera");
@@ -49,26 +72,125 @@ public class ImagePanel extends JPanel implements StatusListener {
             if(chooser.showOpenDialog(this) != JFileChooser.APPROVE_OPTION) {
                 return;
             }
+            loadPicture(chooser.getSelectedFile());
+        });
+
+        //button that plays a directory of images or an MJPEG file as a continuous feed, scanning frames as they arrive
+        streamButton = new JButton("Stream Camera");
+        streamButton.addActionListener(e -> {
+            if (frameSource != null) {
+                stopStream();
+                return;
+            }
+            JFileChooser chooser = new JFileChooser();
+            chooser.setCurrentDirectory(new File("."));
+            chooser.setDialogTitle("Select Image Directory or MJPEG File");
+            chooser.setFileSelectionMode(JFileChooser.FILES_AND_DIRECTORIES);
+            if(chooser.showOpenDialog(this) != JFileChooser.APPROVE_OPTION) {
+                return;
+            }
             try {
-                currentCameraImage = ImageIO.read(chooser.getSelectedFile());
-                Image tmp = new ImageIcon(currentCameraImage).getImage();
-                cameraLabel.setIcon(new ImageIcon(tmp.getScaledInstance(IMAGE_WIDTH, IMAGE_HEIGHT, Image.SCALE_SMOOTH)));
-            } catch (IOException |NullPointerException ioe) {
-                JOptionPane.showMessageDialog(null, "Invalid image selected.");
+                startStream(chooser.getSelectedFile().toPath());
+            } catch (IOException ioe) {
+                JOptionPane.showMessageDialog(null, "Unable to open camera stream.");
             }
-            repaint();
         });
 
         //button that sends the image to the image service
         JButton scanPictureButton = new JButton("Scan Picture");
         scanPictureButton.addActionListener(e -> {
-            securityService.processImage(currentCameraImage);
+            securityService.processImageAsync(currentCameraImage).exceptionally(ex -> {
+                Throwable cause = ex instanceof CompletionException ? ex.getCause() : ex;
+                if (!(cause instanceof CancellationException)) {
+                    SwingUtilities.invokeLater(() -> JOptionPane.showMessageDialog(null, "Unable to scan picture."));
+                }
+                return null;
+            });
         });
 
         add(cameraHeader, "span 3, wrap");
         add(cameraLabel, "span 3, wrap");
         add(addPictureButton);
         add(scanPictureButton);
+        add(streamButton);
+    }
+
+    /**
+     * Decodes the picture off the EDT. A subsampled decode is shown first, as it needs only a
+     * fraction of the work of the full decode that follows for classification.
+     */
+    private void loadPicture(File file) {
+        new SwingWorker<BufferedImage, BufferedImage>() {
+            @Override
+            protected BufferedImage doInBackground() throws IOException {
+                BufferedImage preview = ImageScaling.readSubsampled(file, IMAGE_WIDTH, IMAGE_HEIGHT);
+                if (preview == null) {
+                    throw new IOException("Unrecognized image format: " + file);
+                }
+                publish(ImageScaling.scale(preview, IMAGE_WIDTH, IMAGE_HEIGHT));
+                return ImageIO.read(file);
+            }
+
+            @Override
+            protected void process(List<BufferedImage> thumbnails) {
+                thumbnailRenderer.show(thumbnails.get(thumbnails.size() - 1));
+            }
+
+            @Override
+            protected void done() {
+                try {
+                    currentCameraImage = get();
+                } catch (ExecutionException e) {
+                    JOptionPane.showMessageDialog(null, "Invalid image selected.");
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }.execute();
+    }
+
+    private void showFrame(BufferedImage frame) {
+        currentCameraImage = frame;
+        thumbnailRenderer.render(frame);
+    }
+
+    private void startStream(Path path) throws IOException {
+        FrameSource source = path.toFile().isDirectory() ? new DirectoryFrameSource(path, true) : MjpegFrameSource.open(path);
+        //a slow image service should make results stale, not back frames up
+        ScanPipeline pipeline = new ScanPipeline(source.getName(), 1, OverflowPolicy.LATEST_ONLY, streamScanExecutor,
+                frame -> securityService.processImageAsync(frame).join());
+        source.addFrameListener(pipeline::submit);
+        if (evidenceRecorder != null) {
+            source.addFrameListener(frame -> evidenceRecorder.record(source.getName(), frame));
+        }
+        source.addFrameListener(frame -> SwingUtilities.invokeLater(() -> showFrame(frame)));
+        source.getCompletion().whenComplete((ignored, ex) -> SwingUtilities.invokeLater(() -> {
+            if (frameSource == source) {
+                stopStream();
+            }
+        }));
+        frameSource = source;
+        scanPipeline = pipeline;
+        streamButton.setText("Stop Stream");
+        source.start();
+    }
+
+    /**
+     * Stops any running stream and the threads its frames were scanned on. Call when the window closes.
+     */
+    public void close() {
+        if (frameSource != null) {
+            stopStream();
+        }
+        streamScanExecutor.shutdownNow();
+    }
+
+    private void stopStream() {
+        frameSource.close();
+        scanPipeline.close();
+        frameSource = null;
+        scanPipeline = null;
+        streamButton.setText("Stream Camera");
     }
 
     @Override
@@ -0,0 +1,75 @@
+package com.udacity.catpoint.security.application;
+
+import com.udacity.catpoint.image.service.ImageScaling;
+
+import javax.swing.*;
+import java.awt.image.BufferedImage;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Shows frames on a label at a fixed size, scaling them on a SwingWorker so the EDT only ever
+ * swaps in a finished thumbnail. Frames that arrive while one is being scaled replace each other,
+ * so when frames come faster than they can be scaled the label skips to the newest frame instead
+ * of falling behind. Must be called on the EDT.
+ */
+public class ThumbnailRenderer {
+
+    private final JLabel label;
+    private final int width;
+    private final int height;
+
+    private final AtomicReference<BufferedImage> pending = new AtomicReference<>();
+    private SwingWorker<Void, BufferedImage> worker;
+
+    public ThumbnailRenderer(JLabel label, int width, int height) {
+        this.label = label;
+        this.width = width;
+        this.height = height;
+    }
+
+    /**
+     * Scales the frame in the background and shows it once ready, unless a newer frame arrives first.
+     */
+    public void render(BufferedImage frame) {
+        pending.set(frame);
+        if (worker == null) {
+            worker = new ScalingWorker();
+            worker.execute();
+        }
+    }
+
+    /**
+     * Shows a frame that is already the right size, or close to it, without a background pass.
+     */
+    public void show(BufferedImage thumbnail) {
+        label.setIcon(new ImageIcon(thumbnail));
+    }
+
+    private class ScalingWorker extends SwingWorker<Void, BufferedImage> {
+        @Override
+        protected Void doInBackground() {
+            BufferedImage frame;
+            while ((frame = pending.getAndSet(null)) != null) {
+                publish(ImageScaling.scale(frame, width, height));
+            }
+            return null;
+        }
+
+        @Override
+        protected void process(List<BufferedImage> thumbnails) {
+            //publish calls are coalesced, only the newest thumbnail is worth showing
+            show(thumbnails.get(thumbnails.size() - 1));
+        }
+
+        @Override
+        protected void done() {
+            worker = null;
+            //a frame may have arrived after the worker's last check
+            if (pending.get() != null) {
+                worker = new ScalingWorker();
+                worker.execute();
+            }
+        }
+    }
+}
@@ -1,83 +1,232 @@
 package com.udacity.catpoint.security.data;
 
-import com.google.common.reflect.TypeToken;
-import com.google.gson.Gson;
+import com.google.gson.stream.JsonReader;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
-import java.lang.reflect.Type;
-import java.util.Set;
-import java.util.TreeSet;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.prefs.BackingStoreException;
 import java.util.prefs.Preferences;
 
 /**
  * Fake repository implementation for demo purposes. Stores state information in local
  * memory and writes it to user preferences between app loads. This implementation is
  * intentionally a little hard to use in unit tests, so watch out!
+ *
+ * By default every change is written to preferences straight away. In write-behind mode changes
+ * only mark the state dirty, and a background thread writes the latest state at most once per
+ * flush interval, so a burst of sensor toggles costs one rewrite instead of one each. Pending
+ * changes are also written when the JVM shuts down, and callers that need them stored sooner can
+ * call {@link #flush()}.
+ *
+ * Each sensor is stored as JSON in its own preference node, so the sensor count is not bound by
+ * Preferences.MAX_VALUE_LENGTH and changing one sensor rewrites only that sensor's entry. A
+ * manifest, split over as many keys as it needs, lists the sensors that belong to the set: new
+ * entries are written before the manifest and removed ones deleted after it, so an interrupted
+ * write never loses a sensor, and entries the manifest does not list are cleaned up on load.
+ * State saved by older versions as a single JSON string is migrated on first load.
+ *
+ * Sensors are stored in the selected SensorFormat, by default SensorCodec's binary encoding. Entries
+ * found in the other format are rewritten when the repository loads, so switching formats, or
+ * upgrading from the JSON entries of earlier versions, needs no separate migration step.
+ *
+ * In memory, sensors are indexed by id, so updates, removals and lookups never go through the
+ * display ordering; the sorted set returned by getSensors is rebuilt lazily after sensors are
+ * added, removed or updated.
  */
-public class PretendDatabaseSecurityRepositoryImpl implements SecurityRepository{
+public class PretendDatabaseSecurityRepositoryImpl implements SecurityRepository, AutoCloseable {
 
-    private Set<Sensor> sensors;
-    private AlarmStatus alarmStatus;
-    private ArmingStatus armingStatus;
+    private static final Logger log = LoggerFactory.getLogger(PretendDatabaseSecurityRepositoryImpl.class);
+
+    public static final Duration DEFAULT_FLUSH_INTERVAL = Duration.ofMillis(500);
+
+    private Map<UUID, Sensor> sensors;
+    //guarded by this
+    private Set<Sensor> sortedSensors;
+    //written under this, read without it by the getters
+    private volatile AlarmStatus alarmStatus;
+    private volatile ArmingStatus armingStatus;
 
     //preference keys
-    private static final String SENSORS = "SENSORS";
+    private static final String LEGACY_SENSORS = "SENSORS";
     private static final String ALARM_STATUS = "ALARM_STATUS";
     private static final String ARMING_STATUS = "ARMING_STATUS";
+    //child node holding one node per sensor, named by sensor id, plus the manifest
+    private static final String SENSOR_NODE = "sensors";
+    private static final String SENSOR = "SENSOR";
+    private static final String SENSOR_BINARY = "SENSOR_BINARY";
+    private static final String MANIFEST_CHUNKS = "MANIFEST_CHUNKS";
+    private static final String MANIFEST_CHUNK = "MANIFEST_";
+    private static final int IDS_PER_MANIFEST_CHUNK = Preferences.MAX_VALUE_LENGTH / 37;
+
+    //dirty flags
+    private static final int MANIFEST_DIRTY = 1;
+    private static final int ALARM_STATUS_DIRTY = 2;
+    private static final int ARMING_STATUS_DIRTY = 4;
+
+    private static final SensorTypeAdapter sensorAdapter = new SensorTypeAdapter(); //used to serialize sensors into JSON
+    //rough size of a sensor in JSON, to size the list a legacy sensor set is read into
+    private static final int JSON_BYTES_PER_SENSOR = 100;
+
+    private final Preferences prefs;
+    private final Preferences sensorPrefs;
+    private final SensorFormat format;
+
+    //write-behind state, unused when writing through
+    private final long flushIntervalNanos;
+    private final ScheduledExecutorService flusher;
+    private final Thread shutdownHook;
+    //guarded by this
+    private int dirty;
+    private final Set<UUID> dirtySensors = new HashSet<>();
+    private int pendingChanges;
+    private boolean flushScheduled;
+    private long lastFlushNanos;
+    //held while writing to preferences, so an older state can never overwrite a newer one
+    private final Object writeLock = new Object();
 
-    private static final Preferences prefs = Preferences.userNodeForPackage(PretendDatabaseSecurityRepositoryImpl.class);
-    private static final Gson gson = new Gson(); //used to serialize objects into JSON
+    private final LongAdder writes = new LongAdder();
+    private final LongAdder coalescedWrites = new LongAdder();
 
     public PretendDatabaseSecurityRepositoryImpl() {
+        this(Duration.ZERO);
+    }
+
+    /**
+     * @param flushInterval Minimum time between writes to preferences in write-behind mode, or
+     *                      zero to write every change straight away
+     */
+    public PretendDatabaseSecurityRepositoryImpl(Duration flushInterval) {
+        this(flushInterval, SensorFormat.BINARY);
+    }
+
+    /**
+     * @param format Format sensors are written in; entries stored in the other format are rewritten on load
+     */
+    public PretendDatabaseSecurityRepositoryImpl(Duration flushInterval, SensorFormat format) {
+        this(Preferences.userNodeForPackage(PretendDatabaseSecurityRepositoryImpl.class), flushInterval, format);
+    }
+
+    /**
+     * @param prefs Node the state is stored in, instead of the user preferences for this package
+     */
+    public PretendDatabaseSecurityRepositoryImpl(Preferences prefs, Duration flushInterval, SensorFormat format) {
+        this.prefs = prefs;
+        this.sensorPrefs = prefs.node(SENSOR_NODE);
+        this.format = format;
+
         //load system state from prefs, or else default
         alarmStatus = AlarmStatus.valueOf(prefs.get(ALARM_STATUS, AlarmStatus.NO_ALARM.toString()));
         armingStatus = ArmingStatus.valueOf(prefs.get(ARMING_STATUS, ArmingStatus.DISARMED.toString()));
 
         //we've serialized our sensor objects for storage, which should be a good warning sign that
         // this is likely an impractical solution for a real system
-        String sensorString = prefs.get(SENSORS, null);
-        if(sensorString == null) {
-            sensors = new TreeSet<>();
+        String legacySensors = prefs.get(LEGACY_SENSORS, null);
+        if (legacySensors != null) {
+            try {
+                List<Sensor> legacy = sensorAdapter.readAll(new JsonReader(new StringReader(legacySensors)),
+                        legacySensors.length() / JSON_BYTES_PER_SENSOR);
+                sensors = new HashMap<>(legacy.size() * 4 / 3 + 1);
+                for (Sensor sensor : legacy) {
+                    sensors.put(sensor.getSensorId(), sensor);
+                }
+            } catch (IOException e) {
+                throw new IllegalStateException("Unable to read sensors from preferences", e);
+            }
+            migrateLegacySensors();
+        } else {
+            sensors = loadSensors();
+            if (!dirtySensors.isEmpty()) {
+                log.info("Rewriting {} sensors as {}", dirtySensors.size(), format);
+                writeDirty();
+            }
+        }
+
+        flushIntervalNanos = flushInterval.toNanos();
+        if (flushIntervalNanos > 0) {
+            flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "prefs-flusher");
+                t.setDaemon(true);
+                return t;
+            });
+            shutdownHook = new Thread(this::flushQuietly, "prefs-shutdown-flush");
+            Runtime.getRuntime().addShutdownHook(shutdownHook);
         } else {
-            Type type = new TypeToken<Set<Sensor>>() {
-            }.getType();
-            sensors = gson.fromJson(sensorString, type);
+            flusher = null;
+            shutdownHook = null;
         }
+        lastFlushNanos = System.nanoTime() - flushIntervalNanos;
     }
 
     @Override
     public void addSensor(Sensor sensor) {
-        sensors.add(sensor);
-        prefs.put(SENSORS, gson.toJson(sensors));
+        update(() -> putSensor(sensor));
     }
 
     @Override
     public void removeSensor(Sensor sensor) {
-        sensors.remove(sensor);
-        prefs.put(SENSORS, gson.toJson(sensors));
+        update(() -> {
+            if (sensors.remove(sensor.getSensorId()) != null) {
+                sortedSensors = null;
+                markSensor(sensor.getSensorId());
+                mark(MANIFEST_DIRTY);
+            }
+        });
     }
 
     @Override
     public void updateSensor(Sensor sensor) {
-        sensors.remove(sensor);
-        sensors.add(sensor);
-        prefs.put(SENSORS, gson.toJson(sensors));
+        update(() -> putSensor(sensor));
+    }
+
+    @Override
+    public void updateSensors(Collection<Sensor> updated) {
+        update(() -> {
+            for (Sensor sensor : updated) {
+                putSensor(sensor);
+            }
+        });
     }
 
     @Override
     public void setAlarmStatus(AlarmStatus alarmStatus) {
-        this.alarmStatus = alarmStatus;
-        prefs.put(ALARM_STATUS, this.alarmStatus.toString());
+        update(() -> {
+            this.alarmStatus = alarmStatus;
+            mark(ALARM_STATUS_DIRTY);
+        });
     }
 
     @Override
     public void setArmingStatus(ArmingStatus armingStatus) {
-        this.armingStatus = armingStatus;
-        prefs.put(ARMING_STATUS, this.armingStatus.toString());
+        update(() -> {
+            this.armingStatus = armingStatus;
+            mark(ARMING_STATUS_DIRTY);
+        });
+    }
+
+    /**
+     * Returns a sorted, read-only view of the sensors. The view is rebuilt lazily after
+     * sensors are added, removed or updated.
+     */
+    @Override
+    public synchronized Set<Sensor> getSensors() {
+        if (sortedSensors == null) {
+            sortedSensors = Collections.unmodifiableSet(new TreeSet<>(sensors.values()));
+        }
+        return sortedSensors;
     }
 
     @Override
-    public Set<Sensor> getSensors() {
-        return sensors;
+    public synchronized Sensor findSensor(UUID sensorId) {
+        return sensors.get(sensorId);
     }
 
     @Override
@@ -89,4 +238,303 @@ public class PretendDatabaseSecurityRepositoryImpl implements SecurityRepository
     public ArmingStatus getArmingStatus() {
         return armingStatus;
     }
+
+    /**
+     * Writes any pending changes to preferences and forces them to the backing store.
+     */
+    public void flush() throws BackingStoreException {
+        writeDirty();
+        prefs.flush();
+    }
+
+    /**
+     * Number of entries written to preferences: a sensor written or removed, the manifest, the
+     * alarm status or the arming status.
+     */
+    public long getWriteCount() {
+        return writes.sum();
+    }
+
+    /**
+     * Number of times an entry was changed without needing a write of its own, because a later
+     * write of the same entry covered it.
+     */
+    public long getCoalescedWriteCount() {
+        return coalescedWrites.sum();
+    }
+
+    /**
+     * Writes pending changes and stops the background flusher; later changes are written straight
+     * away. Does nothing when writing through.
+     */
+    @Override
+    public void close() {
+        if (flusher == null) {
+            return;
+        }
+        flusher.shutdownNow();
+        flushQuietly();
+        try {
+            Runtime.getRuntime().removeShutdownHook(shutdownHook);
+        } catch (IllegalStateException e) {
+            //already shutting down, the hook flushes anyway
+        }
+    }
+
+    /**
+     * Stores the sensor under its id and marks it dirty, along with the manifest if the id is new.
+     * The sorted view is dropped even when the same instance is stored again, since its name or
+     * type, which the view is ordered by, may have been changed in place.
+     */
+    private void putSensor(Sensor sensor) {
+        Sensor previous = sensors.put(sensor.getSensorId(), sensor);
+        sortedSensors = null;
+        if (previous == null) {
+            mark(MANIFEST_DIRTY);
+        }
+        markSensor(sensor.getSensorId());
+    }
+
+    private void mark(int flag) {
+        dirty |= flag;
+        pendingChanges++;
+    }
+
+    private void markSensor(UUID sensorId) {
+        dirtySensors.add(sensorId);
+        pendingChanges++;
+    }
+
+    /**
+     * Applies a change to the in-memory state under the monitor, then writes the entries it marked
+     * dirty straight away when writing through or once closed. The write happens after the monitor
+     * is released, under the write lock like every other write.
+     */
+    private void update(Runnable change) {
+        boolean writeNow;
+        synchronized (this) {
+            change.run();
+            writeNow = changed();
+        }
+        if (writeNow) {
+            writeDirty();
+        }
+    }
+
+    /**
+     * Called while holding the monitor after marking entries dirty. In write-behind mode schedules
+     * a write no sooner than one flush interval after the previous one.
+     * @return Whether the caller should write the changes straight away instead
+     */
+    private boolean changed() {
+        if (pendingChanges == 0) {
+            return false;
+        }
+        if (flusher == null || flusher.isShutdown()) {
+            return true;
+        }
+        if (!flushScheduled) {
+            flushScheduled = true;
+            long delay = Math.max(0, lastFlushNanos + flushIntervalNanos - System.nanoTime());
+            flusher.schedule(this::flushQuietly, delay, TimeUnit.NANOSECONDS);
+        }
+        return false;
+    }
+
+    private void flushQuietly() {
+        try {
+            writeDirty();
+        } catch (RuntimeException e) {
+            log.warn("Unable to write security state to preferences", e);
+        }
+    }
+
+    /**
+     * Every write of the state goes through here, so snapshots reach preferences in the order
+     * they were taken. Only loading, before the repository is shared, touches preferences otherwise.
+     */
+    private void writeDirty() {
+        synchronized (writeLock) {
+            Snapshot snapshot;
+            synchronized (this) {
+                snapshot = takeSnapshot();
+            }
+            write(snapshot);
+        }
+    }
+
+    /**
+     * Serializes the dirty state and clears the dirty flags. Must be called while holding the monitor.
+     */
+    private Snapshot takeSnapshot() {
+        //changed sensors mapped to their encoding, or to null if they were removed
+        Map<UUID, byte[]> sensorEntries = new HashMap<>();
+        for (UUID sensorId : dirtySensors) {
+            Sensor sensor = sensors.get(sensorId);
+            sensorEntries.put(sensorId, sensor != null ? encode(sensor) : null);
+        }
+        List<UUID> manifest = (dirty & MANIFEST_DIRTY) != 0 ? new ArrayList<>(sensors.keySet()) : null;
+        Snapshot snapshot = new Snapshot(
+                sensorEntries,
+                manifest,
+                (dirty & ALARM_STATUS_DIRTY) != 0 ? alarmStatus.toString() : null,
+                (dirty & ARMING_STATUS_DIRTY) != 0 ? armingStatus.toString() : null,
+                pendingChanges);
+        dirty = 0;
+        dirtySensors.clear();
+        pendingChanges = 0;
+        flushScheduled = false;
+        lastFlushNanos = System.nanoTime();
+        return snapshot;
+    }
+
+    private void write(Snapshot snapshot) {
+        int written = 0;
+        try {
+            for (Map.Entry<UUID, byte[]> entry : snapshot.sensorEntries.entrySet()) {
+                if (entry.getValue() != null) {
+                    writeSensor(sensorPrefs.node(entry.getKey().toString()), entry.getValue());
+                    written++;
+                }
+            }
+            if (snapshot.manifest != null) {
+                writeManifest(snapshot.manifest);
+                written++;
+            }
+            for (Map.Entry<UUID, byte[]> entry : snapshot.sensorEntries.entrySet()) {
+                if (entry.getValue() == null && sensorPrefs.nodeExists(entry.getKey().toString())) {
+                    sensorPrefs.node(entry.getKey().toString()).removeNode();
+                    written++;
+                }
+            }
+        } catch (BackingStoreException e) {
+            throw new IllegalStateException("Unable to write sensors to preferences", e);
+        }
+        if (snapshot.alarmStatus != null) {
+            prefs.put(ALARM_STATUS, snapshot.alarmStatus);
+            written++;
+        }
+        if (snapshot.armingStatus != null) {
+            prefs.put(ARMING_STATUS, snapshot.armingStatus);
+            written++;
+        }
+        writes.add(written);
+        coalescedWrites.add(snapshot.changes - written);
+    }
+
+    private byte[] encode(Sensor sensor) {
+        return format == SensorFormat.BINARY ? SensorCodec.encode(sensor) : sensorAdapter.toJson(sensor).getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Stores an encoded sensor under the key of the current format and removes any entry left in
+     * the other format.
+     */
+    private void writeSensor(Preferences node, byte[] encoded) {
+        if (format == SensorFormat.BINARY) {
+            node.putByteArray(SENSOR_BINARY, encoded);
+            if (node.get(SENSOR, null) != null) {
+                node.remove(SENSOR);
+            }
+        } else {
+            node.put(SENSOR, new String(encoded, StandardCharsets.UTF_8));
+            if (node.get(SENSOR_BINARY, null) != null) {
+                node.remove(SENSOR_BINARY);
+            }
+        }
+    }
+
+    /**
+     * Writes the list of sensor ids in chunks that fit a preference value and drops chunks left
+     * over from a longer list.
+     */
+    private void writeManifest(List<UUID> sensorIds) throws BackingStoreException {
+        int chunks = (sensorIds.size() + IDS_PER_MANIFEST_CHUNK - 1) / IDS_PER_MANIFEST_CHUNK;
+        int previousChunks = sensorPrefs.getInt(MANIFEST_CHUNKS, 0);
+        for (int chunk = 0; chunk < chunks; chunk++) {
+            StringJoiner ids = new StringJoiner(",");
+            for (UUID sensorId : sensorIds.subList(chunk * IDS_PER_MANIFEST_CHUNK,
+                    Math.min(sensorIds.size(), (chunk + 1) * IDS_PER_MANIFEST_CHUNK))) {
+                ids.add(sensorId.toString());
+            }
+            sensorPrefs.put(MANIFEST_CHUNK + chunk, ids.toString());
+        }
+        sensorPrefs.putInt(MANIFEST_CHUNKS, chunks);
+        for (int chunk = chunks; chunk < previousChunks; chunk++) {
+            sensorPrefs.remove(MANIFEST_CHUNK + chunk);
+        }
+    }
+
+    /**
+     * Reads every sensor listed in the manifest, then removes entries it does not list, which an
+     * interrupted write can leave behind. Sensors stored in the other format are marked dirty so
+     * they can be rewritten.
+     */
+    private Map<UUID, Sensor> loadSensors() {
+        int chunks = sensorPrefs.getInt(MANIFEST_CHUNKS, 0);
+        Set<String> listed = new HashSet<>(chunks * IDS_PER_MANIFEST_CHUNK * 4 / 3 + 1);
+        for (int chunk = 0; chunk < chunks; chunk++) {
+            String ids = sensorPrefs.get(MANIFEST_CHUNK + chunk, "");
+            if (!ids.isEmpty()) {
+                listed.addAll(Arrays.asList(ids.split(",")));
+            }
+        }
+        Map<UUID, Sensor> loaded = new HashMap<>(listed.size() * 4 / 3 + 1);
+        try {
+            for (String sensorId : listed) {
+                Sensor sensor = sensorPrefs.nodeExists(sensorId) ? readSensor(sensorPrefs.node(sensorId)) : null;
+                if (sensor != null) {
+                    loaded.put(sensor.getSensorId(), sensor);
+                }
+            }
+            for (String child : sensorPrefs.childrenNames()) {
+                if (!listed.contains(child)) {
+                    sensorPrefs.node(child).removeNode();
+                }
+            }
+        } catch (BackingStoreException e) {
+            log.warn("Unable to read sensors from preferences", e);
+        }
+        return loaded;
+    }
+
+    /**
+     * Reads a sensor in whichever format it was stored, marking it dirty if that is not the current one.
+     * @return The sensor, or null if the node holds none or it cannot be decoded
+     */
+    private Sensor readSensor(Preferences node) {
+        byte[] binary = node.getByteArray(SENSOR_BINARY, null);
+        String json = binary == null ? node.get(SENSOR, null) : null;
+        if (binary == null && json == null) {
+            return null;
+        }
+        Sensor sensor;
+        try {
+            sensor = binary != null ? SensorCodec.decodeSensor(binary) : sensorAdapter.fromJson(json);
+        } catch (IOException | RuntimeException e) {
+            //corrupt entries can also surface as buffer underflows, bad indexes or JSON parse errors
+            log.warn("Unable to decode sensor " + node.name(), e);
+            return null;
+        }
+        if (sensor != null && (binary != null) != (format == SensorFormat.BINARY)) {
+            markSensor(sensor.getSensorId());
+        }
+        return sensor;
+    }
+
+    /**
+     * Rewrites sensors stored as one JSON string in per-sensor entries and removes the old key.
+     */
+    private void migrateLegacySensors() {
+        for (UUID sensorId : sensors.keySet()) {
+            markSensor(sensorId);
+        }
+        mark(MANIFEST_DIRTY);
+        writeDirty();
+        prefs.remove(LEGACY_SENSORS);
+    }
+
+    private record Snapshot(Map<UUID, byte[]> sensorEntries, List<UUID> manifest, String alarmStatus,
+                            String armingStatus, int changes) {
+    }
 }
@@ -12,7 +12,8 @@ import java.util.UUID;
 public class Sensor implements Comparable<Sensor> {
     private UUID sensorId;
     private String name;
-    private Boolean active;
+    //written by ConcurrentSecurityService from several threads
+    private volatile Boolean active;
     private SensorType sensorType;
 
     public Sensor() {
@@ -0,0 +1,399 @@
+package com.udacity.catpoint.security.data;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * Compact binary encoding of sensors and the alarm and arming status, replacing reflective JSON.
+ * A document starts with a header
+ *      [int magic "CPSB"][byte version][byte alarm status ordinal][byte arming status ordinal]
+ * where a status of -1 means absent, followed by one record per sensor and an end tag:
+ *      [byte 1][long id msb][long id lsb][byte sensor type ordinal][byte flags][varint name]
+ *      [byte 0]
+ * Flags hold whether the sensor is active and whether its active state or type is null. Names are
+ * kept in a dictionary built up as the document is read: a name is written out in full, as its
+ * UTF-8 length and bytes, the first time it appears and as a reference to that entry afterwards.
+ * Sensors can be written and read one at a time through a reused ByteBuffer, so encoding or
+ * decoding a large set never needs the whole document in memory.
+ */
+public final class SensorCodec {
+
+    public static final byte VERSION = 1;
+
+    private static final int MAGIC = 0x43505342; // "CPSB"
+    private static final int HEADER_BYTES = Integer.BYTES + 3;
+    private static final byte END = 0;
+    private static final byte SENSOR = 1;
+    private static final int SENSOR_BYTES = 1 + 2 * Long.BYTES + 2;
+    private static final int MAX_VARINT_BYTES = 5;
+    private static final int DEFAULT_BUFFER_SIZE = 8 * 1024;
+
+    //sensor flags
+    private static final int ACTIVE = 1;
+    private static final int ACTIVE_NULL = 2;
+    private static final int TYPE_NULL = 4;
+
+    private SensorCodec() {
+    }
+
+    /**
+     * Encodes a whole sensor set with the alarm and arming status, either of which may be null.
+     */
+    public static byte[] encode(Collection<Sensor> sensors, AlarmStatus alarmStatus, ArmingStatus armingStatus) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(HEADER_BYTES + sensors.size() * (SENSOR_BYTES + 8) + 1);
+        try (Encoder encoder = new Encoder(Channels.newChannel(out), ByteBuffer.allocate(DEFAULT_BUFFER_SIZE), alarmStatus, armingStatus)) {
+            for (Sensor sensor : sensors) {
+                encoder.write(sensor);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Encodes a single sensor without status, as a document holding just that sensor. The record is
+     * written straight into an array of exactly its size; its name, if any, is always the first
+     * dictionary entry, so no dictionary needs to be kept.
+     */
+    public static byte[] encode(Sensor sensor) {
+        checkId(sensor);
+        byte[] name = sensor.getName() == null ? null : sensor.getName().getBytes(StandardCharsets.UTF_8);
+        int nameBytes = name == null ? 1 : 1 + varintSize(name.length) + name.length;
+        ByteBuffer out = ByteBuffer.allocate(HEADER_BYTES + SENSOR_BYTES + nameBytes + 1);
+        putHeader(out, null, null);
+        putSensor(out, sensor);
+        if (name == null) {
+            putVarint(out, 0);
+        } else {
+            putVarint(out, 1);
+            putVarint(out, name.length);
+            out.put(name);
+        }
+        out.put(END);
+        return out.array();
+    }
+
+    public static Document decode(ByteBuffer in) throws IOException {
+        Decoder decoder = new Decoder(in);
+        List<Sensor> sensors = new ArrayList<>();
+        Sensor sensor;
+        while ((sensor = decoder.next()) != null) {
+            sensors.add(sensor);
+        }
+        return new Document(sensors, decoder.getAlarmStatus(), decoder.getArmingStatus());
+    }
+
+    /**
+     * Decodes a document holding exactly one sensor, as written by encode(Sensor).
+     */
+    public static Sensor decodeSensor(byte[] bytes) throws IOException {
+        List<Sensor> sensors = decode(ByteBuffer.wrap(bytes)).sensors();
+        if (sensors.size() != 1) {
+            throw new IOException("Expected a single sensor but found " + sensors.size());
+        }
+        return sensors.get(0);
+    }
+
+    /**
+     * Whether the bytes start with this codec's header, as opposed to JSON or anything else.
+     */
+    public static boolean isEncoded(byte[] bytes) {
+        return bytes.length >= HEADER_BYTES && ByteBuffer.wrap(bytes).getInt() == MAGIC;
+    }
+
+    public record Document(List<Sensor> sensors, AlarmStatus alarmStatus, ArmingStatus armingStatus) {
+    }
+
+    /**
+     * Writes a document to a channel, one sensor at a time, through the given buffer. The buffer is
+     * written out whenever the next record does not fit, and once more on close, which also writes
+     * the end tag. The channel itself is not closed.
+     */
+    public static final class Encoder implements AutoCloseable {
+        private final WritableByteChannel channel;
+        private ByteBuffer buffer;
+        private final Map<String, Integer> dictionary = new HashMap<>();
+        private boolean closed;
+
+        public Encoder(WritableByteChannel channel, ByteBuffer buffer, AlarmStatus alarmStatus, ArmingStatus armingStatus) throws IOException {
+            this.channel = channel;
+            this.buffer = buffer.clear();
+            //may replace a buffer too small for the header
+            ensureRoom(HEADER_BYTES);
+            putHeader(this.buffer, alarmStatus, armingStatus);
+        }
+
+        public void write(Sensor sensor) throws IOException {
+            checkId(sensor);
+            ensureRoom(SENSOR_BYTES + MAX_VARINT_BYTES);
+            putSensor(buffer, sensor);
+            writeName(sensor.getName());
+        }
+
+        /**
+         * Writes the end tag and any buffered bytes.
+         */
+        @Override
+        public void close() throws IOException {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            ensureRoom(1);
+            buffer.put(END);
+            drain();
+        }
+
+        /**
+         * Writes 0 for no name, the entry number plus one for a name already in the dictionary, or
+         * the next entry number plus one followed by the name itself for a new name.
+         */
+        private void writeName(String name) throws IOException {
+            if (name == null) {
+                putVarint(buffer, 0);
+                return;
+            }
+            Integer entry = dictionary.get(name);
+            if (entry != null) {
+                putVarint(buffer, entry + 1);
+                return;
+            }
+            dictionary.put(name, dictionary.size());
+            putVarint(buffer, dictionary.size());
+            byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+            ensureRoom(MAX_VARINT_BYTES + bytes.length);
+            putVarint(buffer, bytes.length);
+            buffer.put(bytes);
+        }
+
+        private void ensureRoom(int bytes) throws IOException {
+            if (buffer.remaining() >= bytes) {
+                return;
+            }
+            drain();
+            if (buffer.capacity() < bytes) {
+                buffer = ByteBuffer.allocate(bytes);
+            }
+        }
+
+        private void drain() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+    }
+
+    /**
+     * Reads a document one sensor at a time, either from a buffer holding all of it or from a
+     * channel through a reused buffer that is refilled as records are consumed.
+     */
+    public static final class Decoder {
+        private final ReadableByteChannel channel;
+        private ByteBuffer buffer;
+        private final List<String> dictionary = new ArrayList<>();
+        private final byte version;
+        private final AlarmStatus alarmStatus;
+        private final ArmingStatus armingStatus;
+        private boolean finished;
+
+        public Decoder(ByteBuffer in) throws IOException {
+            this(null, in);
+        }
+
+        /**
+         * @param buffer Buffer to read through; it is cleared before use
+         */
+        public Decoder(ReadableByteChannel channel, ByteBuffer buffer) throws IOException {
+            this.channel = channel;
+            this.buffer = channel == null ? buffer : buffer.clear().flip();
+            require(HEADER_BYTES);
+            if (this.buffer.getInt() != MAGIC) {
+                throw new IOException("Not a binary sensor document");
+            }
+            version = this.buffer.get();
+            if (version < 1 || version > VERSION) {
+                throw new IOException("Unsupported sensor format version " + version);
+            }
+            alarmStatus = enumOf(AlarmStatus.values(), this.buffer.get());
+            armingStatus = enumOf(ArmingStatus.values(), this.buffer.get());
+        }
+
+        public byte getVersion() {
+            return version;
+        }
+
+        public AlarmStatus getAlarmStatus() {
+            return alarmStatus;
+        }
+
+        public ArmingStatus getArmingStatus() {
+            return armingStatus;
+        }
+
+        /**
+         * @return The next sensor, or null once the end tag has been read
+         */
+        public Sensor next() throws IOException {
+            if (finished) {
+                return null;
+            }
+            require(1);
+            byte tag = buffer.get();
+            if (tag == END) {
+                finished = true;
+                return null;
+            }
+            if (tag != SENSOR) {
+                throw new IOException("Unknown sensor record tag " + tag);
+            }
+            require(SENSOR_BYTES - 1);
+            Sensor sensor = new Sensor();
+            sensor.setSensorId(new UUID(buffer.getLong(), buffer.getLong()));
+            byte type = buffer.get();
+            int flags = buffer.get();
+            sensor.setSensorType((flags & TYPE_NULL) != 0 ? null : enumOf(SensorType.values(), type));
+            sensor.setActive((flags & ACTIVE_NULL) != 0 ? null : (flags & ACTIVE) != 0);
+            sensor.setName(readName());
+            return sensor;
+        }
+
+        private String readName() throws IOException {
+            int reference = readVarint();
+            if (reference < 0) {
+                throw new IOException("Invalid sensor name reference " + reference);
+            }
+            if (reference == 0) {
+                return null;
+            }
+            if (reference <= dictionary.size()) {
+                return dictionary.get(reference - 1);
+            }
+            if (reference != dictionary.size() + 1) {
+                throw new IOException("Invalid sensor name reference " + reference);
+            }
+            int length = readVarint();
+            if (length < 0) {
+                throw new IOException("Invalid sensor name length " + length);
+            }
+            require(length);
+            String name;
+            if (buffer.hasArray()) {
+                name = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length, StandardCharsets.UTF_8);
+                buffer.position(buffer.position() + length);
+            } else {
+                byte[] bytes = new byte[length];
+                buffer.get(bytes);
+                name = new String(bytes, StandardCharsets.UTF_8);
+            }
+            dictionary.add(name);
+            return name;
+        }
+
+        private int readVarint() throws IOException {
+            int value = 0;
+            for (int shift = 0; shift < 35; shift += 7) {
+                require(1);
+                byte b = buffer.get();
+                value |= (b & 0x7F) << shift;
+                if (b >= 0) {
+                    return value;
+                }
+            }
+            throw new IOException("Malformed varint");
+        }
+
+        /**
+         * Makes sure at least the given number of bytes can be read from the buffer, refilling it
+         * from the channel if there is one.
+         */
+        private void require(int bytes) throws IOException {
+            if (buffer.remaining() >= bytes) {
+                return;
+            }
+            if (channel == null) {
+                throw new EOFException("Truncated sensor document");
+            }
+            if (buffer.capacity() < bytes) {
+                buffer = ByteBuffer.allocate(bytes).put(buffer).flip();
+            }
+            buffer.compact();
+            while (buffer.position() < bytes) {
+                if (channel.read(buffer) < 0) {
+                    throw new EOFException("Truncated sensor document");
+                }
+            }
+            buffer.flip();
+        }
+
+        private static <E extends Enum<E>> E enumOf(E[] values, byte ordinal) throws IOException {
+            if (ordinal == -1) {
+                return null;
+            }
+            if (ordinal < 0 || ordinal >= values.length) {
+                throw new IOException("Invalid ordinal " + ordinal + " for " + values.getClass().getComponentType().getSimpleName());
+            }
+            return values[ordinal];
+        }
+    }
+
+    private static void checkId(Sensor sensor) {
+        if (sensor.getSensorId() == null) {
+            throw new IllegalArgumentException("Sensor has no id");
+        }
+    }
+
+    private static void putHeader(ByteBuffer buffer, AlarmStatus alarmStatus, ArmingStatus armingStatus) {
+        buffer.putInt(MAGIC);
+        buffer.put(VERSION);
+        buffer.put(alarmStatus == null ? -1 : (byte) alarmStatus.ordinal());
+        buffer.put(armingStatus == null ? -1 : (byte) armingStatus.ordinal());
+    }
+
+    /**
+     * Writes a sensor record up to, but not including, its name.
+     */
+    private static void putSensor(ByteBuffer buffer, Sensor sensor) {
+        buffer.put(SENSOR);
+        buffer.putLong(sensor.getSensorId().getMostSignificantBits());
+        buffer.putLong(sensor.getSensorId().getLeastSignificantBits());
+        buffer.put(sensor.getSensorType() == null ? 0 : (byte) sensor.getSensorType().ordinal());
+        int flags = 0;
+        if (sensor.getActive() == null) {
+            flags |= ACTIVE_NULL;
+        } else if (sensor.getActive()) {
+            flags |= ACTIVE;
+        }
+        if (sensor.getSensorType() == null) {
+            flags |= TYPE_NULL;
+        }
+        buffer.put((byte) flags);
+    }
+
+    private static int varintSize(int value) {
+        int size = 1;
+        while ((value & ~0x7F) != 0) {
+            value >>>= 7;
+            size++;
+        }
+        return size;
+    }
+
+    private static void putVarint(ByteBuffer buffer, int value) {
+        while ((value & ~0x7F) != 0) {
+            buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+}
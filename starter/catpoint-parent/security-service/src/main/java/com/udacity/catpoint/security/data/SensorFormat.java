@@ -0,0 +1,11 @@
+package com.udacity.catpoint.security.data;
+
+/**
+ * How a repository stores each sensor.
+ */
+public enum SensorFormat {
+    /** JSON streamed through SensorTypeAdapter, readable but larger and slower to parse than binary. */
+    JSON,
+    /** SensorCodec's compact binary encoding. */
+    BINARY
+}
@@ -0,0 +1,118 @@
+package com.udacity.catpoint.security.data;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Reads and writes sensors straight from and to the JSON stream, producing the same JSON as Gson's
+ * reflective adapter without reflection or an intermediate tree. Names are interned in a table
+ * owned by the adapter, since most sites reuse a handful of names across many sensors; the table is
+ * cheaper to consult than String.intern and stops growing once it holds MAX_INTERNED_NAMES.
+ */
+public class SensorTypeAdapter extends TypeAdapter<Sensor> {
+
+    private static final String SENSOR_ID = "sensorId";
+    private static final String NAME = "name";
+    private static final String ACTIVE = "active";
+    private static final String SENSOR_TYPE = "sensorType";
+    private static final int MAX_INTERNED_NAMES = 4096;
+
+    private final Map<String, String> names = new ConcurrentHashMap<>();
+
+    @Override
+    public void write(JsonWriter out, Sensor sensor) throws IOException {
+        if (sensor == null) {
+            out.nullValue();
+            return;
+        }
+        //null fields are left out, as Gson does by default, whether or not the writer serializes nulls
+        out.beginObject();
+        if (sensor.getSensorId() != null) {
+            out.name(SENSOR_ID).value(sensor.getSensorId().toString());
+        }
+        if (sensor.getName() != null) {
+            out.name(NAME).value(sensor.getName());
+        }
+        if (sensor.getActive() != null) {
+            out.name(ACTIVE).value(sensor.getActive());
+        }
+        if (sensor.getSensorType() != null) {
+            out.name(SENSOR_TYPE).value(sensor.getSensorType().name());
+        }
+        out.endObject();
+    }
+
+    @Override
+    public Sensor read(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        Sensor sensor = new Sensor();
+        in.beginObject();
+        while (in.hasNext()) {
+            String field = in.nextName();
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                continue;
+            }
+            switch (field) {
+                case SENSOR_ID -> sensor.setSensorId(UUID.fromString(in.nextString()));
+                case NAME -> sensor.setName(intern(in.nextString()));
+                case ACTIVE -> sensor.setActive(in.nextBoolean());
+                case SENSOR_TYPE -> sensor.setSensorType(sensorType(in.nextString()));
+                default -> in.skipValue();
+            }
+        }
+        in.endObject();
+        return sensor;
+    }
+
+    /**
+     * Reads a JSON array of sensors into a list sized for the expected count.
+     */
+    public List<Sensor> readAll(JsonReader in, int expectedSize) throws IOException {
+        List<Sensor> sensors = new ArrayList<>(expectedSize);
+        in.beginArray();
+        while (in.hasNext()) {
+            Sensor sensor = read(in);
+            if (sensor != null) {
+                sensors.add(sensor);
+            }
+        }
+        in.endArray();
+        return sensors;
+    }
+
+    private String intern(String name) {
+        String interned = names.get(name);
+        if (interned != null) {
+            return interned;
+        }
+        if (names.size() < MAX_INTERNED_NAMES) {
+            interned = names.putIfAbsent(name, name);
+        }
+        return interned != null ? interned : name;
+    }
+
+    /**
+     * Unknown types read as null, as they do with Gson's own enum adapter.
+     */
+    private static SensorType sensorType(String name) {
+        for (SensorType type : SensorType.values()) {
+            if (type.name().equals(name)) {
+                return type;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,559 @@
+package com.udacity.catpoint.security.data;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Repository implementation that persists every change as a small delta record appended to a
+ * local segment file, so the cost of a write stays constant no matter how many sensors exist.
+ *
+ * Records are buffered in memory and written by a background committer thread, which forces
+ * everything that accumulated while the previous write was in flight with a single fsync (group
+ * commit). Callers that need to know their changes reached the disk can call {@link #sync()}.
+ * On startup the latest snapshot is loaded and the remaining segments are replayed on top of it.
+ * Whenever the active segment grows past its size limit a new one is started and the state is
+ * compacted into a fresh snapshot in the background, after which the old segments are deleted.
+ */
+public class WriteAheadLogSecurityRepositoryImpl implements SecurityRepository, AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(WriteAheadLogSecurityRepositoryImpl.class);
+
+    //record types
+    private static final byte SENSOR_UPSERTED = 1;
+    private static final byte SENSOR_REMOVED = 2;
+    private static final byte ALARM_STATUS = 3;
+    private static final byte ARMING_STATUS = 4;
+
+    private static final int SNAPSHOT_MAGIC = 0x43505753; // "CPWS"
+    private static final int SNAPSHOT_VERSION = 1;
+    private static final String SNAPSHOT_FILE = "snapshot.bin";
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".wal";
+    //magic, version, next segment, statuses and sensor count, followed by the sensors and a CRC
+    private static final int SNAPSHOT_HEADER_BYTES = 2 * Integer.BYTES + Long.BYTES + 2 + Integer.BYTES;
+    //longest name DataOutput.writeUTF accepts, in modified UTF-8 bytes
+    private static final int MAX_NAME_BYTES = 65535;
+
+    public static final long DEFAULT_SEGMENT_SIZE = 4L * 1024 * 1024;
+
+    private final Path directory;
+    private final long segmentSize;
+
+    private final Map<UUID, Sensor> sensors = new HashMap<>();
+    private Set<Sensor> sortedSensors;
+    private AlarmStatus alarmStatus = AlarmStatus.NO_ALARM;
+    private ArmingStatus armingStatus = ArmingStatus.DISARMED;
+
+    //records waiting for the committer, swapped with an empty buffer on every commit
+    private RecordBuffer pending = new RecordBuffer();
+    private RecordBuffer writing = new RecordBuffer();
+    private long appendedRecords;
+    private long committedRecords;
+    private boolean closed;
+    private IOException commitFailure;
+
+    private FileChannel segment;
+    private long segmentIndex;
+
+    private final Thread committer;
+    private final ExecutorService compactor = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "wal-compactor");
+        t.setDaemon(true);
+        return t;
+    });
+
+    public WriteAheadLogSecurityRepositoryImpl() {
+        this(Path.of(System.getProperty("user.home"), ".catpoint", "wal"));
+    }
+
+    public WriteAheadLogSecurityRepositoryImpl(Path directory) {
+        this(directory, DEFAULT_SEGMENT_SIZE);
+    }
+
+    /**
+     * Opens the log stored in the given directory, replaying any existing state.
+     * @param directory Directory holding the snapshot and segment files. Created if missing.
+     * @param segmentSize Size in bytes after which a new segment is started and the old ones compacted
+     */
+    public WriteAheadLogSecurityRepositoryImpl(Path directory, long segmentSize) {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        try {
+            Files.createDirectories(directory);
+            long nextSegment = loadSnapshot();
+            List<Long> segments = listSegments();
+            for (long index : segments) {
+                if (index >= nextSegment) {
+                    replaySegment(segmentPath(index));
+                }
+            }
+            segmentIndex = segments.isEmpty() ? nextSegment : Math.max(nextSegment, segments.get(segments.size() - 1) + 1);
+            segment = openSegment(segmentIndex);
+            if (!segments.isEmpty()) {
+                long boundary = segmentIndex;
+                compactor.execute(() -> compact(boundary));
+            }
+        } catch (IOException ioe) {
+            throw new UncheckedIOException("Unable to open write-ahead log in " + directory, ioe);
+        }
+
+        committer = new Thread(this::commitLoop, "wal-committer");
+        committer.setDaemon(true);
+        committer.start();
+    }
+
+    @Override
+    public synchronized void addSensor(Sensor sensor) {
+        checkName(sensor);
+        putSensor(sensor);
+        append(buffer -> writeSensorUpserted(buffer.out, sensor));
+    }
+
+    @Override
+    public synchronized void removeSensor(Sensor sensor) {
+        if (sensors.remove(sensor.getSensorId()) != null) {
+            sortedSensors = null;
+        }
+        append(buffer -> {
+            buffer.out.writeByte(SENSOR_REMOVED);
+            buffer.out.writeLong(sensor.getSensorId().getMostSignificantBits());
+            buffer.out.writeLong(sensor.getSensorId().getLeastSignificantBits());
+        });
+    }
+
+    @Override
+    public synchronized void updateSensor(Sensor sensor) {
+        checkName(sensor);
+        putSensor(sensor);
+        append(buffer -> writeSensorUpserted(buffer.out, sensor));
+    }
+
+    @Override
+    public synchronized void updateSensors(Collection<Sensor> updated) {
+        updated.forEach(WriteAheadLogSecurityRepositoryImpl::checkName);
+        for (Sensor sensor : updated) {
+            putSensor(sensor);
+            append(buffer -> writeSensorUpserted(buffer.out, sensor));
+        }
+    }
+
+    @Override
+    public synchronized void setAlarmStatus(AlarmStatus alarmStatus) {
+        this.alarmStatus = alarmStatus;
+        append(buffer -> {
+            buffer.out.writeByte(ALARM_STATUS);
+            buffer.out.writeByte(alarmStatus.ordinal());
+        });
+    }
+
+    @Override
+    public synchronized void setArmingStatus(ArmingStatus armingStatus) {
+        this.armingStatus = armingStatus;
+        append(buffer -> {
+            buffer.out.writeByte(ARMING_STATUS);
+            buffer.out.writeByte(armingStatus.ordinal());
+        });
+    }
+
+    /**
+     * Returns a sorted, read-only view of the sensors. The view is rebuilt lazily after
+     * sensors are added or removed.
+     */
+    @Override
+    public synchronized Set<Sensor> getSensors() {
+        if (sortedSensors == null) {
+            sortedSensors = Collections.unmodifiableSet(new TreeSet<>(sensors.values()));
+        }
+        return sortedSensors;
+    }
+
+    @Override
+    public synchronized Sensor findSensor(UUID sensorId) {
+        return sensors.get(sensorId);
+    }
+
+    @Override
+    public synchronized AlarmStatus getAlarmStatus() {
+        return alarmStatus;
+    }
+
+    @Override
+    public synchronized ArmingStatus getArmingStatus() {
+        return armingStatus;
+    }
+
+    /**
+     * Blocks until every change made before this call has been forced to disk.
+     */
+    public synchronized void sync() throws IOException {
+        long target = appendedRecords;
+        while (committedRecords < target && commitFailure == null) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for the write-ahead log");
+            }
+        }
+        if (commitFailure != null) {
+            throw commitFailure;
+        }
+    }
+
+    /**
+     * Commits any outstanding records and releases the segment file.
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            notifyAll();
+        }
+        try {
+            committer.join();
+            compactor.shutdown();
+            compactor.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (this) {
+            segment.close();
+            if (commitFailure != null) {
+                throw commitFailure;
+            }
+        }
+    }
+
+    private void putSensor(Sensor sensor) {
+        //a replacing instance must also replace the old one in the sorted view
+        if (sensors.put(sensor.getSensorId(), sensor) != sensor) {
+            sortedSensors = null;
+        }
+    }
+
+    /**
+     * Rejects a sensor whose name is too long to be written, before any state is changed.
+     */
+    private static void checkName(Sensor sensor) {
+        String name = sensor.getName();
+        if (name == null) {
+            return;
+        }
+        long bytes = 0;
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            bytes += c >= 0x0001 && c <= 0x007F ? 1 : c <= 0x07FF ? 2 : 3;
+        }
+        if (bytes > MAX_NAME_BYTES) {
+            throw new IllegalArgumentException("Sensor name is " + bytes + " bytes, the limit is " + MAX_NAME_BYTES);
+        }
+    }
+
+    /**
+     * Encodes one record into the pending buffer and wakes the committer. Must be called while
+     * holding the monitor, right after the matching in-memory change. A record that fails to
+     * encode is dropped from the buffer, so it cannot hide the records after it on replay.
+     */
+    private void append(RecordWriter writer) {
+        if (closed) {
+            throw new IllegalStateException("Write-ahead log is closed");
+        }
+        if (commitFailure != null) {
+            throw new UncheckedIOException("Write-ahead log is no longer writable", commitFailure);
+        }
+        try {
+            pending.beginRecord();
+            writer.write(pending);
+        } catch (IOException ioe) {
+            pending.abortRecord();
+            throw new UncheckedIOException("Unable to encode write-ahead log record", ioe);
+        }
+        pending.endRecord();
+        appendedRecords++;
+        notifyAll();
+    }
+
+    private void commitLoop() {
+        while (true) {
+            long groupEnd;
+            synchronized (this) {
+                while (pending.size() == 0 && !closed) {
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+                if (pending.size() == 0) {
+                    return; //closed and drained
+                }
+                RecordBuffer swap = writing;
+                writing = pending;
+                pending = swap;
+                groupEnd = appendedRecords;
+            }
+
+            try {
+                ByteBuffer bytes = writing.asByteBuffer();
+                while (bytes.hasRemaining()) {
+                    segment.write(bytes);
+                }
+                segment.force(false);
+                writing.reset();
+                if (segment.size() >= segmentSize) {
+                    rollSegment();
+                }
+            } catch (IOException ioe) {
+                log.error("Unable to commit write-ahead log records", ioe);
+                synchronized (this) {
+                    commitFailure = ioe;
+                    notifyAll();
+                }
+                return;
+            }
+
+            synchronized (this) {
+                committedRecords = groupEnd;
+                notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Starts a new segment and schedules a compaction of everything written before it. Only
+     * called from the committer thread.
+     */
+    private void rollSegment() throws IOException {
+        FileChannel next = openSegment(segmentIndex + 1);
+        segment.close();
+        synchronized (this) {
+            segment = next;
+            segmentIndex++;
+        }
+        long boundary = segmentIndex;
+        compactor.execute(() -> compact(boundary));
+    }
+
+    /**
+     * Writes a snapshot covering every segment before the boundary and deletes those segments.
+     * The in-memory state may already include records from later segments; replaying them on top
+     * of the snapshot is harmless because every record assigns an absolute value.
+     */
+    private void compact(long boundary) {
+        List<Sensor> sensorCopy;
+        AlarmStatus alarmCopy;
+        ArmingStatus armingCopy;
+        synchronized (this) {
+            sensorCopy = new ArrayList<>(sensors.size());
+            for (Sensor sensor : sensors.values()) {
+                sensorCopy.add(copyOf(sensor));
+            }
+            alarmCopy = alarmStatus;
+            armingCopy = armingStatus;
+        }
+
+        try {
+            RecordBuffer buffer = new RecordBuffer();
+            buffer.out.writeInt(SNAPSHOT_MAGIC);
+            buffer.out.writeInt(SNAPSHOT_VERSION);
+            buffer.out.writeLong(boundary);
+            buffer.out.writeByte(alarmCopy.ordinal());
+            buffer.out.writeByte(armingCopy.ordinal());
+            buffer.out.writeInt(sensorCopy.size());
+            for (Sensor sensor : sensorCopy) {
+                writeSensorUpserted(buffer.out, sensor);
+            }
+            CRC32 crc = new CRC32();
+            crc.update(buffer.asByteBuffer());
+            buffer.out.writeLong(crc.getValue());
+
+            Path tmp = directory.resolve(SNAPSHOT_FILE + ".tmp");
+            try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                ByteBuffer bytes = buffer.asByteBuffer();
+                while (bytes.hasRemaining()) {
+                    channel.write(bytes);
+                }
+                channel.force(true);
+            }
+            Files.move(tmp, directory.resolve(SNAPSHOT_FILE), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+            for (long index : listSegments()) {
+                if (index < boundary) {
+                    Files.deleteIfExists(segmentPath(index));
+                }
+            }
+        } catch (IOException ioe) {
+            log.error("Unable to compact write-ahead log", ioe);
+        }
+    }
+
+    /**
+     * Loads the snapshot, if any, and returns the index of the first segment not covered by it.
+     */
+    private long loadSnapshot() throws IOException {
+        Path path = directory.resolve(SNAPSHOT_FILE);
+        if (!Files.exists(path)) {
+            return 0;
+        }
+        byte[] bytes = Files.readAllBytes(path);
+        if (bytes.length < SNAPSHOT_HEADER_BYTES + Long.BYTES) {
+            throw new IOException("Corrupt write-ahead log snapshot " + path + ", only " + bytes.length + " bytes");
+        }
+        CRC32 crc = new CRC32();
+        crc.update(bytes, 0, bytes.length - Long.BYTES);
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+        if (in.readInt() != SNAPSHOT_MAGIC || in.readInt() != SNAPSHOT_VERSION
+                || ByteBuffer.wrap(bytes, bytes.length - Long.BYTES, Long.BYTES).getLong() != crc.getValue()) {
+            throw new IOException("Corrupt write-ahead log snapshot " + path);
+        }
+        long nextSegment = in.readLong();
+        alarmStatus = AlarmStatus.values()[in.readByte()];
+        armingStatus = ArmingStatus.values()[in.readByte()];
+        int count = in.readInt();
+        for (int i = 0; i < count; i++) {
+            applyRecord(in);
+        }
+        return nextSegment;
+    }
+
+    /**
+     * Applies every intact record of a segment. A torn or corrupt record, which is what a crash in
+     * the middle of a write leaves behind, ends the replay of that segment.
+     */
+    private void replaySegment(Path path) throws IOException {
+        ByteBuffer bytes = ByteBuffer.wrap(Files.readAllBytes(path));
+        CRC32 crc = new CRC32();
+        while (bytes.remaining() >= 2 * Integer.BYTES) {
+            int length = bytes.getInt();
+            int checksum = bytes.getInt();
+            if (length <= 0 || length > bytes.remaining()) {
+                log.warn("Ignoring torn record at the end of {}", path);
+                return;
+            }
+            crc.reset();
+            crc.update(bytes.array(), bytes.position(), length);
+            if ((int) crc.getValue() != checksum) {
+                log.warn("Ignoring corrupt record at the end of {}", path);
+                return;
+            }
+            applyRecord(new DataInputStream(new ByteArrayInputStream(bytes.array(), bytes.position(), length)));
+            bytes.position(bytes.position() + length);
+        }
+    }
+
+    private void applyRecord(DataInput in) throws IOException {
+        byte type = in.readByte();
+        switch (type) {
+            case SENSOR_UPSERTED -> {
+                Sensor sensor = new Sensor();
+                sensor.setSensorId(new UUID(in.readLong(), in.readLong()));
+                sensor.setName(in.readBoolean() ? in.readUTF() : null);
+                sensor.setSensorType(SensorType.values()[in.readByte()]);
+                sensor.setActive(in.readBoolean());
+                sensors.put(sensor.getSensorId(), sensor);
+            }
+            case SENSOR_REMOVED -> sensors.remove(new UUID(in.readLong(), in.readLong()));
+            case ALARM_STATUS -> alarmStatus = AlarmStatus.values()[in.readByte()];
+            case ARMING_STATUS -> armingStatus = ArmingStatus.values()[in.readByte()];
+            default -> throw new IOException("Unknown write-ahead log record type " + type);
+        }
+    }
+
+    private static void writeSensorUpserted(DataOutput out, Sensor sensor) throws IOException {
+        out.writeByte(SENSOR_UPSERTED);
+        out.writeLong(sensor.getSensorId().getMostSignificantBits());
+        out.writeLong(sensor.getSensorId().getLeastSignificantBits());
+        out.writeBoolean(sensor.getName() != null);
+        if (sensor.getName() != null) {
+            out.writeUTF(sensor.getName());
+        }
+        out.writeByte(sensor.getSensorType().ordinal());
+        out.writeBoolean(Boolean.TRUE.equals(sensor.getActive()));
+    }
+
+    private static Sensor copyOf(Sensor sensor) {
+        Sensor copy = new Sensor();
+        copy.setSensorId(sensor.getSensorId());
+        copy.setName(sensor.getName());
+        copy.setSensorType(sensor.getSensorType());
+        copy.setActive(sensor.getActive());
+        return copy;
+    }
+
+    private List<Long> listSegments() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.map(p -> p.getFileName().toString())
+                    .filter(name -> name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX))
+                    .map(name -> Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length())))
+                    .sorted()
+                    .toList();
+        }
+    }
+
+    private Path segmentPath(long index) {
+        return directory.resolve(String.format("%s%020d%s", SEGMENT_PREFIX, index, SEGMENT_SUFFIX));
+    }
+
+    private FileChannel openSegment(long index) throws IOException {
+        return FileChannel.open(segmentPath(index), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    @FunctionalInterface
+    private interface RecordWriter {
+        void write(RecordBuffer buffer) throws IOException;
+    }
+
+    /**
+     * Growable in-memory buffer of framed records: each record is prefixed by its length and CRC32.
+     */
+    private static class RecordBuffer extends ByteArrayOutputStream {
+        private final DataOutputStream out = new DataOutputStream(this);
+        private int recordStart;
+
+        private RecordBuffer() {
+            super(4096);
+        }
+
+        private void beginRecord() throws IOException {
+            recordStart = count;
+            out.writeInt(0); //length, patched in endRecord
+            out.writeInt(0); //checksum, patched in endRecord
+        }
+
+        /**
+         * Discards everything written since beginRecord.
+         */
+        private void abortRecord() {
+            count = recordStart;
+        }
+
+        private void endRecord() {
+            int payloadStart = recordStart + 2 * Integer.BYTES;
+            int length = count - payloadStart;
+            CRC32 crc = new CRC32();
+            crc.update(buf, payloadStart, length);
+            ByteBuffer header = ByteBuffer.wrap(buf, recordStart, 2 * Integer.BYTES);
+            header.putInt(length);
+            header.putInt((int) crc.getValue());
+        }
+
+        private ByteBuffer asByteBuffer() {
+            return ByteBuffer.wrap(buf, 0, count);
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package com.udacity.catpoint.security.service;
+
+import com.udacity.catpoint.security.data.AlarmStatus;
+import com.udacity.catpoint.security.data.ArmingStatus;
+
+import static com.udacity.catpoint.security.data.AlarmStatus.*;
+import static com.udacity.catpoint.security.data.ArmingStatus.ARMED_HOME;
+import static com.udacity.catpoint.security.data.ArmingStatus.DISARMED;
+
+/**
+ * The alarm rules, as pure functions from the current alarm status to the next one. SecurityService
+ * applies them to the repository's status and SecurityState to its own snapshot, so the sequential
+ * and the concurrent service can never disagree about what an event does.
+ */
+final class AlarmRules {
+
+    private AlarmRules() {
+    }
+
+    /**
+     * A sensor was switched on or off. An alarm that is already sounding is not affected.
+     * @param active The new activation status of the sensor
+     * @param wasActive The activation status of the sensor before this event
+     */
+    static AlarmStatus sensorActivation(AlarmStatus alarm, ArmingStatus arming, boolean active, boolean wasActive) {
+        if (alarm == ALARM) {
+            return alarm;
+        }
+        if (active) {
+            return sensorActivated(alarm, arming);
+        }
+        return wasActive ? sensorDeactivated(alarm) : alarm;
+    }
+
+    /**
+     * A sensor was re-evaluated without changing its activation status.
+     */
+    static AlarmStatus sensorRechecked(AlarmStatus alarm, ArmingStatus arming, boolean sensorActive) {
+        if ((alarm == PENDING_ALARM && !sensorActive) || (alarm == ALARM && arming == DISARMED)) {
+            return sensorDeactivated(alarm);
+        }
+        return alarm;
+    }
+
+    /**
+     * The arming status changed. Deactivating the sensors when arming is a separate set of sensor
+     * events.
+     */
+    static AlarmStatus armingChanged(AlarmStatus alarm, ArmingStatus arming, boolean catDetected) {
+        if (arming == DISARMED) {
+            return NO_ALARM;
+        }
+        if (catDetected && arming == ARMED_HOME) {
+            return ALARM;
+        }
+        return alarm;
+    }
+
+    /**
+     * The camera reported whether it sees a cat.
+     */
+    static AlarmStatus catDetected(AlarmStatus alarm, ArmingStatus arming, boolean cat, boolean allSensorsInactive) {
+        if (cat && arming == ARMED_HOME) {
+            return ALARM;
+        }
+        if (!cat && allSensorsInactive) {
+            return NO_ALARM;
+        }
+        return alarm;
+    }
+
+    private static AlarmStatus sensorActivated(AlarmStatus alarm, ArmingStatus arming) {
+        if (arming == DISARMED) {
+            return alarm; //no problem if the system is disarmed
+        }
+        return switch (alarm) {
+            case NO_ALARM -> PENDING_ALARM;
+            case PENDING_ALARM, ALARM -> ALARM;
+        };
+    }
+
+    private static AlarmStatus sensorDeactivated(AlarmStatus alarm) {
+        return switch (alarm) {
+            case PENDING_ALARM, NO_ALARM -> NO_ALARM;
+            case ALARM -> PENDING_ALARM;
+        };
+    }
+}
@@ -0,0 +1,126 @@
+package com.udacity.catpoint.security.service;
+
+import com.udacity.catpoint.image.service.ImageClassification;
+import com.udacity.catpoint.image.service.ImageService;
+
+import java.awt.image.BufferedImage;
+import java.time.Duration;
+import java.util.UUID;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A camera registered with a CameraRegistry: its latest frame, whether its last scan saw a cat and
+ * how often it is scanned. Frames may be submitted from any thread.
+ */
+public class Camera {
+
+    private final UUID cameraId = UUID.randomUUID();
+    private final String name;
+    private final Duration scanInterval;
+    private final ImageService imageService;
+
+    private volatile BufferedImage latestFrame;
+    private final AtomicLong frameSequence = new AtomicLong();
+    private volatile long scannedSequence;
+    private final AtomicBoolean scanInFlight = new AtomicBoolean();
+    private volatile ImageClassification lastClassification;
+
+    //written under the registry's lock
+    private volatile boolean catDetected;
+    private ScheduledFuture<?> schedule;
+
+    Camera(String name, Duration scanInterval, ImageService imageService) {
+        this.name = name;
+        this.scanInterval = scanInterval;
+        this.imageService = imageService;
+    }
+
+    public UUID getCameraId() {
+        return cameraId;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public Duration getScanInterval() {
+        return scanInterval;
+    }
+
+    public BufferedImage getLatestFrame() {
+        return latestFrame;
+    }
+
+    /**
+     * Whether the most recent completed scan of this camera saw a cat.
+     */
+    public boolean isCatDetected() {
+        return catDetected;
+    }
+
+    /**
+     * The classification of the most recently scanned frame, or null before the first scan.
+     */
+    public ImageClassification getLastClassification() {
+        return lastClassification;
+    }
+
+    ImageService getImageService() {
+        return imageService;
+    }
+
+    void setLatestFrame(BufferedImage frame) {
+        latestFrame = frame;
+        frameSequence.incrementAndGet();
+    }
+
+    long getFrameSequence() {
+        return frameSequence.get();
+    }
+
+    /**
+     * Whether a frame arrived since the last scan started.
+     */
+    boolean hasUnscannedFrame() {
+        return latestFrame != null && frameSequence.get() != scannedSequence;
+    }
+
+    /**
+     * Claims the camera for a scan of the given frame. Fails while another scan is still running, so
+     * a slow classifier never piles up scans of the same camera.
+     */
+    boolean startScan(long sequence) {
+        if (!scanInFlight.compareAndSet(false, true)) {
+            return false;
+        }
+        scannedSequence = sequence;
+        return true;
+    }
+
+    /**
+     * Releases a scan that could not be started, leaving the frame to be picked up again.
+     */
+    void abandonScan() {
+        scannedSequence = -1;
+        scanInFlight.set(false);
+    }
+
+    void finishScan(ImageClassification classification) {
+        lastClassification = classification;
+        scanInFlight.set(false);
+    }
+
+    void setCatDetected(boolean catDetected) {
+        this.catDetected = catDetected;
+    }
+
+    void setSchedule(ScheduledFuture<?> schedule) {
+        this.schedule = schedule;
+    }
+
+    ScheduledFuture<?> getSchedule() {
+        return schedule;
+    }
+}
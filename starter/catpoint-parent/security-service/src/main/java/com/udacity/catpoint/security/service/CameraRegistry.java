@@ -0,0 +1,219 @@
+package com.udacity.catpoint.security.service;
+
+import com.udacity.catpoint.image.service.ImageClassification;
+import com.udacity.catpoint.image.service.ImageExecutors;
+import com.udacity.catpoint.image.service.ImageService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.awt.image.BufferedImage;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Keeps track of every camera on a site and scans them in parallel. Each camera holds its own
+ * latest frame and is scanned on its own schedule, but only when a new frame arrived since its last
+ * scan. Scans share one bounded pool; when it is saturated a scan is skipped and picked up by the
+ * camera's next tick rather than queued without limit.
+ *
+ * The registry maintains the number of cameras currently seeing a cat, updated as each scan
+ * completes, so combining the cameras never requires rescanning or even iterating over them.
+ * SecurityService.catDetected is called only when that number moves between zero and non-zero.
+ */
+public class CameraRegistry implements AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(CameraRegistry.class);
+
+    public static final Duration DEFAULT_SCAN_INTERVAL = Duration.ofSeconds(1);
+    public static final int DEFAULT_QUEUE_CAPACITY = 64;
+
+    private final SecurityService securityService;
+    private final ImageService imageService;
+    private final ThreadPoolExecutor scanPool;
+    private final ScheduledExecutorService scheduler;
+    private final Map<UUID, Camera> cameras = new ConcurrentHashMap<>();
+
+    //guarded by this
+    private int camerasSeeingCat;
+    private volatile Executor resultExecutor = Runnable::run;
+    private volatile EvidenceRecorder evidenceRecorder;
+
+    private final LongAdder scans = new LongAdder();
+    private final LongAdder skippedScans = new LongAdder();
+
+    public CameraRegistry(SecurityService securityService, ImageService imageService) {
+        this(securityService, imageService, Runtime.getRuntime().availableProcessors(), DEFAULT_QUEUE_CAPACITY);
+    }
+
+    /**
+     * @param poolSize Number of threads scans run on
+     * @param queueCapacity Number of scans that may wait for a thread before further scans are skipped
+     */
+    public CameraRegistry(SecurityService securityService, ImageService imageService, int poolSize, int queueCapacity) {
+        this.securityService = securityService;
+        this.imageService = imageService;
+        this.scanPool = new ThreadPoolExecutor(poolSize, poolSize, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), ImageExecutors.daemonThreads("camera-scan"));
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(ImageExecutors.daemonThreads("camera-scheduler"));
+    }
+
+    public Camera addCamera(String name) {
+        return addCamera(name, DEFAULT_SCAN_INTERVAL);
+    }
+
+    public Camera addCamera(String name, Duration scanInterval) {
+        return addCamera(name, scanInterval, imageService);
+    }
+
+    /**
+     * Registers a camera and starts scanning it every scanInterval.
+     * @param cameraImageService Service that classifies this camera's frames. Decorators that keep
+     *                           per-stream state, such as MotionGatingImageService, need one per camera.
+     */
+    public Camera addCamera(String name, Duration scanInterval, ImageService cameraImageService) {
+        Camera camera = new Camera(name, scanInterval, cameraImageService);
+        cameras.put(camera.getCameraId(), camera);
+        long period = scanInterval.toNanos();
+        camera.setSchedule(scheduler.scheduleAtFixedRate(() -> scanIfChanged(camera), period, period, TimeUnit.NANOSECONDS));
+        return camera;
+    }
+
+    /**
+     * Stops scanning the camera and withdraws its cat detection.
+     */
+    public void removeCamera(Camera camera) {
+        if (cameras.remove(camera.getCameraId()) == null) {
+            return;
+        }
+        camera.getSchedule().cancel(false);
+        updateCatDetected(camera, false);
+    }
+
+    public Camera getCamera(UUID cameraId) {
+        return cameras.get(cameraId);
+    }
+
+    public Collection<Camera> getCameras() {
+        return Collections.unmodifiableCollection(cameras.values());
+    }
+
+    /**
+     * Replaces the camera's latest frame. It is scanned on the camera's next tick, and buffered as
+     * evidence if an EvidenceRecorder is set.
+     */
+    public void submitFrame(Camera camera, BufferedImage frame) {
+        camera.setLatestFrame(frame);
+        EvidenceRecorder recorder = evidenceRecorder;
+        if (recorder != null) {
+            recorder.record(camera.getName(), frame);
+        }
+    }
+
+    /**
+     * Scans the camera's latest frame immediately instead of waiting for its next tick.
+     * @return Completes with whether the frame showed a cat, or exceptionally if the camera was
+     * already being scanned, has no frame or the pool is saturated
+     */
+    public CompletableFuture<Boolean> scanNow(Camera camera) {
+        CompletableFuture<Boolean> scan = startScan(camera);
+        return scan != null ? scan : CompletableFuture.failedFuture(new RejectedExecutionException("Camera " + camera.getName() + " was not scanned"));
+    }
+
+    public synchronized int getCamerasSeeingCat() {
+        return camerasSeeingCat;
+    }
+
+    /**
+     * Total number of scans started.
+     */
+    public long getScanCount() {
+        return scans.sum();
+    }
+
+    /**
+     * Number of scans skipped because the pool was saturated.
+     */
+    public long getSkippedScanCount() {
+        return skippedScans.sum();
+    }
+
+    /**
+     * Sets the executor SecurityService.catDetected is called on, for example
+     * SwingUtilities::invokeLater. It must run tasks in the order they were submitted. Defaults to
+     * the thread that completed the scan.
+     */
+    public void setResultExecutor(Executor resultExecutor) {
+        this.resultExecutor = resultExecutor;
+    }
+
+    /**
+     * Sets the recorder every submitted frame is buffered in, encoding it on the submitting thread.
+     */
+    public void setEvidenceRecorder(EvidenceRecorder evidenceRecorder) {
+        this.evidenceRecorder = evidenceRecorder;
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+        scanPool.shutdownNow();
+    }
+
+    private void scanIfChanged(Camera camera) {
+        if (camera.hasUnscannedFrame()) {
+            startScan(camera);
+        }
+    }
+
+    /**
+     * @return The scan, or null if it could not be started
+     */
+    private CompletableFuture<Boolean> startScan(Camera camera) {
+        long sequence = camera.getFrameSequence();
+        BufferedImage frame = camera.getLatestFrame();
+        if (frame == null || !camera.startScan(sequence)) {
+            return null;
+        }
+        CompletableFuture<ImageClassification> classification;
+        try {
+            classification = camera.getImageService().classifyAsync(frame, scanPool);
+        } catch (RejectedExecutionException e) {
+            skippedScans.increment();
+            camera.abandonScan();
+            return null;
+        }
+        scans.increment();
+        return classification.handle((result, e) -> {
+            if (e != null) {
+                camera.abandonScan();
+                log.warn("Unable to scan camera " + camera.getName(), e);
+                throw new CompletionException(e);
+            }
+            camera.finishScan(result);
+            boolean cat = result.containsCat(securityService.getCatConfidenceThreshold());
+            updateCatDetected(camera, cat);
+            return cat;
+        });
+    }
+
+    /**
+     * Records one camera's detection and tells the SecurityService when the site as a whole starts
+     * or stops seeing a cat.
+     */
+    private synchronized void updateCatDetected(Camera camera, boolean cat) {
+        if (camera.isCatDetected() == cat || (cat && !cameras.containsKey(camera.getCameraId()))) {
+            return; //unchanged, or a scan finishing after its camera was removed
+        }
+        camera.setCatDetected(cat);
+        camerasSeeingCat += cat ? 1 : -1;
+        if (camerasSeeingCat == (cat ? 1 : 0)) {
+            //submitted under the lock so notifications keep the order of the transitions
+            resultExecutor.execute(() -> securityService.catDetected(cat));
+        }
+    }
+}
@@ -0,0 +1,250 @@
+package com.udacity.catpoint.security.service;
+
+import com.udacity.catpoint.image.service.ImageService;
+import com.udacity.catpoint.security.application.StatusListener;
+import com.udacity.catpoint.security.data.AlarmStatus;
+import com.udacity.catpoint.security.data.ArmingStatus;
+import com.udacity.catpoint.security.data.SecurityRepository;
+import com.udacity.catpoint.security.data.Sensor;
+import com.udacity.catpoint.security.service.SecurityStateMachine.Transition;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import static com.udacity.catpoint.security.data.ArmingStatus.DISARMED;
+
+/**
+ * SecurityService that can be driven from many threads at once. Alarm status, arming status, the
+ * cat flag and the active sensor count live in a single immutable SecurityState that is updated by
+ * compare-and-set, so concurrent sensor events never lose a transition and no lock is held while
+ * the rules are evaluated.
+ *
+ * Events for the same sensor are expected to arrive in order, which is naturally the case when each
+ * sensor reports from its own source; events for different sensors may race freely. Whether a
+ * sensor is active is decided by an atomic update of the activity tracker, and the sensor's own flag
+ * is then copied from the tracker until the two agree, so they end up matching without a lock even
+ * when arming deactivates a sensor that is reporting. The repository
+ * must be safe for concurrent use, for example WriteAheadLogSecurityRepositoryImpl, and listeners
+ * may be called from any thread.
+ */
+public class ConcurrentSecurityService extends SecurityService {
+
+    private final SecurityStateMachine stateMachine;
+
+    public ConcurrentSecurityService(SecurityRepository securityRepository, ImageService imageService) {
+        super(securityRepository, imageService);
+        this.stateMachine = new SecurityStateMachine(new SecurityState(securityRepository.getAlarmStatus(),
+                securityRepository.getArmingStatus(), false, sensorActivity().getActiveCount(), 0));
+    }
+
+    /**
+     * The current state of the system as a single consistent snapshot.
+     */
+    public SecurityState getState() {
+        return stateMachine.getState();
+    }
+
+    @Override
+    public void setArmingStatus(ArmingStatus armingStatus) {
+        List<Sensor> changed = new ArrayList<>();
+        Transition transition = applyArmingStatus(armingStatus, changed);
+        if (!changed.isEmpty()) {
+            securityRepository.updateSensors(changed);
+        }
+        persistLatest(armingStatus, SecurityState::armingStatus, securityRepository::setArmingStatus);
+        publishAlarmStatus(transition);
+        statusListeners.forEach(StatusListener::sensorStatusChanged);
+    }
+
+    @Override
+    protected void catDetected(Boolean cat) {
+        publishAlarmStatus(applyCatDetected(cat));
+        statusListeners.forEach(sl -> sl.catDetected(cat));
+    }
+
+    @Override
+    public void setAlarmStatus(AlarmStatus status) {
+        stateMachine.apply(state -> state.withAlarmStatus(status));
+        persistLatest(status, SecurityState::alarmStatus, securityRepository::setAlarmStatus);
+        statusListeners.forEach(sl -> sl.notify(status));
+    }
+
+    @Override
+    public void changeSensorActivationStatus(Sensor sensor, Boolean active) {
+        Transition transition;
+        if (active == null) {
+            transition = applySensorRechecked(sensor);
+        } else {
+            transition = applySensorActivation(sensor, active);
+        }
+        securityRepository.updateSensor(sensor);
+        publishAlarmStatus(transition);
+    }
+
+    @Override
+    public void deactivateAllSensors() {
+        List<Sensor> changed = new ArrayList<>();
+        SecurityState before = stateMachine.getState();
+        deactivateSensors(changed);
+        if (!changed.isEmpty()) {
+            securityRepository.updateSensors(changed);
+        }
+        publishAlarmStatus(new Transition(before, stateMachine.getState()));
+        statusListeners.forEach(StatusListener::sensorStatusChanged);
+    }
+
+    @Override
+    public void addSensor(Sensor sensor) {
+        securityRepository.addSensor(sensor);
+        if (Boolean.TRUE.equals(sensor.getActive()) && sensorActivity().activate(sensor)) {
+            stateMachine.apply(state -> state.withActiveSensorCountDelta(1));
+        }
+    }
+
+    @Override
+    public void removeSensor(Sensor sensor) {
+        securityRepository.removeSensor(sensor);
+        if (sensorActivity().deactivate(sensor)) {
+            stateMachine.apply(state -> state.withActiveSensorCountDelta(-1));
+        }
+    }
+
+    /**
+     * Recounts the active sensors and moves the state's active count by the difference.
+     */
+    @Override
+    public void resyncSensorActivity() {
+        int before = sensorActivity().getActiveCount();
+        super.resyncSensorActivity();
+        int delta = sensorActivity().getActiveCount() - before;
+        if (delta != 0) {
+            stateMachine.apply(state -> state.withActiveSensorCountDelta(delta));
+        }
+    }
+
+    @Override
+    public AlarmStatus getAlarmStatus() {
+        return stateMachine.getState().alarmStatus();
+    }
+
+    @Override
+    public ArmingStatus getArmingStatus() {
+        return stateMachine.getState().armingStatus();
+    }
+
+    /**
+     * Applies a sensor activation change to the state without persisting it or notifying listeners.
+     */
+    Transition applySensorActivation(Sensor sensor, boolean active) {
+        boolean wasActive = active ? !sensorActivity().activate(sensor) : sensorActivity().deactivate(sensor);
+        publishActiveFlag(sensor);
+        return stateMachine.apply(state -> state.withSensorActivation(active, wasActive));
+    }
+
+    /**
+     * Applies a sensor re-evaluation to the state without persisting it or notifying listeners.
+     */
+    Transition applySensorRechecked(Sensor sensor) {
+        boolean sensorActive = sensorActivity().isActive(sensor);
+        return stateMachine.apply(state -> state.withSensorRechecked(sensorActive));
+    }
+
+    /**
+     * Applies an arming status change, including deactivating the sensors when arming, without
+     * persisting it or notifying listeners.
+     * @param changed Receives every sensor that was deactivated
+     * @return A transition spanning the arming change and all resulting sensor events
+     */
+    Transition applyArmingStatus(ArmingStatus armingStatus, Collection<Sensor> changed) {
+        Transition transition = stateMachine.apply(state -> state.withArmingStatus(armingStatus));
+        if (armingStatus == DISARMED) {
+            return transition;
+        }
+        deactivateSensors(changed);
+        return new Transition(transition.before(), stateMachine.getState());
+    }
+
+    /**
+     * Applies an image result without persisting it or notifying listeners.
+     */
+    Transition applyCatDetected(boolean cat) {
+        return stateMachine.apply(state -> state.withCatDetected(cat));
+    }
+
+    /**
+     * Persists the combined effect of a batch of events that were applied with the methods above
+     * and notifies each kind of listener at most once.
+     * @param transition Spans the whole batch
+     * @param changedSensors Every sensor whose activation status changed in the batch
+     * @param armingChanged Whether the batch contained an arming event
+     * @param cat The last image result in the batch, or null if there was none
+     */
+    void publishBatch(Transition transition, Collection<Sensor> changedSensors, boolean armingChanged, Boolean cat) {
+        if (!changedSensors.isEmpty()) {
+            securityRepository.updateSensors(changedSensors);
+        }
+        if (armingChanged) {
+            persistLatest(transition.after().armingStatus(), SecurityState::armingStatus, securityRepository::setArmingStatus);
+        }
+        publishAlarmStatus(transition);
+        if (cat != null) {
+            statusListeners.forEach(sl -> sl.catDetected(cat));
+        }
+        if (armingChanged) {
+            statusListeners.forEach(StatusListener::sensorStatusChanged);
+        }
+    }
+
+    /**
+     * Deactivates every active sensor, each as its own sensor event.
+     */
+    private void deactivateSensors(Collection<Sensor> changed) {
+        for (Sensor sensor : securityRepository.getSensors()) {
+            if (!sensorActivity().deactivate(sensor)) {
+                continue;
+            }
+            publishActiveFlag(sensor);
+            changed.add(sensor);
+            stateMachine.apply(state -> state.withSensorActivation(false, true));
+        }
+    }
+
+    /**
+     * Copies the tracker's view of the sensor to its flag, then copies again for as long as another
+     * thread changed the tracker in the meantime. Every thread that changes the tracker ends here,
+     * so whichever writes the flag last leaves it matching the tracker.
+     */
+    private void publishActiveFlag(Sensor sensor) {
+        boolean active;
+        do {
+            active = sensorActivity().isActive(sensor);
+            sensor.setActive(active);
+        } while (sensorActivity().isActive(sensor) != active);
+    }
+
+    private void publishAlarmStatus(Transition transition) {
+        if (!transition.alarmStatusChanged()) {
+            return;
+        }
+        AlarmStatus status = transition.after().alarmStatus();
+        persistLatest(status, SecurityState::alarmStatus, securityRepository::setAlarmStatus);
+        statusListeners.forEach(sl -> sl.notify(status));
+    }
+
+    /**
+     * Writes a value to the repository, then keeps writing the latest value for as long as another
+     * thread changed it in the meantime. Whichever thread persists last therefore always leaves the
+     * repository matching the newest state, even though writes from different threads may interleave.
+     */
+    private <T> void persistLatest(T value, Function<SecurityState, T> field, Consumer<T> store) {
+        store.accept(value);
+        T latest;
+        while ((latest = field.apply(stateMachine.getState())) != value) {
+            value = latest;
+            store.accept(value);
+        }
+    }
+}
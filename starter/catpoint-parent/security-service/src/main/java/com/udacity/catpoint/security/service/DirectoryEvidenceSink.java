@@ -0,0 +1,37 @@
+package com.udacity.catpoint.security.service;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+
+/**
+ * Writes each snapshot as plain JPEG files, one directory per alarm and camera:
+ *      [root]/[alarm time]/[camera]/[frame number]-[capture time millis].jpg
+ */
+public class DirectoryEvidenceSink implements EvidenceSink {
+
+    private static final DateTimeFormatter ALARM_TIME = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss-SSS")
+            .withZone(ZoneId.systemDefault());
+
+    private final Path root;
+
+    public DirectoryEvidenceSink(Path root) {
+        this.root = root;
+    }
+
+    @Override
+    public void write(EvidenceSnapshot snapshot) throws IOException {
+        Path directory = root.resolve(ALARM_TIME.format(Instant.ofEpochMilli(snapshot.triggeredAtMillis())))
+                .resolve(snapshot.cameraName().replaceAll("[^A-Za-z0-9._-]", "_"));
+        Files.createDirectories(directory);
+        List<EvidenceFrame> frames = snapshot.frames();
+        for (int i = 0; i < frames.size(); i++) {
+            EvidenceFrame frame = frames.get(i);
+            Files.write(directory.resolve(String.format("%04d-%d.jpg", i, frame.capturedAtMillis())), frame.jpeg());
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package com.udacity.catpoint.security.service;
+
+import javax.imageio.ImageIO;
+import javax.imageio.stream.ImageInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Feeds the images in a directory, in file name order, as camera frames. Files ImageIO has no
+ * reader for are ignored. When looping, the directory is replayed until the source is closed.
+ */
+public class DirectoryFrameSource extends FrameSource {
+
+    private final List<Path> files;
+    private final boolean loop;
+    private int next;
+    //decoded count when the current pass started; only used by the decoder thread
+    private long decodedBeforePass;
+
+    public DirectoryFrameSource(Path directory, boolean loop) throws IOException {
+        this(directory, loop, DEFAULT_FRAMES_PER_SECOND, DEFAULT_MAX_EDGE, DEFAULT_DECODE_AHEAD);
+    }
+
+    /**
+     * @param loop Whether to start again from the first image after the last
+     * @see FrameSource#FrameSource(String, double, int, int)
+     */
+    public DirectoryFrameSource(Path directory, boolean loop, double framesPerSecond, int maxEdge, int decodeAhead) throws IOException {
+        super(String.valueOf(directory.getFileName()), framesPerSecond, maxEdge, decodeAhead);
+        Set<String> suffixes = Arrays.stream(ImageIO.getReaderFileSuffixes())
+                .map(suffix -> suffix.toLowerCase(Locale.ROOT))
+                .collect(Collectors.toSet());
+        try (Stream<Path> entries = Files.list(directory)) {
+            this.files = entries.filter(Files::isRegularFile)
+                    .filter(file -> suffixes.contains(suffixOf(file)))
+                    .sorted()
+                    .toList();
+        }
+        this.loop = loop;
+    }
+
+    public int getFileCount() {
+        return files.size();
+    }
+
+    @Override
+    protected ImageInputStream nextFrameInput() throws IOException {
+        while (true) {
+            if (next == files.size()) {
+                //stop looping if a whole pass produced nothing, rather than spinning on bad files
+                if (!loop || getDecodedCount() == decodedBeforePass) {
+                    return null;
+                }
+                next = 0;
+                decodedBeforePass = getDecodedCount();
+            }
+            Path file = files.get(next++);
+            ImageInputStream input = ImageIO.createImageInputStream(file.toFile());
+            if (input != null) {
+                return input;
+            }
+            frameFailed("Unable to open " + file, null);
+        }
+    }
+
+    private static String suffixOf(Path file) {
+        String fileName = file.getFileName().toString();
+        int dot = fileName.lastIndexOf('.');
+        return dot < 0 ? "" : fileName.substring(dot + 1).toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,7 @@
+package com.udacity.catpoint.security.service;
+
+/**
+ * One JPEG encoded camera frame kept as evidence.
+ */
+public record EvidenceFrame(long capturedAtMillis, byte[] jpeg) {
+}
@@ -0,0 +1,197 @@
+package com.udacity.catpoint.security.service;
+
+import com.udacity.catpoint.image.service.ImageExecutors;
+import com.udacity.catpoint.image.service.ImagePreprocessor;
+import com.udacity.catpoint.security.application.StatusListener;
+import com.udacity.catpoint.security.data.AlarmStatus;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Keeps the last few seconds of every camera's frames in a FrameRingBuffer and saves them as
+ * evidence when the alarm goes off. Register it with SecurityService.addStatusListener: on the
+ * transition into ALARM it snapshots each camera's frames from the pre-alarm window and hands them
+ * to an EvidenceSink. The snapshot is taken on the thread reporting the alarm, so it holds exactly
+ * the frames buffered up to that moment, and only the write happens on a background thread.
+ *
+ * Frames are encoded on a background thread too, so the camera's delivery thread only pays for
+ * queueing the frame. If encoding falls more than a few frames behind, further frames are dropped
+ * rather than queued without bound; frames still waiting to be encoded when the alarm goes off
+ * are not part of its evidence.
+ */
+public class EvidenceRecorder implements StatusListener, AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(EvidenceRecorder.class);
+
+    public static final Duration DEFAULT_WINDOW = Duration.ofSeconds(10);
+    public static final int DEFAULT_CAPACITY = 50;
+    public static final int DEFAULT_MAX_FRAME_BYTES = 128 * 1024;
+    public static final int DEFAULT_MAX_EDGE = 640;
+    public static final float DEFAULT_JPEG_QUALITY = 0.7f;
+    //how long close waits for queued frames and captured evidence to reach the sink
+    public static final Duration CLOSE_TIMEOUT = Duration.ofSeconds(5);
+
+    private static final int ENCODE_QUEUE_CAPACITY = 16;
+
+    private final EvidenceSink sink;
+    private final long windowMillis;
+    private final int capacity;
+    private final int maxFrameBytes;
+    private final ImagePreprocessor preprocessor;
+    private final Map<String, FrameRingBuffer> buffers = new ConcurrentHashMap<>();
+    private final ExecutorService encoder = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(ENCODE_QUEUE_CAPACITY), ImageExecutors.daemonThreads("evidence-encoder"));
+    private final ExecutorService writer = Executors.newSingleThreadExecutor(ImageExecutors.daemonThreads("evidence-writer"));
+
+    //guarded by this
+    private AlarmStatus lastStatus = AlarmStatus.NO_ALARM;
+
+    private final LongAdder snapshotsWritten = new LongAdder();
+    private final LongAdder failedWrites = new LongAdder();
+    private final LongAdder droppedFrames = new LongAdder();
+
+    public EvidenceRecorder(EvidenceSink sink) {
+        this(sink, DEFAULT_WINDOW, DEFAULT_CAPACITY, DEFAULT_MAX_FRAME_BYTES,
+                new ImagePreprocessor(DEFAULT_MAX_EDGE, DEFAULT_JPEG_QUALITY));
+    }
+
+    /**
+     * @param window How far back before the alarm frames are kept
+     * @param capacity Maximum number of frames kept per camera; should cover the window at the
+     *                 cameras' frame rate
+     * @param maxFrameBytes Largest encoded frame kept
+     * @param preprocessor Scales and encodes frames before they are buffered
+     */
+    public EvidenceRecorder(EvidenceSink sink, Duration window, int capacity, int maxFrameBytes, ImagePreprocessor preprocessor) {
+        this.sink = sink;
+        this.windowMillis = window.toMillis();
+        this.capacity = capacity;
+        this.maxFrameBytes = maxFrameBytes;
+        this.preprocessor = preprocessor;
+    }
+
+    /**
+     * Queues a frame from the named camera to be encoded and buffered in the background, stamped
+     * with the current time. The frame must not be modified afterwards. The camera's buffer is
+     * allocated on its first frame.
+     */
+    public void record(String cameraName, BufferedImage frame) {
+        long capturedAt = System.currentTimeMillis();
+        try {
+            encoder.execute(() -> {
+                try {
+                    bufferFor(cameraName).add(frame, capturedAt);
+                } catch (RuntimeException e) {
+                    log.warn("Unable to buffer frame from " + cameraName, e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            //encoder is behind or closed
+            droppedFrames.increment();
+        }
+    }
+
+    public FrameRingBuffer bufferFor(String cameraName) {
+        return buffers.computeIfAbsent(cameraName, name -> new FrameRingBuffer(capacity, maxFrameBytes, preprocessor));
+    }
+
+    /**
+     * Snapshots every camera's pre-alarm window on the calling thread and writes it to the sink in
+     * the background.
+     * @return Completes with the snapshots once the sink has been given all of them
+     */
+    public CompletableFuture<List<EvidenceSnapshot>> capture() {
+        long triggeredAt = System.currentTimeMillis();
+        List<EvidenceSnapshot> snapshots = new ArrayList<>();
+        buffers.forEach((cameraName, buffer) -> {
+            List<EvidenceFrame> frames = buffer.snapshot(triggeredAt - windowMillis, triggeredAt);
+            if (!frames.isEmpty()) {
+                snapshots.add(new EvidenceSnapshot(cameraName, triggeredAt, frames));
+            }
+        });
+        return CompletableFuture.supplyAsync(() -> {
+            for (EvidenceSnapshot snapshot : snapshots) {
+                try {
+                    sink.write(snapshot);
+                    snapshotsWritten.increment();
+                } catch (IOException e) {
+                    //keep going, the other cameras' evidence is still worth saving
+                    failedWrites.increment();
+                    log.warn("Unable to save alarm evidence from " + snapshot.cameraName(), e);
+                }
+            }
+            return snapshots;
+        }, writer);
+    }
+
+    /**
+     * Number of camera snapshots handed to the sink successfully.
+     */
+    public long getSnapshotsWritten() {
+        return snapshotsWritten.sum();
+    }
+
+    public long getFailedWrites() {
+        return failedWrites.sum();
+    }
+
+    /**
+     * Number of frames not buffered because the encoder was too far behind.
+     */
+    public long getDroppedFrames() {
+        return droppedFrames.sum();
+    }
+
+    @Override
+    public void notify(AlarmStatus status) {
+        boolean alarmRaised;
+        synchronized (this) {
+            alarmRaised = status == AlarmStatus.ALARM && lastStatus != AlarmStatus.ALARM;
+            lastStatus = status;
+        }
+        if (alarmRaised) {
+            capture().exceptionally(e -> {
+                log.warn("Unable to save alarm evidence", e);
+                return null;
+            });
+        }
+    }
+
+    @Override
+    public void catDetected(boolean catDetected) {
+        //no behavior necessary
+    }
+
+    @Override
+    public void sensorStatusChanged() {
+        //no behavior necessary
+    }
+
+    /**
+     * Stops the encoder and the writer, waiting up to CLOSE_TIMEOUT for frames already queued to be
+     * buffered and evidence already captured to be written, so the sink can be closed straight after.
+     */
+    @Override
+    public void close() {
+        encoder.shutdown();
+        writer.shutdown();
+        try {
+            long deadline = System.nanoTime() + CLOSE_TIMEOUT.toNanos();
+            if (!encoder.awaitTermination(deadline - System.nanoTime(), TimeUnit.NANOSECONDS)
+                    || !writer.awaitTermination(deadline - System.nanoTime(), TimeUnit.NANOSECONDS)) {
+                log.warn("Evidence still being written after " + CLOSE_TIMEOUT);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,11 @@
+package com.udacity.catpoint.security.service;
+
+import java.io.IOException;
+
+/**
+ * Destination for evidence captured by an EvidenceRecorder. Called on the recorder's writer thread,
+ * one snapshot at a time.
+ */
+public interface EvidenceSink {
+    void write(EvidenceSnapshot snapshot) throws IOException;
+}
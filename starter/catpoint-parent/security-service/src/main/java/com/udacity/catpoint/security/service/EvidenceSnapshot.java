@@ -0,0 +1,9 @@
+package com.udacity.catpoint.security.service;
+
+import java.util.List;
+
+/**
+ * The frames one camera captured in the run-up to an alarm, oldest first.
+ */
+public record EvidenceSnapshot(String cameraName, long triggeredAtMillis, List<EvidenceFrame> frames) {
+}
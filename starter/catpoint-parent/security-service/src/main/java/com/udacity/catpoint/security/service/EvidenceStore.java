@@ -0,0 +1,336 @@
+package com.udacity.catpoint.security.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Durable store for evidence frames. JPEG blobs are appended to fixed-size segment files that are
+ * memory-mapped, so an append is a copy into the page cache with no system call, and reads hand out
+ * views of the mapping without copying. An in-memory index of (camera, capture time, segment,
+ * offset) answers time-range queries and is rebuilt by scanning the segments on startup.
+ *
+ * Each record is laid out as
+ *      [int jpeg length][int crc][long capture time millis][short camera name length][camera name UTF-8][jpeg]
+ * and its length is written last, so a record torn by a crash reads as the end of the segment.
+ * Segments are flushed to disk when they fill up, on flush() and on close.
+ *
+ * Old evidence is removed a whole segment at a time, once the newest frame in it is older than the
+ * retention period. Views returned by read stay usable after their segment is deleted, since the
+ * mapping lives until it is garbage collected.
+ */
+public class EvidenceStore implements EvidenceSink, AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(EvidenceStore.class);
+
+    private static final String SEGMENT_PREFIX = "evidence-";
+    private static final String SEGMENT_SUFFIX = ".seg";
+    private static final int HEADER_BYTES = Integer.BYTES * 2 + Long.BYTES + Short.BYTES;
+
+    public static final int DEFAULT_SEGMENT_SIZE = 64 * 1024 * 1024;
+    public static final Duration DEFAULT_RETENTION = Duration.ofDays(7);
+
+    private final Path directory;
+    private final int segmentSize;
+    private final long retentionMillis;
+
+    //segments by index, modified only while holding this so reads can look segments up without it
+    private final ConcurrentNavigableMap<Long, Segment> segments = new ConcurrentSkipListMap<>();
+    private Segment active;
+    private boolean closed;
+
+    private final Map<String, NavigableSet<Entry>> index = new ConcurrentHashMap<>();
+
+    private final LongAdder appendedFrames = new LongAdder();
+    private final LongAdder appendedBytes = new LongAdder();
+    private final LongAdder deletedSegments = new LongAdder();
+
+    public EvidenceStore(Path directory) {
+        this(directory, DEFAULT_SEGMENT_SIZE, DEFAULT_RETENTION);
+    }
+
+    /**
+     * Opens the store in the given directory and indexes any frames already in it.
+     * @param segmentSize Size of each segment file, which also bounds the size of a single frame
+     * @param retention Frames older than this are deleted, a segment at a time, whenever a new
+     *                  segment is started
+     */
+    public EvidenceStore(Path directory, int segmentSize, Duration retention) {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.retentionMillis = retention.toMillis();
+        try {
+            Files.createDirectories(directory);
+            for (long segmentIndex : listSegments()) {
+                Segment segment = Segment.open(segmentPath(segmentIndex), segmentIndex, FileChannel.MapMode.READ_ONLY, segmentSize);
+                segments.put(segmentIndex, segment);
+                scan(segment);
+            }
+            startSegment();
+        } catch (IOException ioe) {
+            throw new UncheckedIOException("Unable to open evidence store in " + directory, ioe);
+        }
+    }
+
+    /**
+     * Appends a frame. The JPEG buffer's remaining bytes are copied.
+     */
+    public synchronized void append(String cameraName, long capturedAtMillis, ByteBuffer jpeg) throws IOException {
+        if (closed) {
+            throw new IllegalStateException("Evidence store is closed");
+        }
+        byte[] camera = cameraName.getBytes(StandardCharsets.UTF_8);
+        if (camera.length > Short.MAX_VALUE) {
+            //the length is stored as a signed short
+            throw new IOException("Camera name of " + camera.length + " bytes is longer than " + Short.MAX_VALUE);
+        }
+        int recordSize = HEADER_BYTES + camera.length + jpeg.remaining();
+        if (recordSize > segmentSize) {
+            throw new IOException("Frame of " + jpeg.remaining() + " bytes does not fit in a segment of " + segmentSize);
+        }
+        if (active.writePosition + recordSize > segmentSize) {
+            active.buffer.force();
+            startSegment();
+        }
+
+        MappedByteBuffer buffer = active.buffer;
+        int offset = active.writePosition;
+        int dataOffset = offset + HEADER_BYTES + camera.length;
+        buffer.putLong(offset + Integer.BYTES * 2, capturedAtMillis);
+        buffer.putShort(offset + Integer.BYTES * 2 + Long.BYTES, (short) camera.length);
+        buffer.put(offset + HEADER_BYTES, camera);
+        buffer.put(dataOffset, jpeg, jpeg.position(), jpeg.remaining());
+        CRC32 crc = new CRC32();
+        crc.update(buffer.slice(offset + Integer.BYTES * 2, recordSize - Integer.BYTES * 2));
+        buffer.putInt(offset + Integer.BYTES, (int) crc.getValue());
+        //written last, a record without its length is ignored on startup
+        buffer.putInt(offset, jpeg.remaining());
+        active.writePosition = offset + recordSize;
+
+        addToIndex(active, new Entry(cameraName, capturedAtMillis, active.index, dataOffset, jpeg.remaining()));
+        appendedFrames.increment();
+        appendedBytes.add(recordSize);
+    }
+
+    /**
+     * Appends every frame of an alarm snapshot.
+     */
+    @Override
+    public void write(EvidenceSnapshot snapshot) throws IOException {
+        for (EvidenceFrame frame : snapshot.frames()) {
+            append(snapshot.cameraName(), frame.capturedAtMillis(), ByteBuffer.wrap(frame.jpeg()));
+        }
+    }
+
+    /**
+     * Returns the camera's frames captured within the given range, oldest first, as views of the
+     * mapped segments.
+     */
+    public List<StoredFrame> read(String cameraName, long fromMillis, long toMillis) {
+        NavigableSet<Entry> entries = index.get(cameraName);
+        if (entries == null) {
+            return List.of();
+        }
+        List<StoredFrame> frames = new ArrayList<>();
+        for (Entry entry : entries.subSet(Entry.lowest(fromMillis), true, Entry.highest(toMillis), true)) {
+            Segment segment = segments.get(entry.segment);
+            if (segment != null) {
+                frames.add(new StoredFrame(cameraName, entry.capturedAtMillis,
+                        segment.buffer.slice(entry.offset, entry.length).asReadOnlyBuffer()));
+            }
+        }
+        return frames;
+    }
+
+    public Set<String> getCameraNames() {
+        return Collections.unmodifiableSet(index.keySet());
+    }
+
+    public int getSegmentCount() {
+        return segments.size();
+    }
+
+    public long getAppendedFrameCount() {
+        return appendedFrames.sum();
+    }
+
+    public long getAppendedBytes() {
+        return appendedBytes.sum();
+    }
+
+    public long getDeletedSegmentCount() {
+        return deletedSegments.sum();
+    }
+
+    /**
+     * Deletes every sealed segment whose newest frame is older than maxAge. The segment being
+     * written to is never deleted.
+     * @return Number of segments deleted
+     */
+    public synchronized int deleteOlderThan(Duration maxAge) {
+        long cutoff = System.currentTimeMillis() - maxAge.toMillis();
+        int deleted = 0;
+        for (Iterator<Segment> it = segments.values().iterator(); it.hasNext(); ) {
+            Segment segment = it.next();
+            if (segment == active || segment.newestMillis >= cutoff) {
+                continue;
+            }
+            it.remove();
+            for (Entry entry : segment.entries) {
+                NavigableSet<Entry> entries = index.get(entry.cameraName);
+                if (entries != null) {
+                    entries.remove(entry);
+                }
+            }
+            try {
+                Files.deleteIfExists(segment.path);
+            } catch (IOException e) {
+                log.warn("Unable to delete evidence segment " + segment.path, e);
+            }
+            deletedSegments.increment();
+            deleted++;
+        }
+        return deleted;
+    }
+
+    /**
+     * Forces the frames appended so far to disk.
+     */
+    public synchronized void flush() {
+        active.buffer.force();
+    }
+
+    @Override
+    public synchronized void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        active.buffer.force();
+    }
+
+    /**
+     * Opens the next segment for writing and applies the retention period to the sealed ones.
+     */
+    private void startSegment() throws IOException {
+        long next = segments.isEmpty() ? 0 : segments.lastKey() + 1;
+        active = Segment.open(segmentPath(next), next, FileChannel.MapMode.READ_WRITE, segmentSize);
+        segments.put(next, active);
+        deleteOlderThan(Duration.ofMillis(retentionMillis));
+    }
+
+    /**
+     * Indexes every intact record of a segment written by an earlier run.
+     */
+    private void scan(Segment segment) {
+        MappedByteBuffer buffer = segment.buffer;
+        int offset = 0;
+        CRC32 crc = new CRC32();
+        while (offset + HEADER_BYTES <= buffer.limit()) {
+            int length = buffer.getInt(offset);
+            if (length <= 0) {
+                break; //end of the written part
+            }
+            int cameraLength = buffer.getShort(offset + Integer.BYTES * 2 + Long.BYTES);
+            int recordSize = HEADER_BYTES + cameraLength + length;
+            if (cameraLength < 0 || offset + recordSize > buffer.limit()) {
+                log.warn("Ignoring torn record at the end of {}", segment.path);
+                break;
+            }
+            crc.reset();
+            crc.update(buffer.slice(offset + Integer.BYTES * 2, recordSize - Integer.BYTES * 2));
+            if ((int) crc.getValue() != buffer.getInt(offset + Integer.BYTES)) {
+                log.warn("Ignoring corrupt record at the end of {}", segment.path);
+                break;
+            }
+            byte[] camera = new byte[cameraLength];
+            buffer.get(offset + HEADER_BYTES, camera);
+            long capturedAt = buffer.getLong(offset + Integer.BYTES * 2);
+            addToIndex(segment, new Entry(new String(camera, StandardCharsets.UTF_8), capturedAt, segment.index,
+                    offset + HEADER_BYTES + cameraLength, length));
+            offset += recordSize;
+        }
+        segment.writePosition = offset;
+    }
+
+    private void addToIndex(Segment segment, Entry entry) {
+        segment.entries.add(entry);
+        segment.newestMillis = Math.max(segment.newestMillis, entry.capturedAtMillis);
+        index.computeIfAbsent(entry.cameraName, camera -> new ConcurrentSkipListSet<>(Entry.ORDER)).add(entry);
+    }
+
+    private Path segmentPath(long segmentIndex) {
+        return directory.resolve(String.format("%s%016d%s", SEGMENT_PREFIX, segmentIndex, SEGMENT_SUFFIX));
+    }
+
+    private List<Long> listSegments() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.map(p -> p.getFileName().toString())
+                    .filter(name -> name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX))
+                    .map(name -> Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length())))
+                    .sorted()
+                    .toList();
+        }
+    }
+
+    private static final class Segment {
+        private final long index;
+        private final Path path;
+        private final MappedByteBuffer buffer;
+        private final List<Entry> entries = new ArrayList<>();
+        private int writePosition;
+        private long newestMillis = Long.MIN_VALUE;
+
+        private Segment(long index, Path path, MappedByteBuffer buffer) {
+            this.index = index;
+            this.path = path;
+            this.buffer = buffer;
+        }
+
+        /**
+         * Maps the segment file. A new segment is created at its full size; the channel can be
+         * closed straight away because the mapping stays valid on its own.
+         */
+        private static Segment open(Path path, long index, FileChannel.MapMode mode, int segmentSize) throws IOException {
+            Set<StandardOpenOption> options = mode == FileChannel.MapMode.READ_ONLY
+                    ? EnumSet.of(StandardOpenOption.READ)
+                    : EnumSet.of(StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.CREATE_NEW);
+            try (FileChannel channel = FileChannel.open(path, options)) {
+                long size = mode == FileChannel.MapMode.READ_ONLY ? Math.min(channel.size(), segmentSize) : segmentSize;
+                return new Segment(index, path, channel.map(mode, 0, size));
+            }
+        }
+    }
+
+    private record Entry(String cameraName, long capturedAtMillis, long segment, int offset, int length) {
+        private static final Comparator<Entry> ORDER = Comparator.comparingLong(Entry::capturedAtMillis)
+                .thenComparingLong(Entry::segment)
+                .thenComparingInt(Entry::offset);
+
+        private static Entry lowest(long capturedAtMillis) {
+            return new Entry(null, capturedAtMillis, Long.MIN_VALUE, Integer.MIN_VALUE, 0);
+        }
+
+        private static Entry highest(long capturedAtMillis) {
+            return new Entry(null, capturedAtMillis, Long.MAX_VALUE, Integer.MAX_VALUE, 0);
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package com.udacity.catpoint.security.service;
+
+import com.udacity.catpoint.image.service.ImagePreprocessor;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The most recent frames from one camera, stored as JPEG in a fixed number of slots that are all
+ * allocated up front. Memory use is capacity x maxFrameBytes no matter how long the camera runs,
+ * and adding a frame never allocates beyond the encoder's reused buffer. Once full, each frame
+ * overwrites the oldest; a frame that encodes larger than a slot is dropped.
+ */
+public class FrameRingBuffer {
+
+    private final ImagePreprocessor preprocessor;
+    private final int maxFrameBytes;
+
+    //guarded by this
+    private final byte[][] slots;
+    private final int[] lengths;
+    private final long[] capturedAt;
+    private int next;
+    private int size;
+
+    private final LongAdder oversizedFrames = new LongAdder();
+
+    /**
+     * @param capacity Number of frames kept
+     * @param maxFrameBytes Size of each slot, the largest encoded frame that can be kept
+     * @param preprocessor Scales and encodes frames before they are stored
+     */
+    public FrameRingBuffer(int capacity, int maxFrameBytes, ImagePreprocessor preprocessor) {
+        this.preprocessor = preprocessor;
+        this.maxFrameBytes = maxFrameBytes;
+        this.slots = new byte[capacity][maxFrameBytes];
+        this.lengths = new int[capacity];
+        this.capturedAt = new long[capacity];
+    }
+
+    /**
+     * Encodes the frame on the calling thread and stores it.
+     * @return Whether the frame was stored, false if it did not fit in a slot
+     */
+    public boolean add(BufferedImage frame, long capturedAtMillis) {
+        try {
+            return preprocessor.encodeJpeg(frame, jpeg -> add(jpeg, capturedAtMillis));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to encode frame", e);
+        }
+    }
+
+    /**
+     * Stores an already encoded frame. The buffer's remaining bytes are copied.
+     */
+    public synchronized boolean add(ByteBuffer jpeg, long capturedAtMillis) {
+        int length = jpeg.remaining();
+        if (length > maxFrameBytes) {
+            oversizedFrames.increment();
+            return false;
+        }
+        jpeg.duplicate().get(slots[next], 0, length);
+        lengths[next] = length;
+        capturedAt[next] = capturedAtMillis;
+        next = (next + 1) % slots.length;
+        size = Math.min(size + 1, slots.length);
+        return true;
+    }
+
+    /**
+     * Copies the stored frames captured within the given range, oldest first.
+     */
+    public synchronized List<EvidenceFrame> snapshot(long fromMillis, long toMillis) {
+        List<EvidenceFrame> frames = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            int slot = Math.floorMod(next - size + i, slots.length);
+            if (capturedAt[slot] >= fromMillis && capturedAt[slot] <= toMillis) {
+                frames.add(new EvidenceFrame(capturedAt[slot], Arrays.copyOf(slots[slot], lengths[slot])));
+            }
+        }
+        return frames;
+    }
+
+    public int getCapacity() {
+        return slots.length;
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * Number of frames dropped because they encoded larger than a slot.
+     */
+    public long getOversizedCount() {
+        return oversizedFrames.sum();
+    }
+}
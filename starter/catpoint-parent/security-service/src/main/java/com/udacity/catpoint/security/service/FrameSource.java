@@ -0,0 +1,281 @@
+package com.udacity.catpoint.security.service;
+
+import com.udacity.catpoint.image.service.ImageExecutors;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * A continuous feed of camera frames, such as a directory of images or an MJPEG stream, delivered
+ * to listeners at a fixed frame rate. Frames are decoded ahead of time on a background thread into
+ * a small buffer, so delivery is paced by the frame rate rather than by decode time; when decoding
+ * falls behind, ticks with no frame ready are skipped and counted as underruns.
+ *
+ * Frames larger than maxEdge are reduced while decoding with ImageReadParam source subsampling,
+ * which skips rows and columns before they are decompressed rather than scaling afterwards.
+ * Subsampling is by whole factors, so frames keep at least maxEdge pixels along their longer edge.
+ *
+ * Listeners run on the source's delivery thread and should hand frames off quickly, for example to
+ * a ScanPipeline or SwingUtilities.invokeLater.
+ */
+public abstract class FrameSource implements AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(FrameSource.class);
+
+    public static final double DEFAULT_FRAMES_PER_SECOND = 5;
+    public static final int DEFAULT_MAX_EDGE = 1280;
+    public static final int DEFAULT_DECODE_AHEAD = 4;
+
+    private final String name;
+    private final long framePeriodNanos;
+    private final int maxEdge;
+    private final BlockingQueue<BufferedImage> decoded;
+    private final List<Consumer<BufferedImage>> listeners = new CopyOnWriteArrayList<>();
+    private final CompletableFuture<Void> completion = new CompletableFuture<>();
+
+    private final ScheduledExecutorService scheduler;
+    private Thread decoder;
+    private volatile boolean decodingFinished;
+    private volatile boolean closed;
+
+    //only used by the decoder thread
+    private ImageReader reader;
+
+    private final LongAdder decodedFrames = new LongAdder();
+    private final LongAdder deliveredFrames = new LongAdder();
+    private final LongAdder underruns = new LongAdder();
+    private final LongAdder failedFrames = new LongAdder();
+    private final LongAdder decodeNanos = new LongAdder();
+
+    /**
+     * @param name Used for thread names and log messages
+     * @param framesPerSecond Rate frames are delivered at
+     * @param maxEdge Frames whose longer edge exceeds this are subsampled while decoding; 0 decodes
+     *                at full resolution
+     * @param decodeAhead Maximum number of decoded frames waiting for delivery
+     */
+    protected FrameSource(String name, double framesPerSecond, int maxEdge, int decodeAhead) {
+        if (framesPerSecond <= 0) {
+            throw new IllegalArgumentException("Frame rate must be positive: " + framesPerSecond);
+        }
+        this.name = name;
+        this.framePeriodNanos = (long) (1e9 / framesPerSecond);
+        this.maxEdge = maxEdge;
+        this.decoded = new ArrayBlockingQueue<>(decodeAhead);
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(ImageExecutors.daemonThreads(name + "-delivery"));
+    }
+
+    /**
+     * Opens the input holding the next frame, or returns null when the source is exhausted.
+     * Called on the decoder thread only; the input is closed once the frame has been decoded.
+     * @throws IOException if the source itself fails, which ends the feed
+     */
+    protected abstract ImageInputStream nextFrameInput() throws IOException;
+
+    /**
+     * Releases the underlying files or streams. Called once when the source is closed.
+     */
+    protected void closeSource() throws IOException {
+    }
+
+    public void addFrameListener(Consumer<BufferedImage> listener) {
+        listeners.add(listener);
+    }
+
+    public void removeFrameListener(Consumer<BufferedImage> listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Starts decoding and delivering frames.
+     */
+    public synchronized void start() {
+        if (decoder != null) {
+            throw new IllegalStateException("Frame source " + name + " already started");
+        }
+        decoder = ImageExecutors.daemonThreads(name + "-decoder").newThread(this::decodeFrames);
+        decoder.start();
+        scheduler.scheduleAtFixedRate(this::deliverFrame, 0, framePeriodNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Completes once every frame has been delivered or the source is closed, or exceptionally if the
+     * source failed.
+     */
+    public CompletableFuture<Void> getCompletion() {
+        return completion;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public long getDecodedCount() {
+        return decodedFrames.sum();
+    }
+
+    public long getDeliveredCount() {
+        return deliveredFrames.sum();
+    }
+
+    /**
+     * Number of frame ticks skipped because no decoded frame was ready.
+     */
+    public long getUnderrunCount() {
+        return underruns.sum();
+    }
+
+    /**
+     * Number of frames skipped because they could not be decoded.
+     */
+    public long getFailedCount() {
+        return failedFrames.sum();
+    }
+
+    public double getAverageDecodeMillis() {
+        long count = decodedFrames.sum();
+        return count == 0 ? 0 : decodeNanos.sum() / 1e6 / count;
+    }
+
+    /**
+     * Stops the feed. Frames already decoded are discarded.
+     */
+    @Override
+    public synchronized void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        scheduler.shutdownNow();
+        if (decoder != null) {
+            decoder.interrupt();
+        }
+        try {
+            closeSource();
+        } catch (IOException e) {
+            log.warn("Unable to close frame source " + name, e);
+        }
+        decoded.clear();
+        completion.complete(null);
+    }
+
+    /**
+     * Records a frame that was skipped without being decoded, for example because it was malformed.
+     */
+    protected void frameFailed(String message, Exception e) {
+        failedFrames.increment();
+        log.warn(message + " in frame source " + name, e);
+    }
+
+    private void decodeFrames() {
+        try {
+            while (!closed) {
+                ImageInputStream input = nextFrameInput();
+                if (input == null) {
+                    break;
+                }
+                BufferedImage frame;
+                try (input) {
+                    frame = decode(input);
+                }
+                if (frame != null) {
+                    decoded.put(frame);
+                }
+            }
+        } catch (InterruptedException e) {
+            //closed while waiting for room in the buffer
+        } catch (IOException | RuntimeException e) {
+            if (!closed) {
+                log.warn("Frame source " + name + " failed", e);
+                completion.completeExceptionally(e);
+            }
+        } finally {
+            decodingFinished = true;
+            if (reader != null) {
+                reader.dispose();
+            }
+        }
+    }
+
+    /**
+     * @return The decoded frame, or null if it could not be decoded
+     */
+    private BufferedImage decode(ImageInputStream input) {
+        long start = System.nanoTime();
+        try {
+            ImageReader frameReader = readerFor(input);
+            if (frameReader == null) {
+                frameFailed("Unrecognized image format", null);
+                return null;
+            }
+            frameReader.setInput(input, true, true);
+            ImageReadParam param = frameReader.getDefaultReadParam();
+            int subsampling = subsampling(frameReader.getWidth(0), frameReader.getHeight(0));
+            if (subsampling > 1) {
+                param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+            }
+            BufferedImage frame = frameReader.read(0, param);
+            decodeNanos.add(System.nanoTime() - start);
+            decodedFrames.increment();
+            return frame;
+        } catch (IOException | RuntimeException e) {
+            frameFailed("Unable to decode frame", e);
+            return null;
+        }
+    }
+
+    /**
+     * Reuses the previous frame's reader when it understands this input, since consecutive frames
+     * almost always share a format.
+     */
+    private ImageReader readerFor(ImageInputStream input) throws IOException {
+        if (reader != null && reader.getOriginatingProvider().canDecodeInput(input)) {
+            return reader;
+        }
+        Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+        if (!readers.hasNext()) {
+            return null;
+        }
+        if (reader != null) {
+            reader.dispose();
+        }
+        reader = readers.next();
+        return reader;
+    }
+
+    private int subsampling(int width, int height) {
+        return maxEdge <= 0 ? 1 : Math.max(1, Math.max(width, height) / maxEdge);
+    }
+
+    private void deliverFrame() {
+        BufferedImage frame = decoded.poll();
+        if (frame == null) {
+            if (decodingFinished && decoded.isEmpty()) {
+                scheduler.shutdown();
+                completion.complete(null);
+            } else {
+                underruns.increment();
+            }
+            return;
+        }
+        deliveredFrames.increment();
+        for (Consumer<BufferedImage> listener : listeners) {
+            try {
+                listener.accept(frame);
+            } catch (RuntimeException e) {
+                log.warn("Frame listener failed in frame source " + name, e);
+            }
+        }
+    }
+}
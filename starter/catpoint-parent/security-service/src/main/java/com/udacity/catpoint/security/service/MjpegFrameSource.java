@@ -0,0 +1,199 @@
+package com.udacity.catpoint.security.service;
+
+import javax.imageio.IIOException;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.MemoryCacheImageInputStream;
+import java.io.*;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * Feeds the JPEG frames of a Motion JPEG file or stream. Both plain concatenated JPEGs, as written
+ * by most recorders, and multipart HTTP streams from IP cameras are supported: frames are found by
+ * walking the JPEG marker structure, so anything between frames, such as multipart headers, is
+ * skipped. A malformed frame is dropped and the source resynchronizes on the next one.
+ */
+public class MjpegFrameSource extends FrameSource {
+
+    private static final int SOI = 0xD8;
+    private static final int EOI = 0xD9;
+    private static final int SOS = 0xDA;
+    private static final int RST0 = 0xD0;
+    private static final int RST7 = 0xD7;
+    private static final int TEM = 0x01;
+
+    private final InputStream in;
+    private byte[] frame = new byte[64 * 1024];
+    private int length;
+    //set when a truncated frame was cut short by the start of the next one
+    private boolean startOfImageRead;
+
+    /**
+     * @param in Stream of frames; closed when the source is closed
+     * @see FrameSource#FrameSource(String, double, int, int)
+     */
+    public MjpegFrameSource(String name, InputStream in, double framesPerSecond, int maxEdge, int decodeAhead) {
+        super(name, framesPerSecond, maxEdge, decodeAhead);
+        this.in = new BufferedInputStream(in, 64 * 1024);
+    }
+
+    public static MjpegFrameSource open(Path file) throws IOException {
+        return new MjpegFrameSource(String.valueOf(file.getFileName()), Files.newInputStream(file),
+                DEFAULT_FRAMES_PER_SECOND, DEFAULT_MAX_EDGE, DEFAULT_DECODE_AHEAD);
+    }
+
+    /**
+     * Connects to an MJPEG stream, such as an IP camera's http://.../video.mjpg endpoint.
+     */
+    public static MjpegFrameSource open(URI stream) throws IOException {
+        return new MjpegFrameSource(stream.getHost(), stream.toURL().openStream(),
+                DEFAULT_FRAMES_PER_SECOND, DEFAULT_MAX_EDGE, DEFAULT_DECODE_AHEAD);
+    }
+
+    @Override
+    protected ImageInputStream nextFrameInput() throws IOException {
+        while (true) {
+            try {
+                if (!readFrame()) {
+                    return null;
+                }
+                //the buffer is reused for the next frame, which is only read once this one is decoded
+                return new MemoryCacheImageInputStream(new ByteArrayInputStream(frame, 0, length));
+            } catch (EOFException e) {
+                return null; //stream ended part way through a frame
+            } catch (IIOException e) {
+                frameFailed("Skipping malformed frame", e);
+            }
+        }
+    }
+
+    @Override
+    protected void closeSource() throws IOException {
+        in.close();
+    }
+
+    /**
+     * Copies the next complete JPEG, from start of image to end of image marker, into the frame buffer.
+     * @return false if the stream ended before another frame started
+     */
+    private boolean readFrame() throws IOException {
+        if (!skipToStartOfImage()) {
+            return false;
+        }
+        length = 0;
+        append(0xFF);
+        append(SOI);
+        int marker = nextMarker();
+        while (marker != EOI) {
+            append(0xFF);
+            append(marker);
+            if (marker != TEM && (marker < RST0 || marker > RST7)) {
+                copySegment();
+            }
+            marker = marker == SOS ? skipEntropyCodedData() : nextMarker();
+        }
+        append(0xFF);
+        append(EOI);
+        return true;
+    }
+
+    private boolean skipToStartOfImage() throws IOException {
+        if (startOfImageRead) {
+            startOfImageRead = false;
+            return true;
+        }
+        int previous = -1;
+        int b;
+        while ((b = in.read()) >= 0) {
+            if (previous == 0xFF && b == SOI) {
+                return true;
+            }
+            previous = b;
+        }
+        return false;
+    }
+
+    private int nextMarker() throws IOException {
+        if (read() != 0xFF) {
+            throw new IIOException("Expected a JPEG marker");
+        }
+        int marker;
+        do {
+            marker = read();
+        } while (marker == 0xFF);
+        if (marker == SOI) {
+            startOfImageRead = true;
+            throw new IIOException("Frame truncated by the start of the next frame");
+        }
+        return marker;
+    }
+
+    /**
+     * Copies a marker segment's length and payload.
+     */
+    private void copySegment() throws IOException {
+        int high = read();
+        int low = read();
+        int segmentLength = (high << 8) | low;
+        if (segmentLength < 2) {
+            throw new IIOException("Invalid JPEG segment length " + segmentLength);
+        }
+        append(high);
+        append(low);
+        ensureCapacity(segmentLength - 2);
+        if (in.readNBytes(frame, length, segmentLength - 2) != segmentLength - 2) {
+            throw new EOFException();
+        }
+        length += segmentLength - 2;
+    }
+
+    /**
+     * Copies compressed scan data up to the next marker. Inside scan data 0xFF is followed by a zero
+     * stuffing byte or a restart marker, so any other 0xFF pair ends the scan.
+     * @return The marker that ended the scan
+     */
+    private int skipEntropyCodedData() throws IOException {
+        while (true) {
+            int b = read();
+            if (b != 0xFF) {
+                append(b);
+                continue;
+            }
+            int marker;
+            do {
+                marker = read();
+            } while (marker == 0xFF);
+            if (marker == 0 || (marker >= RST0 && marker <= RST7)) {
+                append(0xFF);
+                append(marker);
+                continue;
+            }
+            if (marker == SOI) {
+                startOfImageRead = true;
+                throw new IIOException("Frame truncated by the start of the next frame");
+            }
+            return marker;
+        }
+    }
+
+    private int read() throws IOException {
+        int b = in.read();
+        if (b < 0) {
+            throw new EOFException();
+        }
+        return b;
+    }
+
+    private void append(int b) {
+        ensureCapacity(1);
+        frame[length++] = (byte) b;
+    }
+
+    private void ensureCapacity(int additional) {
+        if (length + additional > frame.length) {
+            frame = Arrays.copyOf(frame, Math.max(frame.length * 2, length + additional));
+        }
+    }
+}
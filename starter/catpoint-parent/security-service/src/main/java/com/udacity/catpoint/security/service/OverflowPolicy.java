@@ -0,0 +1,20 @@
+package com.udacity.catpoint.security.service;
+
+/**
+ * What a ScanPipeline does with a frame that arrives while its queue is full.
+ */
+public enum OverflowPolicy {
+    /**
+     * Discard the oldest waiting frame to make room, so the queue always holds the newest frames.
+     */
+    DROP_OLDEST,
+    /**
+     * Discard the arriving frame, so frames already waiting are scanned in full.
+     */
+    DROP_NEWEST,
+    /**
+     * Keep only the most recent frame, discarding anything still waiting whenever a frame arrives.
+     * The queue capacity is ignored.
+     */
+    LATEST_ONLY
+}
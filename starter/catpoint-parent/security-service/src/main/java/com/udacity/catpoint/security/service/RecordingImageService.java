@@ -0,0 +1,105 @@
+package com.udacity.catpoint.security.service;
+
+import com.udacity.catpoint.image.service.ImageClassification;
+import com.udacity.catpoint.image.service.ImageExecutors;
+import com.udacity.catpoint.image.service.ImagePreprocessor;
+import com.udacity.catpoint.image.service.ImageService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * ImageService decorator that saves every frame it is asked to classify to an EvidenceStore, so
+ * the frames behind each scan result can be reviewed later. Frames are encoded with their own
+ * preprocessor, typically smaller than what the classifier receives, and stored on the decorator's
+ * own thread, so recording neither slows classification nor takes threads from the caller's
+ * executor. A frame that cannot be stored, or arrives while that thread is a few frames behind, is
+ * skipped and still classified.
+ */
+public class RecordingImageService implements ImageService, AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(RecordingImageService.class);
+
+    private static final int RECORD_QUEUE_CAPACITY = 16;
+
+    private final ImageService delegate;
+    private final EvidenceStore store;
+    private final String cameraName;
+    private final ImagePreprocessor preprocessor;
+    private final ExecutorService recorder = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(RECORD_QUEUE_CAPACITY), ImageExecutors.daemonThreads("scan-recorder"));
+
+    private final LongAdder skippedFrames = new LongAdder();
+
+    public RecordingImageService(ImageService delegate, EvidenceStore store, String cameraName) {
+        this(delegate, store, cameraName,
+                new ImagePreprocessor(EvidenceRecorder.DEFAULT_MAX_EDGE, EvidenceRecorder.DEFAULT_JPEG_QUALITY));
+    }
+
+    public RecordingImageService(ImageService delegate, EvidenceStore store, String cameraName, ImagePreprocessor preprocessor) {
+        this.delegate = delegate;
+        this.store = store;
+        this.cameraName = cameraName;
+        this.preprocessor = preprocessor;
+    }
+
+    @Override
+    public ImageClassification classify(BufferedImage image) {
+        record(image);
+        return delegate.classify(image);
+    }
+
+    @Override
+    public CompletableFuture<ImageClassification> classifyAsync(BufferedImage image, Executor executor) {
+        record(image);
+        return delegate.classifyAsync(image, executor);
+    }
+
+    /**
+     * Number of frames classified without being stored, because recording was behind or failed.
+     */
+    public long getSkippedCount() {
+        return skippedFrames.sum();
+    }
+
+    /**
+     * Stops recording and waits up to CLOSE_TIMEOUT for frames already queued to be stored, so the
+     * store can be closed straight after. Neither the delegate nor the store is closed.
+     */
+    @Override
+    public void close() {
+        recorder.shutdown();
+        try {
+            if (!recorder.awaitTermination(EvidenceRecorder.CLOSE_TIMEOUT.toMillis(), TimeUnit.MILLISECONDS)) {
+                log.warn("Frames from " + cameraName + " still being stored after " + EvidenceRecorder.CLOSE_TIMEOUT);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void record(BufferedImage image) {
+        long capturedAt = System.currentTimeMillis();
+        try {
+            recorder.execute(() -> store(image, capturedAt));
+        } catch (RejectedExecutionException e) {
+            skippedFrames.increment();
+        }
+    }
+
+    private void store(BufferedImage image, long capturedAt) {
+        try {
+            preprocessor.encodeJpeg(image, jpeg -> {
+                store.append(cameraName, capturedAt, jpeg);
+                return null;
+            });
+        } catch (IOException | RuntimeException e) {
+            skippedFrames.increment();
+            log.warn("Unable to store scanned frame from " + cameraName, e);
+        }
+    }
+}
@@ -0,0 +1,257 @@
+package com.udacity.catpoint.security.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.awt.image.BufferedImage;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Bounded queue of one camera's frames in front of a scanner, usually SecurityService.processImage.
+ * Frames may be submitted from any thread and are scanned one at a time, in arrival order, on the
+ * given executor. When frames arrive faster than they can be scanned the queue fills and the
+ * overflow policy decides which frames are dropped, so a slow classifier costs freshness rather
+ * than memory.
+ *
+ * End-to-end latency is measured from submit to the scanner returning, so it includes the time a
+ * frame spent waiting in the queue.
+ */
+public class ScanPipeline implements AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(ScanPipeline.class);
+
+    public static final int DEFAULT_CAPACITY = 4;
+
+    private final String name;
+    private final int capacity;
+    private final OverflowPolicy overflowPolicy;
+    private final Executor executor;
+    private final Consumer<BufferedImage> scanner;
+
+    //guarded by queue
+    private final Deque<QueuedFrame> queue = new ArrayDeque<>();
+    private boolean closed;
+    private final AtomicBoolean draining = new AtomicBoolean();
+
+    private final LongAdder submitted = new LongAdder();
+    private final LongAdder scanned = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder superseded = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAccumulator peakDepth = new LongAccumulator(Math::max, 0);
+    private final LongAdder latencyNanos = new LongAdder();
+    private final LongAccumulator maxLatencyNanos = new LongAccumulator(Math::max, 0);
+    private volatile long lastLatencyNanos;
+
+    /**
+     * @param name Used in log messages, typically the camera name
+     * @param capacity Maximum number of frames waiting to be scanned
+     * @param overflowPolicy What to do with a frame that arrives while the queue is full
+     * @param executor Executor frames are scanned on. Shared executors are fine, a pipeline never
+     *                 occupies more than one of its threads at a time
+     * @param scanner Scans a single frame
+     */
+    public ScanPipeline(String name, int capacity, OverflowPolicy overflowPolicy, Executor executor, Consumer<BufferedImage> scanner) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Capacity must be at least 1: " + capacity);
+        }
+        this.name = name;
+        this.capacity = overflowPolicy == OverflowPolicy.LATEST_ONLY ? 1 : capacity;
+        this.overflowPolicy = overflowPolicy;
+        this.executor = executor;
+        this.scanner = scanner;
+    }
+
+    /**
+     * Creates a pipeline that passes each frame to securityService.processImage.
+     */
+    public static ScanPipeline inFrontOf(SecurityService securityService, String name, int capacity,
+                                         OverflowPolicy overflowPolicy, Executor executor) {
+        return new ScanPipeline(name, capacity, overflowPolicy, executor, securityService::processImage);
+    }
+
+    /**
+     * Queues a frame for scanning.
+     * @return Whether the frame was queued; false if it was dropped under DROP_NEWEST or the
+     * pipeline is closed. Frames dropped later to make room for newer ones are only counted.
+     */
+    public boolean submit(BufferedImage frame) {
+        QueuedFrame queued = new QueuedFrame(frame, System.nanoTime());
+        synchronized (queue) {
+            if (closed) {
+                return false;
+            }
+            submitted.increment();
+            if (queue.size() >= capacity) {
+                if (overflowPolicy == OverflowPolicy.DROP_NEWEST) {
+                    dropped.increment();
+                    return false;
+                }
+                dropped.add(queue.size() - capacity + 1);
+                while (queue.size() >= capacity) {
+                    queue.pollFirst();
+                }
+            }
+            queue.addLast(queued);
+            peakDepth.accumulate(queue.size());
+        }
+        scheduleDrain();
+        return true;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public OverflowPolicy getOverflowPolicy() {
+        return overflowPolicy;
+    }
+
+    /**
+     * Number of frames currently waiting, excluding the one being scanned.
+     */
+    public int getQueueDepth() {
+        synchronized (queue) {
+            return queue.size();
+        }
+    }
+
+    /**
+     * Largest number of frames that were waiting at the same time.
+     */
+    public long getPeakQueueDepth() {
+        return peakDepth.get();
+    }
+
+    public long getSubmittedCount() {
+        return submitted.sum();
+    }
+
+    /**
+     * Number of frames the scanner finished, including those it failed on or abandoned.
+     */
+    public long getScannedCount() {
+        return scanned.sum();
+    }
+
+    public long getFailedCount() {
+        return failed.sum();
+    }
+
+    /**
+     * Number of scans cancelled because a newer request took their place, for example a manual scan
+     * replacing a streamed frame's. These are not failures and are not logged.
+     */
+    public long getSupersededCount() {
+        return superseded.sum();
+    }
+
+    /**
+     * Number of frames discarded by the overflow policy without being scanned.
+     */
+    public long getDroppedCount() {
+        return dropped.sum();
+    }
+
+    /**
+     * Average time from submit to the end of the scan over all scanned frames.
+     */
+    public double getAverageLatencyMillis() {
+        long count = scanned.sum();
+        return count == 0 ? 0 : latencyNanos.sum() / 1e6 / count;
+    }
+
+    public double getMaxLatencyMillis() {
+        return maxLatencyNanos.get() / 1e6;
+    }
+
+    /**
+     * End-to-end latency of the most recently scanned frame, a measure of how stale results are.
+     */
+    public double getLastLatencyMillis() {
+        return lastLatencyNanos / 1e6;
+    }
+
+    /**
+     * Stops accepting frames and discards those still waiting. A scan already running completes.
+     */
+    @Override
+    public void close() {
+        synchronized (queue) {
+            closed = true;
+            dropped.add(queue.size());
+            queue.clear();
+        }
+    }
+
+    private void scheduleDrain() {
+        if (!draining.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            executor.execute(this::drain);
+        } catch (RejectedExecutionException e) {
+            //frames stay queued and the next submit tries again
+            draining.set(false);
+            log.warn("Unable to scan frames from " + name, e);
+        }
+    }
+
+    private void drain() {
+        try {
+            QueuedFrame next;
+            while ((next = poll()) != null) {
+                scan(next);
+            }
+        } finally {
+            draining.set(false);
+        }
+        //a frame submitted after the last poll but before draining was cleared would otherwise wait
+        //for the next submit
+        if (getQueueDepth() > 0) {
+            scheduleDrain();
+        }
+    }
+
+    private QueuedFrame poll() {
+        synchronized (queue) {
+            return queue.pollFirst();
+        }
+    }
+
+    private void scan(QueuedFrame queued) {
+        try {
+            scanner.accept(queued.frame);
+        } catch (CancellationException e) {
+            superseded.increment();
+        } catch (RuntimeException e) {
+            if (e instanceof CompletionException && e.getCause() instanceof CancellationException) {
+                superseded.increment();
+            } else {
+                failed.increment();
+                log.warn("Unable to scan frame from " + name, e);
+            }
+        }
+        long latency = System.nanoTime() - queued.submittedAt;
+        latencyNanos.add(latency);
+        maxLatencyNanos.accumulate(latency);
+        lastLatencyNanos = latency;
+        scanned.increment();
+    }
+
+    private record QueuedFrame(BufferedImage frame, long submittedAt) {
+    }
+}
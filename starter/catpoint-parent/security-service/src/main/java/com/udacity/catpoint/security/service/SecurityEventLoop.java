@@ -0,0 +1,274 @@
+package com.udacity.catpoint.security.service;
+
+import com.udacity.catpoint.security.data.ArmingStatus;
+import com.udacity.catpoint.security.data.Sensor;
+import com.udacity.catpoint.security.service.SecurityStateMachine.Transition;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.AbstractCollection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Feeds sensor, arming and image-result events to a ConcurrentSecurityService through a bounded,
+ * pre-allocated ring buffer drained by one dedicated processing thread.
+ *
+ * Producers only claim a slot, fill it in and publish it, so they never wait on repository I/O or
+ * listener callbacks; they only wait when the buffer is full. The processing thread takes every
+ * event published so far as one batch, applies them to the state machine in order, then persists
+ * the outcome and notifies listeners once for the whole batch.
+ */
+public class SecurityEventLoop implements AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(SecurityEventLoop.class);
+
+    public static final int DEFAULT_CAPACITY = 4096;
+
+    //bounds on how long a producer parks between checks while the buffer is full
+    private static final long MIN_CLAIM_BACKOFF_NANOS = 1_000;
+    private static final long MAX_CLAIM_BACKOFF_NANOS = 1_000_000;
+
+    private enum EventType { SENSOR_ACTIVATION, ARMING_STATUS, IMAGE_RESULT }
+
+    /**
+     * A reusable ring buffer entry. The event fields are written by the producer that claimed the
+     * slot before it publishes the slot's sequence, and read by the processor after it sees it.
+     */
+    private static final class Slot {
+        private volatile long sequence = -1;
+        private long claimedSequence;
+        private EventType type;
+        private Sensor sensor;
+        private boolean flag;
+        private ArmingStatus armingStatus;
+    }
+
+    private final ConcurrentSecurityService securityService;
+    private final Slot[] slots;
+    private final int mask;
+
+    private final AtomicLong claimed = new AtomicLong();
+    private volatile long consumed;
+    private volatile boolean processorWaiting;
+    private volatile boolean running = true;
+
+    private final AtomicLong batches = new AtomicLong();
+    private final Thread processor;
+
+    public SecurityEventLoop(ConcurrentSecurityService securityService) {
+        this(securityService, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Creates the ring buffer and starts the processing thread.
+     * @param capacity Number of slots, must be a power of two
+     */
+    public SecurityEventLoop(ConcurrentSecurityService securityService, int capacity) {
+        if (Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Capacity must be a power of two: " + capacity);
+        }
+        this.securityService = securityService;
+        this.slots = new Slot[capacity];
+        for (int i = 0; i < capacity; i++) {
+            slots[i] = new Slot();
+        }
+        this.mask = capacity - 1;
+        this.processor = new Thread(this::processLoop, "security-event-loop");
+        this.processor.setDaemon(true);
+        this.processor.start();
+    }
+
+    public void submitSensorActivation(Sensor sensor, boolean active) {
+        Slot slot = claim();
+        slot.type = EventType.SENSOR_ACTIVATION;
+        slot.sensor = sensor;
+        slot.flag = active;
+        publish(slot);
+    }
+
+    public void submitArmingStatus(ArmingStatus armingStatus) {
+        Slot slot = claim();
+        slot.type = EventType.ARMING_STATUS;
+        slot.armingStatus = armingStatus;
+        publish(slot);
+    }
+
+    public void submitImageResult(boolean catDetected) {
+        Slot slot = claim();
+        slot.type = EventType.IMAGE_RESULT;
+        slot.flag = catDetected;
+        publish(slot);
+    }
+
+    /**
+     * Total number of events published so far.
+     */
+    public long getSubmittedCount() {
+        return claimed.get();
+    }
+
+    /**
+     * Total number of events the processing thread has applied and persisted.
+     */
+    public long getProcessedCount() {
+        return consumed;
+    }
+
+    /**
+     * Number of batches persisted so far. Compared with getProcessedCount this gives the average batch size.
+     */
+    public long getBatchCount() {
+        return batches.get();
+    }
+
+    /**
+     * Stops accepting events, processes everything already published and stops the processing thread.
+     * Producers should stop submitting before calling this; a submit racing with close may be dropped.
+     */
+    @Override
+    public void close() {
+        running = false;
+        LockSupport.unpark(processor);
+        try {
+            processor.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Claims the next slot, waiting for the processor to free one while the buffer is full.
+     */
+    private Slot claim() {
+        long backoff = MIN_CLAIM_BACKOFF_NANOS;
+        while (true) {
+            if (!running) {
+                throw new IllegalStateException("Security event loop is closed");
+            }
+            long sequence = claimed.get();
+            if (sequence - consumed >= slots.length) {
+                wakeProcessor();
+                LockSupport.parkNanos(backoff);
+                backoff = Math.min(backoff * 2, MAX_CLAIM_BACKOFF_NANOS);
+                continue;
+            }
+            if (claimed.compareAndSet(sequence, sequence + 1)) {
+                Slot slot = slots[(int) sequence & mask];
+                slot.claimedSequence = sequence;
+                return slot;
+            }
+        }
+    }
+
+    private void publish(Slot slot) {
+        slot.sequence = slot.claimedSequence;
+        wakeProcessor();
+    }
+
+    private void wakeProcessor() {
+        if (processorWaiting) {
+            LockSupport.unpark(processor);
+        }
+    }
+
+    private void processLoop() {
+        Map<UUID, Sensor> changedSensors = new LinkedHashMap<>();
+        long next = 0;
+        while (true) {
+            long end = next;
+            while (end - next < slots.length && slots[(int) end & mask].sequence == end) {
+                end++;
+            }
+            if (end == next) {
+                if (!running && claimed.get() == next) {
+                    return;
+                }
+                //park even while closing: a producer that has claimed but not yet published the next
+                //slot wakes the processor when it publishes. No wakeup is missed: the flag is set
+                //before the slot is checked again, while publish sets the slot before checking the
+                //flag, and an unpark that lands before the park leaves a permit that ends it at once
+                processorWaiting = true;
+                if (slots[(int) next & mask].sequence != next) {
+                    LockSupport.park(this);
+                }
+                processorWaiting = false;
+                continue;
+            }
+
+            try {
+                processBatch(next, end, changedSensors);
+            } catch (RuntimeException e) {
+                log.error("Unable to process security events", e);
+            }
+            changedSensors.clear();
+            next = end;
+            consumed = end;
+        }
+    }
+
+    private void processBatch(long start, long end, Map<UUID, Sensor> changedSensors) {
+        try {
+            SecurityState before = securityService.getState();
+            boolean armingChanged = false;
+            Boolean cat = null;
+            for (long sequence = start; sequence < end; sequence++) {
+                Slot slot = slots[(int) sequence & mask];
+                switch (slot.type) {
+                    case SENSOR_ACTIVATION -> {
+                        securityService.applySensorActivation(slot.sensor, slot.flag);
+                        changedSensors.put(slot.sensor.getSensorId(), slot.sensor);
+                    }
+                    case ARMING_STATUS -> {
+                        securityService.applyArmingStatus(slot.armingStatus, new SensorCollector(changedSensors));
+                        armingChanged = true;
+                    }
+                    case IMAGE_RESULT -> {
+                        securityService.applyCatDetected(slot.flag);
+                        cat = slot.flag;
+                    }
+                }
+            }
+            securityService.publishBatch(new Transition(before, securityService.getState()),
+                    changedSensors.values(), armingChanged, cat);
+            batches.incrementAndGet();
+        } finally {
+            //drop the references even if a handler threw part way, so no sensor outlives its batch
+            for (long sequence = start; sequence < end; sequence++) {
+                Slot slot = slots[(int) sequence & mask];
+                slot.sensor = null;
+                slot.armingStatus = null;
+            }
+        }
+    }
+
+    /**
+     * Adapts the batch's sensor map to the collection the arming transition reports into.
+     */
+    private static final class SensorCollector extends AbstractCollection<Sensor> {
+        private final Map<UUID, Sensor> sensors;
+
+        private SensorCollector(Map<UUID, Sensor> sensors) {
+            this.sensors = sensors;
+        }
+
+        @Override
+        public boolean add(Sensor sensor) {
+            return sensors.put(sensor.getSensorId(), sensor) == null;
+        }
+
+        @Override
+        public Iterator<Sensor> iterator() {
+            return sensors.values().iterator();
+        }
+
+        @Override
+        public int size() {
+            return sensors.size();
+        }
+    }
+}
@@ -1,21 +1,26 @@
 package com.udacity.catpoint.security.service;
 
 
-import com.udacity.catpoint.image.service.FakeImageService;
+import com.udacity.catpoint.image.service.ImageClassification;
+import com.udacity.catpoint.image.service.ImageExecutors;
 import com.udacity.catpoint.image.service.ImageService;
 import com.udacity.catpoint.security.application.StatusListener;
 import com.udacity.catpoint.security.data.AlarmStatus;
 import com.udacity.catpoint.security.data.ArmingStatus;
 import com.udacity.catpoint.security.data.SecurityRepository;
 import com.udacity.catpoint.security.data.Sensor;
+import com.udacity.catpoint.security.data.SensorType;
 
 import java.awt.image.BufferedImage;
-import java.util.HashSet;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Set;
-import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.function.UnaryOperator;
 
-import static com.udacity.catpoint.security.data.AlarmStatus.*;
-import static com.udacity.catpoint.security.data.ArmingStatus.ARMED_HOME;
 import static com.udacity.catpoint.security.data.ArmingStatus.DISARMED;
 
 /**
@@ -24,32 +29,76 @@ import static com.udacity.catpoint.security.data.ArmingStatus.DISARMED;
  *
  * This is the class that should contain most of the business logic for our system, and it is the
  * class you will be writing unit tests for.
+ *
+ * Active sensors are counted by a SensorActivityTracker rather than by scanning the repository, so
+ * the service must be the only writer of sensor activation to its repository: sensors are to be
+ * added, removed and switched through the service, never through the repository directly. The
+ * tracker is seeded from the repository on first use; code that has to write to the repository
+ * behind the service's back, such as an import, must call resyncSensorActivity afterwards. When
+ * assertions are enabled the tracker is checked against the repository before it clears an alarm.
  */
-public class SecurityService {
+public class SecurityService implements AutoCloseable {
+
+    public static final float DEFAULT_CAT_CONFIDENCE_THRESHOLD = 50.0f;
 
-    private final ImageService imageService;
-    private final SecurityRepository securityRepository;
-    private final Set<StatusListener> statusListeners = new HashSet<>();
+    protected final ImageService imageService;
+    protected final SecurityRepository securityRepository;
+    protected final Set<StatusListener> statusListeners = new CopyOnWriteArraySet<>();
+    private final SensorActivityTracker sensorActivity = new SensorActivityTracker();
+    private volatile boolean sensorActivitySeeded;
     private boolean catDetect = false;
+    private volatile float catConfidenceThreshold = DEFAULT_CAT_CONFIDENCE_THRESHOLD;
+    private volatile ImageClassification lastClassification;
+
+    //asynchronous image scans
+    private final Object scanLock = new Object();
+    private Executor imageExecutor;
+    private ExecutorService ownedImageExecutor;
+    private boolean closed;
+    private volatile Executor imageResultExecutor = Runnable::run;
+    private CompletableFuture<ImageClassification> pendingScan;
+    private long scanSequence;
+    private long appliedScan;
 
-    public SecurityService(SecurityRepository securityRepository, FakeImageService imageService) {
+    public SecurityService(SecurityRepository securityRepository, ImageService imageService) {
         this.securityRepository = securityRepository;
         this.imageService = imageService;
     }
 
+    /**
+     * The tracker counting active sensors, seeded from the repository the first time it is needed.
+     */
+    protected SensorActivityTracker sensorActivity() {
+        if (!sensorActivitySeeded) {
+            synchronized (sensorActivity) {
+                if (!sensorActivitySeeded) {
+                    sensorActivity.reset(securityRepository.getSensors());
+                    sensorActivitySeeded = true;
+                }
+            }
+        }
+        return sensorActivity;
+    }
+
+    /**
+     * Recounts the active sensors from the repository, for use after sensors were written to the
+     * repository without going through this service. Must not race with sensor changes.
+     */
+    public void resyncSensorActivity() {
+        synchronized (sensorActivity) {
+            sensorActivity.reset(securityRepository.getSensors());
+            sensorActivitySeeded = true;
+        }
+    }
+
     /**
      * * Sets the current arming status for the system. Changing the arming status
      * may update both the alarm status.
      */
     public void setArmingStatus(ArmingStatus armingStatus) {
-        if (catDetect && armingStatus == ARMED_HOME) {
-            setAlarmStatus(ALARM);
-        }
-        if(armingStatus == DISARMED) {
-            setAlarmStatus(NO_ALARM);
-        } else {
-            ConcurrentSkipListSet<Sensor> sensors = new ConcurrentSkipListSet<>(getSensors());
-            sensors.forEach(sensor -> changeSensorActivationStatus(sensor, false));
+        updateAlarmStatus(alarm -> AlarmRules.armingChanged(alarm, armingStatus, catDetect));
+        if(armingStatus != DISARMED) {
+            deactivateSensors();
         }
         securityRepository.setArmingStatus(armingStatus);
         statusListeners.forEach(StatusListener::sensorStatusChanged);
@@ -60,13 +109,11 @@ public class SecurityService {
      * the camera currently shows a cat.
      * @param cat True if a cat is detected, otherwise false.
      */
-    private void catDetected(Boolean cat) {
+    protected void catDetected(Boolean cat) {
         this.catDetect = cat;
-        if(Boolean.TRUE.equals(cat) && getArmingStatus() == ArmingStatus.ARMED_HOME) {
-            setAlarmStatus(ALARM);
-        } else if (Boolean.FALSE.equals(cat) && getSensors().stream().allMatch(sensor -> Boolean.FALSE.equals(sensor.getActive()))) {
-            setAlarmStatus(NO_ALARM);
-        }
+        boolean allInactive = !cat && sensorActivity().allInactive();
+        assert !allInactive || sensorActivity().matches(getSensors()) : "Sensors were changed without going through SecurityService";
+        updateAlarmStatus(alarm -> AlarmRules.catDetected(alarm, getArmingStatus(), cat, allInactive));
 
         statusListeners.forEach(sl -> sl.catDetected(cat));
     }
@@ -91,25 +138,14 @@ public class SecurityService {
     }
 
     /**
-     * Internal method for updating the alarm status when a sensor has been activated.
-     */
-    private void handleSensorActivated() {
-        if(securityRepository.getArmingStatus() == DISARMED) {
-            return; //no problem if the system is disarmed
-        }
-        switch(securityRepository.getAlarmStatus()) {
-            case NO_ALARM -> setAlarmStatus(PENDING_ALARM);
-            case PENDING_ALARM -> setAlarmStatus(ALARM);
-        }
-    }
-
-    /**
-     * Internal method for updating the alarm status when a sensor has been deactivated
+     * Internal method that applies one of the AlarmRules to the current alarm status and sets the
+     * result if it differs.
      */
-    private void handleSensorDeactivated() {
-        switch(securityRepository.getAlarmStatus()) {
-            case PENDING_ALARM -> setAlarmStatus(NO_ALARM);
-            case ALARM -> setAlarmStatus(PENDING_ALARM);
+    private void updateAlarmStatus(UnaryOperator<AlarmStatus> rule) {
+        AlarmStatus alarmStatus = securityRepository.getAlarmStatus();
+        AlarmStatus next = rule.apply(alarmStatus);
+        if (next != alarmStatus) {
+            setAlarmStatus(next);
         }
     }
 
@@ -117,34 +153,175 @@ public class SecurityService {
      * Change the activation status for the specified sensor and update alarm status if necessary.
      */
     public void changeSensorActivationStatus(Sensor sensor, Boolean active) {
-        AlarmStatus alarmStatus = securityRepository.getAlarmStatus();
         ArmingStatus armingStatus = this.getArmingStatus();
+        boolean wasActive = Boolean.TRUE.equals(sensor.getActive());
         if (active == null) {
-            if (alarmStatus == PENDING_ALARM && !sensor.getActive()) {
-                handleSensorDeactivated();
-            } else if (alarmStatus == ALARM && armingStatus == DISARMED) {
-                handleSensorDeactivated();
-            }
+            updateAlarmStatus(alarm -> AlarmRules.sensorRechecked(alarm, armingStatus, wasActive));
         } else {
-            if (alarmStatus != ALARM) {
-                if (active) {
-                    handleSensorActivated();
-                } else if (sensor.getActive()) {
-                    handleSensorDeactivated();
-                }
-            }
+            updateAlarmStatus(alarm -> AlarmRules.sensorActivation(alarm, armingStatus, active, wasActive));
             sensor.setActive(active);
+            if (active) {
+                sensorActivity().activate(sensor);
+            } else {
+                sensorActivity().deactivate(sensor);
+            }
         }
 
         securityRepository.updateSensor(sensor);
     }
 
+    /**
+     * Deactivate every sensor at once. The resulting alarm status change is applied a single time,
+     * the changed sensors are persisted with one repository call and listeners are notified once.
+     */
+    public void deactivateAllSensors() {
+        deactivateSensors();
+        statusListeners.forEach(StatusListener::sensorStatusChanged);
+    }
+
+    /**
+     * Internal method that deactivates all sensors. Deactivating sensors one at a time can only move
+     * a pending alarm back to no alarm, so the combined transition is that of a single deactivation.
+     */
+    private void deactivateSensors() {
+        List<Sensor> changed = new ArrayList<>();
+        for (Sensor sensor : getSensors()) {
+            if (Boolean.TRUE.equals(sensor.getActive())) {
+                changed.add(sensor);
+            }
+        }
+        if (changed.isEmpty()) {
+            return;
+        }
+        ArmingStatus armingStatus = securityRepository.getArmingStatus();
+        updateAlarmStatus(alarm -> AlarmRules.sensorActivation(alarm, armingStatus, false, true));
+        changed.forEach(sensor -> {
+            sensor.setActive(false);
+            sensorActivity().deactivate(sensor);
+        });
+        securityRepository.updateSensors(changed);
+    }
+
     /**
      * Send an image to the SecurityService for processing. The securityService will use its provided
      * ImageService to analyze the image for cats and update the alarm status accordingly.
      */
     public void processImage(BufferedImage currentCameraImage) {
-        catDetected(imageService.imageContainsCat(currentCameraImage, 50.0f));
+        applyClassification(imageService.classify(currentCameraImage));
+    }
+
+    /**
+     * Asynchronous variant of processImage. The image is classified on the image executor and the
+     * result is applied on the image result executor. Submitting a new scan cancels the previous one
+     * if it is still running, and results are applied in submission order, so an older scan can never
+     * overwrite the result of a newer one.
+     *
+     * Cancelling only drops the superseded scan's result: CompletableFuture.cancel does not interrupt
+     * the task behind it, so the image service finishes the classification it started and the
+     * outcome is discarded.
+     * @return Completes with the scan result once it has been applied, or is cancelled if superseded
+     * @throws IllegalStateException if the service has been closed
+     */
+    public CompletableFuture<Boolean> processImageAsync(BufferedImage currentCameraImage) {
+        CompletableFuture<ImageClassification> scan;
+        CompletableFuture<ImageClassification> superseded;
+        long sequence;
+        synchronized (scanLock) {
+            if (closed) {
+                throw new IllegalStateException("Security service is closed");
+            }
+            if (imageExecutor == null) {
+                ownedImageExecutor = ImageExecutors.newDefaultExecutor();
+                imageExecutor = ownedImageExecutor;
+            }
+            scan = imageService.classifyAsync(currentCameraImage, imageExecutor);
+            superseded = pendingScan;
+            pendingScan = scan;
+            sequence = ++scanSequence;
+        }
+        if (superseded != null) {
+            superseded.cancel(true);
+        }
+        return scan.thenApplyAsync(classification -> applyScanResult(sequence, classification), imageResultExecutor);
+    }
+
+    private boolean applyScanResult(long sequence, ImageClassification classification) {
+        synchronized (scanLock) {
+            if (sequence < appliedScan) {
+                return classification.containsCat(catConfidenceThreshold);
+            }
+            appliedScan = sequence;
+        }
+        return applyClassification(classification);
+    }
+
+    /**
+     * Thresholds the classification of the latest camera image and updates the alarm status.
+     * @return Whether the classification counted as a cat
+     */
+    private boolean applyClassification(ImageClassification classification) {
+        lastClassification = classification;
+        boolean cat = classification.containsCat(catConfidenceThreshold);
+        catDetected(cat);
+        return cat;
+    }
+
+    /**
+     * The full classification of the most recently processed camera image, with every label's
+     * confidence, or null if no image has been processed yet.
+     */
+    public ImageClassification getLastClassification() {
+        return lastClassification;
+    }
+
+    public float getCatConfidenceThreshold() {
+        return catConfidenceThreshold;
+    }
+
+    /**
+     * Sets the confidence in percent a Cat label needs for an image to count as showing a cat.
+     * Applies to images processed from now on.
+     */
+    public void setCatConfidenceThreshold(float catConfidenceThreshold) {
+        this.catConfidenceThreshold = catConfidenceThreshold;
+    }
+
+    /**
+     * Sets the executor image classification runs on. Defaults to a virtual thread per scan where
+     * the runtime supports it. The caller keeps ownership of the executor and shuts it down itself.
+     */
+    public void setImageExecutor(Executor imageExecutor) {
+        synchronized (scanLock) {
+            this.imageExecutor = imageExecutor;
+            shutdownOwnedImageExecutor();
+        }
+    }
+
+    /**
+     * Shuts down the default image executor if the service created one. Scans already submitted
+     * still complete; new ones are rejected. An executor passed to setImageExecutor is left alone.
+     */
+    @Override
+    public void close() {
+        synchronized (scanLock) {
+            closed = true;
+            shutdownOwnedImageExecutor();
+        }
+    }
+
+    private void shutdownOwnedImageExecutor() {
+        if (ownedImageExecutor != null) {
+            ownedImageExecutor.shutdown();
+            ownedImageExecutor = null;
+        }
+    }
+
+    /**
+     * Sets the executor scan results are applied and listeners notified on, for example
+     * SwingUtilities::invokeLater. Defaults to the thread that completed the scan.
+     */
+    public void setImageResultExecutor(Executor imageResultExecutor) {
+        this.imageResultExecutor = imageResultExecutor;
     }
 
     public AlarmStatus getAlarmStatus() {
@@ -157,10 +334,29 @@ public class SecurityService {
 
     public void addSensor(Sensor sensor) {
         securityRepository.addSensor(sensor);
+        if (Boolean.TRUE.equals(sensor.getActive())) {
+            sensorActivity().activate(sensor);
+        }
     }
 
     public void removeSensor(Sensor sensor) {
         securityRepository.removeSensor(sensor);
+        sensorActivity().deactivate(sensor);
+    }
+
+    /**
+     * Number of currently active sensors, maintained incrementally rather than by scanning.
+     */
+    public int getActiveSensorCount() {
+        return sensorActivity().getActiveCount();
+    }
+
+    public int getActiveSensorCount(SensorType sensorType) {
+        return sensorActivity().getActiveCount(sensorType);
+    }
+
+    public boolean allSensorsInactive() {
+        return sensorActivity().allInactive();
     }
 
     public ArmingStatus getArmingStatus() {
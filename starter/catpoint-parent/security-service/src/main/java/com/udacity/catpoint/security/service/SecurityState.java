@@ -0,0 +1,70 @@
+package com.udacity.catpoint.security.service;
+
+import com.udacity.catpoint.security.data.AlarmStatus;
+import com.udacity.catpoint.security.data.ArmingStatus;
+
+/**
+ * Immutable snapshot of everything the alarm rules depend on. Each transition method applies one
+ * event using AlarmRules, as SecurityService does, and returns a new state with the next version,
+ * leaving this one untouched, so transitions can be retried safely by a compare-and-set loop.
+ *
+ * @param alarmStatus Current alarm status
+ * @param armingStatus Current arming status
+ * @param catDetected Whether the camera currently shows a cat
+ * @param activeSensorCount Number of sensors currently active
+ * @param version Number of transitions applied since the state was loaded
+ */
+public record SecurityState(AlarmStatus alarmStatus, ArmingStatus armingStatus, boolean catDetected,
+                            int activeSensorCount, long version) {
+
+    /**
+     * A sensor was switched on or off.
+     * @param active The new activation status of the sensor
+     * @param wasActive The activation status of the sensor before this event
+     */
+    public SecurityState withSensorActivation(boolean active, boolean wasActive) {
+        AlarmStatus alarm = AlarmRules.sensorActivation(alarmStatus, armingStatus, active, wasActive);
+        int count = activeSensorCount + (active == wasActive ? 0 : active ? 1 : -1);
+        return new SecurityState(alarm, armingStatus, catDetected, count, version + 1);
+    }
+
+    /**
+     * A sensor was re-evaluated without changing its activation status.
+     * @param sensorActive The current activation status of the sensor
+     */
+    public SecurityState withSensorRechecked(boolean sensorActive) {
+        AlarmStatus alarm = AlarmRules.sensorRechecked(alarmStatus, armingStatus, sensorActive);
+        return new SecurityState(alarm, armingStatus, catDetected, activeSensorCount, version + 1);
+    }
+
+    /**
+     * Sensors were added or removed without an alarm decision, changing the active count by delta.
+     */
+    public SecurityState withActiveSensorCountDelta(int delta) {
+        return new SecurityState(alarmStatus, armingStatus, catDetected, activeSensorCount + delta, version + 1);
+    }
+
+    /**
+     * The arming status changed. Deactivating the sensors when arming is applied as separate
+     * sensor events.
+     */
+    public SecurityState withArmingStatus(ArmingStatus arming) {
+        AlarmStatus alarm = AlarmRules.armingChanged(alarmStatus, arming, catDetected);
+        return new SecurityState(alarm, arming, catDetected, activeSensorCount, version + 1);
+    }
+
+    /**
+     * The camera reported whether it sees a cat.
+     */
+    public SecurityState withCatDetected(boolean cat) {
+        AlarmStatus alarm = AlarmRules.catDetected(alarmStatus, armingStatus, cat, activeSensorCount == 0);
+        return new SecurityState(alarm, armingStatus, cat, activeSensorCount, version + 1);
+    }
+
+    /**
+     * The alarm status was set directly.
+     */
+    public SecurityState withAlarmStatus(AlarmStatus alarm) {
+        return new SecurityState(alarm, armingStatus, catDetected, activeSensorCount, version + 1);
+    }
+}
@@ -0,0 +1,52 @@
+package com.udacity.catpoint.security.service;
+
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.UnaryOperator;
+
+/**
+ * Holds the current SecurityState and applies events to it with a compare-and-set loop, so events
+ * from many threads can be applied without locks. Every successful transition increments the
+ * state version by exactly one, which means no transition is ever lost or applied twice.
+ */
+public class SecurityStateMachine {
+
+    private final AtomicReference<SecurityState> state;
+
+    public SecurityStateMachine(SecurityState initialState) {
+        this.state = new AtomicReference<>(initialState);
+    }
+
+    public SecurityState getState() {
+        return state.get();
+    }
+
+    /**
+     * Applies an event to the current state. The event may be evaluated more than once if another
+     * thread wins the race, so it must be a pure function of the state it is given.
+     * @param event Function computing the next state, typically one of the SecurityState transitions
+     * @return The state the event was applied to and the state it produced
+     */
+    public Transition apply(UnaryOperator<SecurityState> event) {
+        while (true) {
+            SecurityState before = state.get();
+            SecurityState after = event.apply(before);
+            if (state.compareAndSet(before, after)) {
+                return new Transition(before, after);
+            }
+        }
+    }
+
+    /**
+     * The result of applying one event.
+     */
+    public record Transition(SecurityState before, SecurityState after) {
+
+        public boolean alarmStatusChanged() {
+            return before.alarmStatus() != after.alarmStatus();
+        }
+
+        public boolean armingStatusChanged() {
+            return before.armingStatus() != after.armingStatus();
+        }
+    }
+}
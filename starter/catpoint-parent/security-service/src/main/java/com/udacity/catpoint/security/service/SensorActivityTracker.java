@@ -0,0 +1,115 @@
+package com.udacity.catpoint.security.service;
+
+import com.udacity.catpoint.security.data.Sensor;
+import com.udacity.catpoint.security.data.SensorType;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Keeps a live count of active sensors, in total and per SensorType, so questions like
+ * "are all sensors inactive?" can be answered without scanning every sensor. Counts are
+ * updated incrementally as sensors change state and are safe to use from multiple threads.
+ *
+ * The tracker only knows about changes it is told about, so everything that changes a sensor must
+ * report it here; see SecurityService for how that is arranged.
+ */
+public class SensorActivityTracker {
+
+    private final Set<UUID> activeSensors = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger activeCount = new AtomicInteger();
+    private final AtomicIntegerArray activeCountByType = new AtomicIntegerArray(SensorType.values().length);
+
+    public SensorActivityTracker() {
+    }
+
+    public SensorActivityTracker(Collection<Sensor> sensors) {
+        reset(sensors);
+    }
+
+    /**
+     * Discards all counts and counts the given sensors afresh. Must not race with activate or
+     * deactivate.
+     */
+    public void reset(Collection<Sensor> sensors) {
+        activeSensors.clear();
+        activeCount.set(0);
+        for (int i = 0; i < activeCountByType.length(); i++) {
+            activeCountByType.set(i, 0);
+        }
+        sensors.stream()
+                .filter(sensor -> Boolean.TRUE.equals(sensor.getActive()))
+                .forEach(this::activate);
+    }
+
+    /**
+     * Whether exactly the active sensors among the given ones are counted as active. Scans every
+     * sensor, so it is meant for consistency checks rather than decisions.
+     */
+    public boolean matches(Collection<Sensor> sensors) {
+        int active = 0;
+        for (Sensor sensor : sensors) {
+            if (Boolean.TRUE.equals(sensor.getActive())) {
+                if (!activeSensors.contains(sensor.getSensorId())) {
+                    return false;
+                }
+                active++;
+            }
+        }
+        return active == activeSensors.size();
+    }
+
+    /**
+     * Records the sensor as active.
+     * @return true if the sensor was previously counted as inactive
+     */
+    public boolean activate(Sensor sensor) {
+        if (!activeSensors.add(sensor.getSensorId())) {
+            return false;
+        }
+        activeCount.incrementAndGet();
+        activeCountByType.incrementAndGet(sensor.getSensorType().ordinal());
+        return true;
+    }
+
+    /**
+     * Records the sensor as inactive. Also used when a sensor is removed.
+     * @return true if the sensor was previously counted as active
+     */
+    public boolean deactivate(Sensor sensor) {
+        if (!activeSensors.remove(sensor.getSensorId())) {
+            return false;
+        }
+        activeCount.decrementAndGet();
+        activeCountByType.decrementAndGet(sensor.getSensorType().ordinal());
+        return true;
+    }
+
+    public boolean isActive(Sensor sensor) {
+        return activeSensors.contains(sensor.getSensorId());
+    }
+
+    public int getActiveCount() {
+        return activeCount.get();
+    }
+
+    public int getActiveCount(SensorType sensorType) {
+        return activeCountByType.get(sensorType.ordinal());
+    }
+
+    public boolean allInactive() {
+        return activeCount.get() == 0;
+    }
+
+    /**
+     * Read-only live view of the ids of all sensors currently counted as active.
+     */
+    public Set<UUID> getActiveSensorIds() {
+        return Collections.unmodifiableSet(activeSensors);
+    }
+}
@@ -0,0 +1,10 @@
+package com.udacity.catpoint.security.service;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A frame read back from an EvidenceStore. The JPEG bytes are a read-only view of the store's
+ * memory-mapped segment rather than a copy.
+ */
+public record StoredFrame(String cameraName, long capturedAtMillis, ByteBuffer jpeg) {
+}
@@ -6,5 +6,6 @@ open module com.udacity.catpoint.security {
     requires com.google.gson;
     requires java.sql;
     requires java.prefs;
+    requires org.slf4j;
 
 }
\ No newline at end of file
@@ -0,0 +1,269 @@
+package com.udacity.catpoint.security.data;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.prefs.Preferences;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PretendDatabaseSecurityRepositoryImplTest {
+
+    private final Preferences prefs = new InMemoryPreferences();
+
+    @Test
+    void writeBehind_burstOfChanges_coalescedIntoOneWritePerEntry() throws Exception {
+        Sensor door = new Sensor("door", SensorType.DOOR);
+        try (PretendDatabaseSecurityRepositoryImpl repository = writeBehind()) {
+            //the first change is written straight away, later ones wait out the flush interval
+            repository.setArmingStatus(ArmingStatus.ARMED_HOME);
+            awaitWrites(repository, 1);
+
+            repository.addSensor(door);
+            for (int i = 0; i < 4; i++) {
+                door.setActive(i % 2 == 0);
+                repository.updateSensor(door);
+            }
+            repository.setAlarmStatus(AlarmStatus.PENDING_ALARM);
+            repository.setAlarmStatus(AlarmStatus.ALARM);
+            assertEquals(1, repository.getWriteCount());
+
+            repository.flush();
+            //the sensor, the manifest and the alarm status out of eight changes
+            assertEquals(4, repository.getWriteCount());
+            assertEquals(5, repository.getCoalescedWriteCount());
+        }
+
+        PretendDatabaseSecurityRepositoryImpl reloaded = reload();
+        assertEquals(AlarmStatus.ALARM, reloaded.getAlarmStatus());
+        assertEquals(ArmingStatus.ARMED_HOME, reloaded.getArmingStatus());
+        assertFalse(reloaded.findSensor(door.getSensorId()).getActive());
+    }
+
+    @Test
+    void flush_writesPendingChanges_nothingLeftAfterwards() throws Exception {
+        try (PretendDatabaseSecurityRepositoryImpl repository = writeBehind()) {
+            repository.setArmingStatus(ArmingStatus.ARMED_HOME);
+            awaitWrites(repository, 1);
+            repository.setArmingStatus(ArmingStatus.ARMED_AWAY);
+            assertEquals(ArmingStatus.ARMED_HOME, reload().getArmingStatus());
+
+            repository.flush();
+            assertEquals(ArmingStatus.ARMED_AWAY, reload().getArmingStatus());
+            long writes = repository.getWriteCount();
+            repository.flush();
+            assertEquals(writes, repository.getWriteCount());
+        }
+    }
+
+    @Test
+    void close_writesPendingChanges_laterChangesWrittenStraightAway() throws Exception {
+        Sensor window = new Sensor("window", SensorType.WINDOW);
+        PretendDatabaseSecurityRepositoryImpl repository = writeBehind();
+        repository.setArmingStatus(ArmingStatus.ARMED_HOME);
+        awaitWrites(repository, 1);
+        repository.setAlarmStatus(AlarmStatus.PENDING_ALARM);
+
+        repository.close();
+        assertEquals(AlarmStatus.PENDING_ALARM, reload().getAlarmStatus());
+
+        repository.addSensor(window);
+        assertNotNull(reload().findSensor(window.getSensorId()));
+    }
+
+    @Test
+    void writeThrough_concurrentChanges_storedStateMatchesMemory() throws Exception {
+        PretendDatabaseSecurityRepositoryImpl repository = new PretendDatabaseSecurityRepositoryImpl(prefs, Duration.ZERO, SensorFormat.BINARY);
+        List<Sensor> sensors = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            Sensor sensor = new Sensor("sensor " + i, SensorType.MOTION);
+            sensors.add(sensor);
+            repository.addSensor(sensor);
+        }
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            int thread = t;
+            threads.add(new Thread(() -> {
+                for (int i = 0; i < 200; i++) {
+                    Sensor sensor = sensors.get((thread + i) % sensors.size());
+                    Sensor copy = new Sensor(sensor.getName(), sensor.getSensorType());
+                    copy.setSensorId(sensor.getSensorId());
+                    copy.setActive(i % 3 == 0);
+                    repository.updateSensor(copy);
+                    repository.setAlarmStatus(AlarmStatus.values()[i % AlarmStatus.values().length]);
+                }
+            }));
+        }
+        threads.forEach(Thread::start);
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        PretendDatabaseSecurityRepositoryImpl reloaded = reload();
+        assertEquals(repository.getAlarmStatus(), reloaded.getAlarmStatus());
+        for (Sensor sensor : sensors) {
+            assertEquals(repository.findSensor(sensor.getSensorId()).getActive(), reloaded.findSensor(sensor.getSensorId()).getActive());
+        }
+    }
+
+    @Test
+    void legacyJsonString_migratedToPerSensorEntries_legacyKeyRemoved() throws Exception {
+        Sensor door = new Sensor("door", SensorType.DOOR);
+        door.setActive(Boolean.TRUE);
+        Sensor window = new Sensor("window", SensorType.WINDOW);
+        SensorTypeAdapter adapter = new SensorTypeAdapter();
+        prefs.put("SENSORS", "[" + adapter.toJson(door) + "," + adapter.toJson(window) + "]");
+
+        PretendDatabaseSecurityRepositoryImpl repository = reload();
+
+        assertEquals(2, repository.getSensors().size());
+        assertNull(prefs.get("SENSORS", null));
+        assertEquals(Set.of(door.getSensorId().toString(), window.getSensorId().toString()),
+                Set.of(prefs.node("sensors").childrenNames()));
+        Sensor migrated = reload().findSensor(door.getSensorId());
+        assertEquals("door", migrated.getName());
+        assertTrue(migrated.getActive());
+    }
+
+    @Test
+    void moreSensorsThanOneManifestChunk_allReloaded_leftoverChunksDropped() throws Exception {
+        PretendDatabaseSecurityRepositoryImpl repository = reload();
+        List<Sensor> sensors = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            sensors.add(new Sensor("sensor " + i, SensorType.MOTION));
+        }
+        repository.updateSensors(sensors);
+        Preferences sensorPrefs = prefs.node("sensors");
+        assertEquals(3, sensorPrefs.getInt("MANIFEST_CHUNKS", 0));
+        assertEquals(500, reload().getSensors().size());
+
+        for (Sensor sensor : sensors.subList(10, sensors.size())) {
+            repository.removeSensor(sensor);
+        }
+        assertEquals(1, sensorPrefs.getInt("MANIFEST_CHUNKS", 0));
+        assertNull(sensorPrefs.get("MANIFEST_1", null));
+        assertNull(sensorPrefs.get("MANIFEST_2", null));
+        assertEquals(Set.copyOf(sensors.subList(0, 10)), reload().getSensors());
+    }
+
+    @Test
+    void updateOneSensor_writesOnlyThatSensorsEntry() throws Exception {
+        PretendDatabaseSecurityRepositoryImpl repository = reload();
+        List<Sensor> sensors = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            sensors.add(new Sensor("sensor " + i, SensorType.MOTION));
+        }
+        repository.updateSensors(sensors);
+        String manifest = prefs.node("sensors").get("MANIFEST_0", null);
+        byte[] untouched = prefs.node("sensors").node(sensors.get(1).getSensorId().toString()).getByteArray("SENSOR_BINARY", null);
+
+        long writes = repository.getWriteCount();
+        Sensor updated = sensors.get(0);
+        updated.setActive(Boolean.TRUE);
+        repository.updateSensor(updated);
+
+        assertEquals(writes + 1, repository.getWriteCount());
+        assertEquals(manifest, prefs.node("sensors").get("MANIFEST_0", null));
+        assertArrayEquals(untouched, prefs.node("sensors").node(sensors.get(1).getSensorId().toString()).getByteArray("SENSOR_BINARY", null));
+        assertTrue(reload().findSensor(updated.getSensorId()).getActive());
+    }
+
+    @Test
+    void entryNotInManifest_removedOnLoad() throws Exception {
+        Sensor listed = new Sensor("door", SensorType.DOOR);
+        reload().addSensor(listed);
+        //left behind by a write interrupted between the entry and the manifest
+        Sensor orphan = new Sensor("window", SensorType.WINDOW);
+        prefs.node("sensors").node(orphan.getSensorId().toString()).putByteArray("SENSOR_BINARY", SensorCodec.encode(orphan));
+
+        PretendDatabaseSecurityRepositoryImpl repository = reload();
+
+        assertEquals(Set.of(listed), repository.getSensors());
+        assertNull(repository.findSensor(orphan.getSensorId()));
+        assertFalse(prefs.node("sensors").nodeExists(orphan.getSensorId().toString()));
+        assertTrue(prefs.node("sensors").nodeExists(listed.getSensorId().toString()));
+    }
+
+    @Test
+    void corruptEntries_skippedOnLoad_otherSensorsKept() throws Exception {
+        Sensor door = new Sensor("door", SensorType.DOOR);
+        Sensor window = new Sensor("window", SensorType.WINDOW);
+        Sensor motion = new Sensor("motion", SensorType.MOTION);
+        PretendDatabaseSecurityRepositoryImpl repository = reload();
+        repository.addSensor(door);
+        repository.addSensor(window);
+        repository.addSensor(motion);
+        Preferences sensorPrefs = prefs.node("sensors");
+        byte[] truncated = SensorCodec.encode(window);
+        sensorPrefs.node(window.getSensorId().toString()).putByteArray("SENSOR_BINARY", Arrays.copyOf(truncated, truncated.length - 6));
+        Preferences motionNode = sensorPrefs.node(motion.getSensorId().toString());
+        motionNode.remove("SENSOR_BINARY");
+        motionNode.put("SENSOR", "{\"name\": [");
+
+        assertEquals(Set.of(door), reload().getSensors());
+    }
+
+    @Test
+    void findSensor_returnsLatestInstance_removalByIdDropsIt() {
+        PretendDatabaseSecurityRepositoryImpl repository = reload();
+        Sensor door = new Sensor("door", SensorType.DOOR);
+        repository.addSensor(door);
+        assertSame(door, repository.findSensor(door.getSensorId()));
+
+        Sensor replacement = new Sensor("front door", SensorType.DOOR);
+        replacement.setSensorId(door.getSensorId());
+        repository.updateSensor(replacement);
+        assertSame(replacement, repository.findSensor(door.getSensorId()));
+        assertEquals(1, repository.getSensors().size());
+
+        //removal goes by id, so the instance first added removes its replacement
+        repository.removeSensor(door);
+        assertNull(repository.findSensor(door.getSensorId()));
+        assertTrue(repository.getSensors().isEmpty());
+        assertNull(reload().findSensor(door.getSensorId()));
+        assertNull(repository.findSensor(UUID.randomUUID()));
+    }
+
+    @Test
+    void sortedView_reusedUntilChanged_rebuiltAfterInPlaceRename() {
+        PretendDatabaseSecurityRepositoryImpl repository = reload();
+        Sensor alpha = new Sensor("alpha", SensorType.DOOR);
+        Sensor beta = new Sensor("beta", SensorType.DOOR);
+        repository.addSensor(alpha);
+        repository.addSensor(beta);
+        Set<Sensor> view = repository.getSensors();
+        assertSame(view, repository.getSensors());
+        assertEquals(List.of(alpha, beta), List.copyOf(view));
+        assertThrows(UnsupportedOperationException.class, () -> view.remove(alpha));
+
+        alpha.setName("gamma");
+        repository.updateSensor(alpha);
+
+        Set<Sensor> rebuilt = repository.getSensors();
+        assertNotSame(view, rebuilt);
+        assertEquals(List.of(beta, alpha), List.copyOf(rebuilt));
+        assertTrue(rebuilt.contains(alpha));
+    }
+
+    private PretendDatabaseSecurityRepositoryImpl writeBehind() {
+        return new PretendDatabaseSecurityRepositoryImpl(prefs, Duration.ofHours(1), SensorFormat.BINARY);
+    }
+
+    private PretendDatabaseSecurityRepositoryImpl reload() {
+        return new PretendDatabaseSecurityRepositoryImpl(prefs, Duration.ZERO, SensorFormat.BINARY);
+    }
+
+    private static void awaitWrites(PretendDatabaseSecurityRepositoryImpl repository, long writes) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (repository.getWriteCount() < writes && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+        assertEquals(writes, repository.getWriteCount());
+    }
+}
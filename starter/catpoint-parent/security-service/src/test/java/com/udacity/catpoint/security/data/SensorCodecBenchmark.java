@@ -0,0 +1,122 @@
+package com.udacity.catpoint.security.data;
+
+import com.google.common.reflect.TypeToken;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.stream.JsonReader;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.lang.reflect.Type;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares SensorCodec and the streaming SensorTypeAdapter with the reflective Gson serialization
+ * the repository used before, encoding and decoding whole sensor sets. Names repeat across sensors, as they do on real sites.
+ * The EachSensor cases encode or decode every sensor as its own entry, the way the repository
+ * stores them. Run with:
+ *      mvn -pl security-service test-compile
+ *      java -cp security-service/target/test-classes:security-service/target/classes:[test classpath] org.openjdk.jmh.Main SensorCodecBenchmark
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class SensorCodecBenchmark {
+
+    private static final String[] NAMES = {"Front Door", "Back Door", "Kitchen Window", "Hallway Motion", "Garage"};
+    private static final Type SENSOR_SET = new TypeToken<Set<Sensor>>() {
+    }.getType();
+
+    @Param({"100", "10000"})
+    public int sensorCount;
+
+    private final Gson gson = new Gson();
+    private final SensorTypeAdapter sensorAdapter = new SensorTypeAdapter();
+    private final Gson streamingGson = new GsonBuilder().registerTypeAdapter(Sensor.class, sensorAdapter).create();
+    private Set<Sensor> sensors;
+    private String json;
+    private byte[] binary;
+    private String[] sensorJson;
+    private byte[][] sensorBinary;
+
+    @Setup
+    public void setUp() {
+        sensors = new TreeSet<>();
+        for (int i = 0; i < sensorCount; i++) {
+            Sensor sensor = new Sensor(NAMES[i % NAMES.length], SensorType.values()[i % SensorType.values().length]);
+            sensor.setActive(i % 3 == 0);
+            sensors.add(sensor);
+        }
+        json = gson.toJson(sensors);
+        binary = SensorCodec.encode(sensors, AlarmStatus.NO_ALARM, ArmingStatus.ARMED_HOME);
+        sensorJson = sensors.stream().map(sensorAdapter::toJson).toArray(String[]::new);
+        sensorBinary = sensors.stream().map(SensorCodec::encode).toArray(byte[][]::new);
+    }
+
+    @Benchmark
+    public String gsonEncode() {
+        return gson.toJson(sensors);
+    }
+
+    @Benchmark
+    public Set<Sensor> gsonDecode() {
+        return gson.fromJson(json, SENSOR_SET);
+    }
+
+    @Benchmark
+    public String adapterEncode() {
+        return streamingGson.toJson(sensors);
+    }
+
+    @Benchmark
+    public List<Sensor> adapterDecode() throws IOException {
+        return sensorAdapter.readAll(new JsonReader(new StringReader(json)), sensorCount);
+    }
+
+    @Benchmark
+    public byte[] binaryEncode() {
+        return SensorCodec.encode(sensors, AlarmStatus.NO_ALARM, ArmingStatus.ARMED_HOME);
+    }
+
+    @Benchmark
+    public SensorCodec.Document binaryDecode() throws IOException {
+        return SensorCodec.decode(ByteBuffer.wrap(binary));
+    }
+
+    @Benchmark
+    public void adapterEncodeEachSensor(Blackhole blackhole) {
+        for (Sensor sensor : sensors) {
+            blackhole.consume(sensorAdapter.toJson(sensor));
+        }
+    }
+
+    @Benchmark
+    public void adapterDecodeEachSensor(Blackhole blackhole) throws IOException {
+        for (String entry : sensorJson) {
+            blackhole.consume(sensorAdapter.fromJson(entry));
+        }
+    }
+
+    @Benchmark
+    public void binaryEncodeEachSensor(Blackhole blackhole) {
+        for (Sensor sensor : sensors) {
+            blackhole.consume(SensorCodec.encode(sensor));
+        }
+    }
+
+    @Benchmark
+    public void binaryDecodeEachSensor(Blackhole blackhole) throws IOException {
+        for (byte[] entry : sensorBinary) {
+            blackhole.consume(SensorCodec.decodeSensor(entry));
+        }
+    }
+}
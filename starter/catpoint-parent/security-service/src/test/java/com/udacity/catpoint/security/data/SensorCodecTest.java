@@ -0,0 +1,131 @@
+package com.udacity.catpoint.security.data;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SensorCodecTest {
+
+    @Test
+    void encodeDecode_roundTripsSensorsAndStatus() throws IOException {
+        Sensor door = new Sensor("Front Door", SensorType.DOOR);
+        door.setActive(true);
+        Sensor window = new Sensor("Front Door", SensorType.WINDOW);
+        Sensor unnamed = new Sensor(null, null);
+        unnamed.setActive(null);
+
+        byte[] encoded = SensorCodec.encode(List.of(door, window, unnamed), AlarmStatus.PENDING_ALARM, null);
+        SensorCodec.Document document = SensorCodec.decode(ByteBuffer.wrap(encoded));
+
+        assertTrue(SensorCodec.isEncoded(encoded));
+        assertEquals(AlarmStatus.PENDING_ALARM, document.alarmStatus());
+        assertNull(document.armingStatus());
+        assertEquals(List.of(door, window, unnamed), document.sensors());
+        for (int i = 0; i < 3; i++) {
+            Sensor expected = List.of(door, window, unnamed).get(i);
+            Sensor actual = document.sensors().get(i);
+            assertEquals(expected.getName(), actual.getName());
+            assertEquals(expected.getActive(), actual.getActive());
+            assertEquals(expected.getSensorType(), actual.getSensorType());
+        }
+        //the repeated name is stored once and shared on decode
+        assertSame(document.sensors().get(0).getName(), document.sensors().get(1).getName());
+    }
+
+    @Test
+    void streamingThroughSmallBuffers_matchesWholeDocument() throws IOException {
+        List<Sensor> sensors = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            sensors.add(new Sensor("Sensor " + (i % 40), SensorType.MOTION));
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (SensorCodec.Encoder encoder = new SensorCodec.Encoder(Channels.newChannel(out), ByteBuffer.allocate(16),
+                AlarmStatus.ALARM, ArmingStatus.ARMED_AWAY)) {
+            for (Sensor sensor : sensors) {
+                encoder.write(sensor);
+            }
+        }
+        assertArrayEquals(SensorCodec.encode(sensors, AlarmStatus.ALARM, ArmingStatus.ARMED_AWAY), out.toByteArray());
+
+        SensorCodec.Decoder decoder = new SensorCodec.Decoder(Channels.newChannel(new ByteArrayInputStream(out.toByteArray())),
+                ByteBuffer.allocate(8));
+        List<Sensor> decoded = new ArrayList<>();
+        Sensor sensor;
+        while ((sensor = decoder.next()) != null) {
+            decoded.add(sensor);
+        }
+        assertEquals(ArmingStatus.ARMED_AWAY, decoder.getArmingStatus());
+        assertEquals(sensors, decoded);
+    }
+
+    @Test
+    void encodeSingleSensor_matchesOneSensorDocument() throws IOException {
+        Sensor named = new Sensor("K\u00fcchenfenster", SensorType.WINDOW);
+        named.setActive(true);
+        Sensor longName = new Sensor("Motion ".repeat(40), SensorType.MOTION);
+        Sensor unnamed = new Sensor(null, null);
+        unnamed.setActive(null);
+
+        for (Sensor sensor : List.of(named, longName, unnamed)) {
+            byte[] encoded = SensorCodec.encode(sensor);
+            assertArrayEquals(SensorCodec.encode(List.of(sensor), null, null), encoded);
+            Sensor decoded = SensorCodec.decodeSensor(encoded);
+            assertEquals(sensor.getSensorId(), decoded.getSensorId());
+            assertEquals(sensor.getName(), decoded.getName());
+            assertEquals(sensor.getActive(), decoded.getActive());
+            assertEquals(sensor.getSensorType(), decoded.getSensorType());
+        }
+    }
+
+    @Test
+    void encoder_bufferSmallerThanHeader_replacedBeforeHeaderIsWritten() throws IOException {
+        Sensor sensor = new Sensor("Garage", SensorType.DOOR);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (SensorCodec.Encoder encoder = new SensorCodec.Encoder(Channels.newChannel(out), ByteBuffer.allocate(2),
+                AlarmStatus.ALARM, null)) {
+            encoder.write(sensor);
+        }
+        assertArrayEquals(SensorCodec.encode(List.of(sensor), AlarmStatus.ALARM, null), out.toByteArray());
+    }
+
+    @Test
+    void decode_negativeNameLength_rejected() {
+        byte[] encoded = SensorCodec.encode(new Sensor("G", SensorType.DOOR));
+        //replace the one-byte name length and name with a five-byte varint of -1
+        ByteBuffer corrupt = ByteBuffer.allocate(encoded.length + 3);
+        corrupt.put(encoded, 0, encoded.length - 3);
+        corrupt.put(new byte[]{(byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x0F, 0});
+        IOException e = assertThrows(IOException.class, () -> SensorCodec.decodeSensor(corrupt.array()));
+        assertTrue(e.getMessage().contains("name length"), e.getMessage());
+    }
+
+    @Test
+    void decode_negativeNameReference_rejected() {
+        byte[] encoded = SensorCodec.encode(new Sensor("G", SensorType.DOOR));
+        //replace the name reference, length and name with a five-byte varint of -1
+        ByteBuffer corrupt = ByteBuffer.allocate(encoded.length + 2);
+        corrupt.put(encoded, 0, encoded.length - 4);
+        corrupt.put(new byte[]{(byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x0F, 0});
+        IOException e = assertThrows(IOException.class, () -> SensorCodec.decodeSensor(corrupt.array()));
+        assertTrue(e.getMessage().contains("name reference"), e.getMessage());
+    }
+
+    @Test
+    void decode_rejectsUnknownVersionAndTruncatedInput() {
+        byte[] encoded = SensorCodec.encode(new Sensor("Garage", SensorType.DOOR));
+        byte[] future = encoded.clone();
+        future[4] = SensorCodec.VERSION + 1;
+        assertThrows(IOException.class, () -> SensorCodec.decodeSensor(future));
+        assertThrows(IOException.class, () -> SensorCodec.decodeSensor(Arrays.copyOf(encoded, encoded.length - 2)));
+        assertFalse(SensorCodec.isEncoded("[{\"name\":\"Garage\"}]".getBytes()));
+    }
+}
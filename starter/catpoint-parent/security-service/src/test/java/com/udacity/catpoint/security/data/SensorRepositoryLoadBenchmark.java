@@ -0,0 +1,59 @@
+package com.udacity.catpoint.security.data;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.prefs.BackingStoreException;
+import java.util.prefs.Preferences;
+
+/**
+ * Measures PretendDatabaseSecurityRepositoryImpl startup with 10,000 persisted sensors in each
+ * format. Each run stores its sensors in a throwaway node of its own, removed afterwards, so the
+ * repository's own preferences are never touched. Run with:
+ *      mvn -pl security-service test-compile
+ *      java -cp security-service/target/test-classes:security-service/target/classes:[test classpath] org.openjdk.jmh.Main SensorRepositoryLoadBenchmark
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SensorRepositoryLoadBenchmark {
+
+    private static final int SENSOR_COUNT = 10_000;
+    private static final String[] NAMES = {"Front Door", "Back Door", "Kitchen Window", "Hallway Motion", "Garage"};
+
+    @Param({"JSON", "BINARY"})
+    public SensorFormat format;
+
+    private Preferences prefs;
+
+    @Setup
+    public void setUp() throws BackingStoreException {
+        prefs = Preferences.userRoot().node("catpoint-benchmark-" + UUID.randomUUID());
+        List<Sensor> sensors = new ArrayList<>(SENSOR_COUNT);
+        for (int i = 0; i < SENSOR_COUNT; i++) {
+            sensors.add(new Sensor(NAMES[i % NAMES.length], SensorType.values()[i % SensorType.values().length]));
+        }
+        PretendDatabaseSecurityRepositoryImpl repository = new PretendDatabaseSecurityRepositoryImpl(prefs, Duration.ZERO, format);
+        //one change, so the manifest is written once rather than once per sensor
+        repository.updateSensors(sensors);
+        prefs.flush();
+    }
+
+    @TearDown
+    public void tearDown() throws BackingStoreException {
+        prefs.removeNode();
+        Preferences.userRoot().flush();
+    }
+
+    @Benchmark
+    public PretendDatabaseSecurityRepositoryImpl load() {
+        return new PretendDatabaseSecurityRepositoryImpl(prefs, Duration.ZERO, format);
+    }
+}
@@ -0,0 +1,40 @@
+package com.udacity.catpoint.security.data;
+
+import com.google.gson.Gson;
+import com.google.gson.stream.JsonReader;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SensorTypeAdapterTest {
+
+    private final SensorTypeAdapter adapter = new SensorTypeAdapter();
+
+    @Test
+    void write_matchesReflectiveGson() {
+        Sensor door = new Sensor("Front Door", SensorType.DOOR);
+        door.setActive(true);
+        Sensor unnamed = new Sensor(null, null);
+
+        assertEquals(new Gson().toJson(door), adapter.toJson(door));
+        assertEquals(new Gson().toJson(unnamed), adapter.toJson(unnamed));
+    }
+
+    @Test
+    void readAll_readsReflectiveJson_internsNames_skipsUnknownFields() throws IOException {
+        Sensor door = new Sensor("Front " + "Door", SensorType.DOOR);
+        Sensor window = new Sensor("Front Door", SensorType.WINDOW);
+        String json = new Gson().toJson(List.of(door, window)).replace("\"active\"", "\"legacy\":[1,2],\"active\"");
+
+        List<Sensor> sensors = adapter.readAll(new JsonReader(new StringReader(json)), 2);
+
+        assertEquals(List.of(door, window), sensors);
+        assertEquals(SensorType.WINDOW, sensors.get(1).getSensorType());
+        assertEquals(Boolean.FALSE, sensors.get(1).getActive());
+        assertSame(sensors.get(0).getName(), sensors.get(1).getName());
+    }
+}
@@ -0,0 +1,136 @@
+package com.udacity.catpoint.security.data;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class WriteAheadLogSecurityRepositoryImplTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void reopen_replaysSensorsAndStatuses() throws IOException {
+        Sensor door = new Sensor("door", SensorType.DOOR);
+        Sensor window = new Sensor("window", SensorType.WINDOW);
+        try (WriteAheadLogSecurityRepositoryImpl repository = new WriteAheadLogSecurityRepositoryImpl(directory)) {
+            repository.addSensor(door);
+            repository.addSensor(window);
+            door.setActive(Boolean.TRUE);
+            repository.updateSensor(door);
+            repository.removeSensor(window);
+            repository.setAlarmStatus(AlarmStatus.PENDING_ALARM);
+            repository.setArmingStatus(ArmingStatus.ARMED_AWAY);
+        }
+
+        try (WriteAheadLogSecurityRepositoryImpl repository = new WriteAheadLogSecurityRepositoryImpl(directory)) {
+            assertEquals(1, repository.getSensors().size());
+            Sensor replayed = repository.getSensors().iterator().next();
+            assertEquals(door.getSensorId(), replayed.getSensorId());
+            assertEquals("door", replayed.getName());
+            assertTrue(replayed.getActive());
+            assertEquals(AlarmStatus.PENDING_ALARM, repository.getAlarmStatus());
+            assertEquals(ArmingStatus.ARMED_AWAY, repository.getArmingStatus());
+        }
+    }
+
+    @Test
+    void findSensor_returnsLatestInstance_sortedViewFollowsReplacement() throws IOException {
+        Sensor door = new Sensor("door", SensorType.DOOR);
+        try (WriteAheadLogSecurityRepositoryImpl repository = new WriteAheadLogSecurityRepositoryImpl(directory)) {
+            repository.addSensor(door);
+            assertSame(door, repository.findSensor(door.getSensorId()));
+            assertSame(door, repository.getSensors().iterator().next());
+
+            Sensor replacement = new Sensor("front door", SensorType.DOOR);
+            replacement.setSensorId(door.getSensorId());
+            repository.updateSensor(replacement);
+            assertSame(replacement, repository.findSensor(door.getSensorId()));
+            assertSame(replacement, repository.getSensors().iterator().next());
+
+            repository.removeSensor(door);
+            assertNull(repository.findSensor(door.getSensorId()));
+            assertTrue(repository.getSensors().isEmpty());
+        }
+    }
+
+    @Test
+    void segmentFull_compactsIntoSnapshotAndDeletesOldSegments() throws IOException {
+        List<Sensor> sensors = new ArrayList<>();
+        try (WriteAheadLogSecurityRepositoryImpl repository = new WriteAheadLogSecurityRepositoryImpl(directory, 1024)) {
+            for (int i = 0; i < 1000; i++) {
+                Sensor sensor = new Sensor("sensor " + i, SensorType.MOTION);
+                sensors.add(sensor);
+                repository.addSensor(sensor);
+                repository.sync();
+            }
+        }
+
+        assertTrue(Files.exists(directory.resolve("snapshot.bin")));
+        assertTrue(segmentFiles().length < 10);
+        try (WriteAheadLogSecurityRepositoryImpl repository = new WriteAheadLogSecurityRepositoryImpl(directory)) {
+            assertEquals(sensors.size(), repository.getSensors().size());
+            assertTrue(repository.getSensors().containsAll(sensors));
+        }
+    }
+
+    @Test
+    void tornRecordAtEndOfSegment_isIgnored() throws IOException {
+        try (WriteAheadLogSecurityRepositoryImpl repository = new WriteAheadLogSecurityRepositoryImpl(directory)) {
+            repository.setAlarmStatus(AlarmStatus.ALARM);
+            repository.sync();
+            repository.setAlarmStatus(AlarmStatus.NO_ALARM);
+        }
+
+        Path[] segments = segmentFiles();
+        Path last = segments[segments.length - 1];
+        byte[] bytes = Files.readAllBytes(last);
+        Files.write(last, Arrays.copyOf(bytes, bytes.length - 1));
+
+        try (WriteAheadLogSecurityRepositoryImpl repository = new WriteAheadLogSecurityRepositoryImpl(directory)) {
+            assertEquals(AlarmStatus.ALARM, repository.getAlarmStatus());
+        }
+    }
+
+    @Test
+    void nameTooLongToEncode_rejectedWithoutChangingState_laterRecordsReplayed() throws IOException {
+        Sensor door = new Sensor("door", SensorType.DOOR);
+        Sensor oversized = new Sensor("x".repeat(70_000), SensorType.WINDOW);
+        try (WriteAheadLogSecurityRepositoryImpl repository = new WriteAheadLogSecurityRepositoryImpl(directory)) {
+            repository.addSensor(door);
+            assertThrows(IllegalArgumentException.class, () -> repository.addSensor(oversized));
+            assertThrows(IllegalArgumentException.class, () -> repository.updateSensors(List.of(door, oversized)));
+            assertNull(repository.findSensor(oversized.getSensorId()));
+            repository.setAlarmStatus(AlarmStatus.PENDING_ALARM);
+        }
+
+        try (WriteAheadLogSecurityRepositoryImpl repository = new WriteAheadLogSecurityRepositoryImpl(directory)) {
+            assertEquals(1, repository.getSensors().size());
+            assertEquals(AlarmStatus.PENDING_ALARM, repository.getAlarmStatus());
+        }
+    }
+
+    @Test
+    void snapshotShorterThanHeader_reportedAsCorrupt() throws IOException {
+        Files.write(directory.resolve("snapshot.bin"), new byte[]{0x43, 0x50, 0x57});
+
+        UncheckedIOException e = assertThrows(UncheckedIOException.class, () -> new WriteAheadLogSecurityRepositoryImpl(directory));
+        assertTrue(e.getCause().getMessage().startsWith("Corrupt"), e.getCause().getMessage());
+    }
+
+    private Path[] segmentFiles() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(p -> p.getFileName().toString().endsWith(".wal")).sorted().toArray(Path[]::new);
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package com.udacity.catpoint.security.service;
+
+import com.udacity.catpoint.image.service.ImageClassification;
+import com.udacity.catpoint.image.service.ImageLabel;
+import com.udacity.catpoint.security.application.StatusListener;
+import com.udacity.catpoint.security.data.AlarmStatus;
+import com.udacity.catpoint.security.data.ArmingStatus;
+import com.udacity.catpoint.security.data.WriteAheadLogSecurityRepositoryImpl;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.awt.image.BufferedImage;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class CameraRegistryTest {
+
+    private static final BufferedImage CAT = new BufferedImage(8, 8, BufferedImage.TYPE_INT_RGB);
+    private static final BufferedImage EMPTY_ROOM = new BufferedImage(8, 8, BufferedImage.TYPE_INT_RGB);
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void catOnAnyCamera_alarmRaised_clearedOnlyWhenNoCameraSeesCat() throws Exception {
+        try (WriteAheadLogSecurityRepositoryImpl repository = new WriteAheadLogSecurityRepositoryImpl(directory)) {
+            ConcurrentSecurityService securityService = new ConcurrentSecurityService(repository,
+                    image -> new ImageClassification(List.of(new ImageLabel("Cat", image == CAT ? 95.0f : 5.0f))));
+            List<Boolean> catNotifications = new ArrayList<>();
+            securityService.addStatusListener(new RecordingListener(catNotifications));
+            securityService.setArmingStatus(ArmingStatus.ARMED_HOME);
+
+            try (CameraRegistry registry = new CameraRegistry(securityService, securityService.imageService, 4, 16)) {
+                List<Camera> cameras = new ArrayList<>();
+                for (int i = 0; i < 12; i++) {
+                    cameras.add(registry.addCamera("camera " + i, Duration.ofHours(1)));
+                }
+                scan(registry, cameras.get(3), CAT);
+                scan(registry, cameras.get(7), CAT);
+                assertEquals(2, registry.getCamerasSeeingCat());
+                assertEquals(AlarmStatus.ALARM, securityService.getAlarmStatus());
+
+                scan(registry, cameras.get(3), EMPTY_ROOM);
+                scan(registry, cameras.get(5), EMPTY_ROOM);
+                assertEquals(1, registry.getCamerasSeeingCat());
+                assertEquals(List.of(true), catNotifications);
+
+                registry.removeCamera(cameras.get(7));
+                assertEquals(0, registry.getCamerasSeeingCat());
+                assertEquals(List.of(true, false), catNotifications);
+            }
+        }
+    }
+
+    @Test
+    void scheduledScans_runInParallelOnBoundedPool() throws Exception {
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        try (WriteAheadLogSecurityRepositoryImpl repository = new WriteAheadLogSecurityRepositoryImpl(directory)) {
+            ConcurrentSecurityService securityService = new ConcurrentSecurityService(repository, image -> {
+                maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                try {
+                    Thread.sleep(20);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                running.decrementAndGet();
+                return ImageClassification.EMPTY;
+            });
+
+            try (CameraRegistry registry = new CameraRegistry(securityService, securityService.imageService, 4, 4)) {
+                for (int i = 0; i < 16; i++) {
+                    registry.submitFrame(registry.addCamera("camera " + i, Duration.ofMillis(10)), EMPTY_ROOM);
+                }
+                long deadline = System.nanoTime() + Duration.ofSeconds(10).toNanos();
+                while (registry.getCameras().stream().anyMatch(camera -> camera.getLastClassification() == null)
+                        && System.nanoTime() < deadline) {
+                    Thread.sleep(5);
+                }
+
+                registry.getCameras().forEach(camera -> assertEquals(ImageClassification.EMPTY, camera.getLastClassification()));
+                assertTrue(maxRunning.get() > 1);
+                assertTrue(maxRunning.get() <= 4);
+            }
+        }
+    }
+
+    private static void scan(CameraRegistry registry, Camera camera, BufferedImage frame) {
+        registry.submitFrame(camera, frame);
+        registry.scanNow(camera).join();
+    }
+
+    private record RecordingListener(List<Boolean> catNotifications) implements StatusListener {
+        @Override
+        public void notify(AlarmStatus status) {
+        }
+
+        @Override
+        public void catDetected(boolean catDetected) {
+            catNotifications.add(catDetected);
+        }
+
+        @Override
+        public void sensorStatusChanged() {
+        }
+    }
+}
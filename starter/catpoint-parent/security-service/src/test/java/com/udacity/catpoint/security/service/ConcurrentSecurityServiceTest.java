@@ -0,0 +1,289 @@
+package com.udacity.catpoint.security.service;
+
+import com.udacity.catpoint.image.service.ImageClassification;
+import com.udacity.catpoint.image.service.ImageLabel;
+import com.udacity.catpoint.security.application.StatusListener;
+import com.udacity.catpoint.security.data.*;
+import com.udacity.catpoint.security.service.SecurityStateMachine.Transition;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+/**
+ * Tests proving that ConcurrentSecurityService, including when events are applied concurrently,
+ * produces exactly the result SecurityService produces for the same events applied one at a time.
+ */
+public class ConcurrentSecurityServiceTest {
+
+    private static final int THREADS = 8;
+    private static final int SENSORS_PER_THREAD = 8;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void concurrentEvents_replayedInVersionOrderThroughSecurityService_matchAfterEveryEvent() throws Exception {
+        try (WriteAheadLogSecurityRepositoryImpl repository = new WriteAheadLogSecurityRepositoryImpl(directory)) {
+            ConcurrentSecurityService service = new ConcurrentSecurityService(repository, image -> ImageClassification.EMPTY);
+            SecurityService reference = new SecurityService(statefulRepository(), image -> ImageClassification.EMPTY);
+            CatListener referenceCat = new CatListener();
+            reference.addStatusListener(referenceCat);
+            service.setArmingStatus(ArmingStatus.ARMED_HOME);
+            reference.setArmingStatus(ArmingStatus.ARMED_HOME);
+            int eventsPerThread = 5_000;
+
+            //every sensor belongs to one thread, and the reference gets a copy of each
+            List<List<Sensor>> sensorsByThread = new ArrayList<>();
+            Map<UUID, Sensor> referenceSensors = new HashMap<>();
+            for (int t = 0; t < THREADS; t++) {
+                List<Sensor> sensors = new ArrayList<>();
+                for (int s = 0; s < SENSORS_PER_THREAD; s++) {
+                    Sensor sensor = new Sensor("sensor " + t + "-" + s, SensorType.DOOR);
+                    service.addSensor(sensor);
+                    sensors.add(sensor);
+                    Sensor copy = copyOf(sensor);
+                    reference.addSensor(copy);
+                    referenceSensors.put(copy.getSensorId(), copy);
+                }
+                sensorsByThread.add(sensors);
+            }
+
+            ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<List<AppliedEvent>>> results = new ArrayList<>();
+            for (int t = 0; t < THREADS; t++) {
+                Random random = new Random(t);
+                List<Sensor> sensors = sensorsByThread.get(t);
+                results.add(pool.submit(() -> {
+                    start.await();
+                    List<AppliedEvent> applied = new ArrayList<>(eventsPerThread);
+                    for (int i = 0; i < eventsPerThread; i++) {
+                        Sensor sensor = sensors.get(random.nextInt(sensors.size()));
+                        applied.add(switch (random.nextInt(10)) {
+                            case 0, 1 -> {
+                                boolean cat = random.nextInt(4) == 0;
+                                yield new AppliedEvent(null, cat, service.applyCatDetected(cat));
+                            }
+                            case 2 -> new AppliedEvent(sensor, null, service.applySensorRechecked(sensor));
+                            default -> {
+                                boolean active = random.nextBoolean();
+                                yield new AppliedEvent(sensor, active, service.applySensorActivation(sensor, active));
+                            }
+                        });
+                    }
+                    return applied;
+                }));
+            }
+            start.countDown();
+
+            List<AppliedEvent> all = new ArrayList<>();
+            for (Future<List<AppliedEvent>> result : results) {
+                all.addAll(result.get(1, TimeUnit.MINUTES));
+            }
+            pool.shutdown();
+
+            all.sort(Comparator.comparingLong(applied -> applied.transition().after().version()));
+            assertEquals(THREADS * eventsPerThread, all.size());
+            long version = all.get(0).transition().before().version();
+            for (AppliedEvent applied : all) {
+                assertEquals(version++, applied.transition().before().version());
+                if (applied.sensor() == null) {
+                    reference.catDetected(applied.value());
+                } else {
+                    reference.changeSensorActivationStatus(referenceSensors.get(applied.sensor().getSensorId()), applied.value());
+                }
+                SecurityState after = applied.transition().after();
+                assertEquals(after.alarmStatus(), reference.getAlarmStatus());
+                assertEquals(after.armingStatus(), reference.getArmingStatus());
+                assertEquals(after.activeSensorCount(), reference.getActiveSensorCount());
+                if (applied.sensor() == null) {
+                    assertEquals(after.catDetected(), referenceCat.catDetected);
+                }
+            }
+            assertEquals(service.getState(), all.get(all.size() - 1).transition().after());
+        }
+    }
+
+    @Test
+    void randomOperations_matchSecurityServiceAfterEveryOperation() throws Exception {
+        try (WriteAheadLogSecurityRepositoryImpl repository = new WriteAheadLogSecurityRepositoryImpl(directory)) {
+            ConcurrentSecurityService service = new ConcurrentSecurityService(repository, image -> ImageClassification.EMPTY);
+            SecurityService reference = new SecurityService(statefulRepository(), image -> ImageClassification.EMPTY);
+            CatListener serviceCat = new CatListener();
+            CatListener referenceCat = new CatListener();
+            service.addStatusListener(serviceCat);
+            reference.addStatusListener(referenceCat);
+            List<Sensor> sensors = new ArrayList<>();
+            Map<UUID, Sensor> referenceSensors = new HashMap<>();
+            Random random = new Random(0);
+
+            for (int i = 0; i < 20_000; i++) {
+                Sensor sensor = sensors.isEmpty() ? null : sensors.get(random.nextInt(sensors.size()));
+                int operation = random.nextInt(20);
+                if (sensor == null || operation == 0) {
+                    sensor = new Sensor("sensor " + i, SensorType.values()[random.nextInt(SensorType.values().length)]);
+                    sensor.setActive(random.nextBoolean());
+                    sensors.add(sensor);
+                    Sensor copy = copyOf(sensor);
+                    referenceSensors.put(copy.getSensorId(), copy);
+                    service.addSensor(sensor);
+                    reference.addSensor(copy);
+                    continue;
+                }
+                Sensor copy = referenceSensors.get(sensor.getSensorId());
+                switch (operation) {
+                    case 1 -> {
+                        sensors.remove(sensor);
+                        referenceSensors.remove(copy.getSensorId());
+                        service.removeSensor(sensor);
+                        reference.removeSensor(copy);
+                    }
+                    case 2 -> {
+                        ArmingStatus arming = ArmingStatus.values()[random.nextInt(ArmingStatus.values().length)];
+                        service.setArmingStatus(arming);
+                        reference.setArmingStatus(arming);
+                    }
+                    case 3, 4 -> {
+                        boolean cat = random.nextBoolean();
+                        service.catDetected(cat);
+                        reference.catDetected(cat);
+                    }
+                    case 5 -> {
+                        service.deactivateAllSensors();
+                        reference.deactivateAllSensors();
+                    }
+                    case 6 -> {
+                        service.changeSensorActivationStatus(sensor, null);
+                        reference.changeSensorActivationStatus(copy, null);
+                    }
+                    default -> {
+                        boolean active = random.nextBoolean();
+                        service.changeSensorActivationStatus(sensor, active);
+                        reference.changeSensorActivationStatus(copy, active);
+                    }
+                }
+                assertEquals(reference.getAlarmStatus(), service.getAlarmStatus(), "operation " + i);
+                assertEquals(reference.getArmingStatus(), service.getArmingStatus(), "operation " + i);
+                assertEquals(reference.getActiveSensorCount(), service.getActiveSensorCount(), "operation " + i);
+                assertEquals(referenceCat.catDetected, serviceCat.catDetected, "operation " + i);
+            }
+        }
+    }
+
+    @Test
+    void concurrentSensorEvents_repositoryMatchesFinalState() throws Exception {
+        try (WriteAheadLogSecurityRepositoryImpl repository = new WriteAheadLogSecurityRepositoryImpl(directory)) {
+            ConcurrentSecurityService service = new ConcurrentSecurityService(repository,
+                    image -> new ImageClassification(List.of(new ImageLabel("Cat", ThreadLocalRandom.current().nextFloat() * 100))));
+            service.setArmingStatus(ArmingStatus.ARMED_HOME);
+            List<List<Sensor>> sensorsByThread = new ArrayList<>();
+            for (int t = 0; t < THREADS; t++) {
+                List<Sensor> sensors = new ArrayList<>();
+                for (int s = 0; s < SENSORS_PER_THREAD; s++) {
+                    Sensor sensor = new Sensor("sensor " + t + "-" + s, SensorType.values()[s % SensorType.values().length]);
+                    service.addSensor(sensor);
+                    sensors.add(sensor);
+                }
+                sensorsByThread.add(sensors);
+            }
+
+            ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+            List<Future<?>> results = new ArrayList<>();
+            for (List<Sensor> sensors : sensorsByThread) {
+                results.add(pool.submit(() -> {
+                    Random random = new Random();
+                    for (int i = 0; i < 2_000; i++) {
+                        switch (random.nextInt(20)) {
+                            case 0 -> service.processImage(null);
+                            case 1 -> service.setArmingStatus(ArmingStatus.values()[random.nextInt(ArmingStatus.values().length)]);
+                            default -> service.changeSensorActivationStatus(sensors.get(random.nextInt(sensors.size())), random.nextBoolean());
+                        }
+                    }
+                }));
+            }
+            for (Future<?> result : results) {
+                result.get(1, TimeUnit.MINUTES);
+            }
+            pool.shutdown();
+
+            long active = repository.getSensors().stream().filter(Sensor::getActive).count();
+            assertEquals(active, service.getState().activeSensorCount());
+            assertEquals(active, service.getActiveSensorCount());
+            assertEquals(service.getAlarmStatus(), repository.getAlarmStatus());
+            assertEquals(service.getArmingStatus(), repository.getArmingStatus());
+        }
+    }
+
+    /**
+     * A Mockito repository that remembers what is written to it, so a plain SecurityService can be
+     * driven through a long sequence of events.
+     */
+    private static SecurityRepository statefulRepository() {
+        SecurityRepository repository = mock(SecurityRepository.class);
+        AtomicReference<AlarmStatus> alarm = new AtomicReference<>(AlarmStatus.NO_ALARM);
+        AtomicReference<ArmingStatus> arming = new AtomicReference<>(ArmingStatus.DISARMED);
+        Map<UUID, Sensor> sensors = new HashMap<>();
+        when(repository.getAlarmStatus()).thenAnswer(invocation -> alarm.get());
+        when(repository.getArmingStatus()).thenAnswer(invocation -> arming.get());
+        when(repository.getSensors()).thenAnswer(invocation -> new HashSet<>(sensors.values()));
+        doAnswer(invocation -> {
+            alarm.set(invocation.getArgument(0));
+            return null;
+        }).when(repository).setAlarmStatus(any());
+        doAnswer(invocation -> {
+            arming.set(invocation.getArgument(0));
+            return null;
+        }).when(repository).setArmingStatus(any());
+        doAnswer(invocation -> {
+            Sensor sensor = invocation.getArgument(0);
+            sensors.put(sensor.getSensorId(), sensor);
+            return null;
+        }).when(repository).addSensor(any());
+        doAnswer(invocation -> {
+            Sensor sensor = invocation.getArgument(0);
+            sensors.remove(sensor.getSensorId());
+            return null;
+        }).when(repository).removeSensor(any());
+        return repository;
+    }
+
+    private static Sensor copyOf(Sensor sensor) {
+        Sensor copy = new Sensor(sensor.getName(), sensor.getSensorType());
+        copy.setSensorId(sensor.getSensorId());
+        copy.setActive(sensor.getActive());
+        return copy;
+    }
+
+    /**
+     * An event applied by one of the test threads.
+     * @param sensor The sensor switched or rechecked, or null for an image result
+     * @param value Whether the sensor was switched on or the image showed a cat; null for a recheck
+     */
+    private record AppliedEvent(Sensor sensor, Boolean value, Transition transition) {
+    }
+
+    private static class CatListener implements StatusListener {
+        private boolean catDetected;
+
+        @Override
+        public void notify(AlarmStatus status) {
+        }
+
+        @Override
+        public void catDetected(boolean catDetected) {
+            this.catDetected = catDetected;
+        }
+
+        @Override
+        public void sensorStatusChanged() {
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package com.udacity.catpoint.security.service;
+
+import com.udacity.catpoint.image.service.ImagePreprocessor;
+import com.udacity.catpoint.image.service.JpegEncoder;
+import com.udacity.catpoint.security.data.AlarmStatus;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class EvidenceRecorderTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void ringBuffer_keepsNewestFramesInOrder_dropsOversizedFrames() {
+        FrameRingBuffer buffer = new FrameRingBuffer(3, 4, new ImagePreprocessor());
+        for (int i = 1; i <= 5; i++) {
+            assertTrue(buffer.add(ByteBuffer.wrap(new byte[]{(byte) i}), i * 100L));
+        }
+        assertFalse(buffer.add(ByteBuffer.wrap(new byte[5]), 600));
+
+        List<EvidenceFrame> frames = buffer.snapshot(0, Long.MAX_VALUE);
+        assertEquals(List.of(300L, 400L, 500L), frames.stream().map(EvidenceFrame::capturedAtMillis).toList());
+        assertArrayEquals(new byte[]{3}, frames.get(0).jpeg());
+        assertEquals(List.of(400L), buffer.snapshot(350, 450).stream().map(EvidenceFrame::capturedAtMillis).toList());
+        assertEquals(1, buffer.getOversizedCount());
+    }
+
+    @Test
+    void alarmTransition_snapshotsEveryCamera() throws Exception {
+        List<EvidenceSnapshot> written = new CopyOnWriteArrayList<>();
+        DirectoryEvidenceSink directorySink = new DirectoryEvidenceSink(directory);
+        try (EvidenceRecorder recorder = new EvidenceRecorder(snapshot -> {
+            directorySink.write(snapshot);
+            written.add(snapshot);
+        }, Duration.ofMinutes(1), 4, 64 * 1024, new ImagePreprocessor(32, 0.7f))) {
+            for (int i = 0; i < 6; i++) {
+                recorder.record("front door", new BufferedImage(64, 48, BufferedImage.TYPE_INT_RGB));
+            }
+            recorder.record("garage", new BufferedImage(64, 48, BufferedImage.TYPE_INT_RGB));
+            awaitBuffered(recorder, "front door", 4);
+            awaitBuffered(recorder, "garage", 1);
+
+            recorder.notify(AlarmStatus.PENDING_ALARM);
+            recorder.notify(AlarmStatus.ALARM);
+            recorder.notify(AlarmStatus.ALARM);
+            recorder.capture().get(5, TimeUnit.SECONDS);
+        }
+
+        //the repeated ALARM is not a transition, the explicit capture writes both cameras again
+        assertEquals(4, written.size());
+        assertEquals(4, written.stream().filter(snapshot -> snapshot.cameraName().equals("front door")).findFirst().orElseThrow().frames().size());
+        try (Stream<Path> files = Files.walk(directory)) {
+            assertTrue(files.anyMatch(file -> file.toString().endsWith(".jpg") && file.getParent().getFileName().toString().equals("front_door")));
+        }
+    }
+
+    @Test
+    void record_encodesOffTheCallingThread() throws Exception {
+        List<String> encodingThreads = new CopyOnWriteArrayList<>();
+        ImagePreprocessor preprocessor = new ImagePreprocessor(32, 0.7f) {
+            @Override
+            public <T> T encodeJpeg(BufferedImage image, JpegEncoder.EncodedImageReader<T> reader) throws IOException {
+                encodingThreads.add(Thread.currentThread().getName());
+                return super.encodeJpeg(image, reader);
+            }
+        };
+        try (EvidenceRecorder recorder = new EvidenceRecorder(snapshot -> {
+        }, Duration.ofMinutes(1), 4, 64 * 1024, preprocessor)) {
+            recorder.record("front door", new BufferedImage(64, 48, BufferedImage.TYPE_INT_RGB));
+            awaitBuffered(recorder, "front door", 1);
+        }
+
+        assertEquals(1, encodingThreads.size());
+        assertTrue(encodingThreads.get(0).startsWith("evidence-encoder"), encodingThreads.get(0));
+    }
+
+    @Test
+    void capture_snapshotsBeforeReturning_framesAddedWhileWriterBusyNotIncluded() throws Exception {
+        CountDownLatch writerBlocked = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        List<EvidenceSnapshot> written = new CopyOnWriteArrayList<>();
+        try (EvidenceRecorder recorder = new EvidenceRecorder(snapshot -> {
+            writerBlocked.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            written.add(snapshot);
+        }, Duration.ofMinutes(1), 4, 64 * 1024, new ImagePreprocessor())) {
+            FrameRingBuffer buffer = recorder.bufferFor("front door");
+            long now = System.currentTimeMillis();
+            buffer.add(ByteBuffer.wrap(new byte[]{1}), now - 2);
+            CompletableFuture<List<EvidenceSnapshot>> first = recorder.capture();
+            assertTrue(writerBlocked.await(5, TimeUnit.SECONDS));
+
+            CompletableFuture<List<EvidenceSnapshot>> second = recorder.capture();
+            //captured inside the second alarm's window, but only after it was raised
+            buffer.add(ByteBuffer.wrap(new byte[]{2}), now - 1);
+            release.countDown();
+            first.get(5, TimeUnit.SECONDS);
+            second.get(5, TimeUnit.SECONDS);
+        }
+
+        assertEquals(2, written.size());
+        assertEquals(1, written.get(1).frames().size());
+        assertArrayEquals(new byte[]{1}, written.get(1).frames().get(0).jpeg());
+    }
+
+    private static void awaitBuffered(EvidenceRecorder recorder, String cameraName, int frames) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (recorder.bufferFor(cameraName).size() < frames && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package com.udacity.catpoint.security.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class EvidenceStoreTest {
+
+    private static final int SEGMENT_SIZE = 1024;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void timeRangeRead_returnsCameraFramesAcrossSegments_afterReopen() throws Exception {
+        long now = System.currentTimeMillis();
+        try (EvidenceStore store = new EvidenceStore(directory, SEGMENT_SIZE, Duration.ofDays(1))) {
+            for (int i = 0; i < 20; i++) {
+                store.append("front door", now + i, frame(i, 100));
+                store.append("garage", now + i, frame(100 + i, 50));
+            }
+            assertTrue(store.getSegmentCount() > 1);
+            assertFrames(store.read("front door", now + 5, now + 14), now + 5, 5, 10);
+        }
+
+        try (EvidenceStore reopened = new EvidenceStore(directory, SEGMENT_SIZE, Duration.ofDays(1))) {
+            assertEquals(Set.of("front door", "garage"), reopened.getCameraNames());
+            assertFrames(reopened.read("front door", now, now + 100), now, 0, 20);
+            assertEquals(20, reopened.read("garage", now, now + 100).size());
+            assertTrue(reopened.read("back yard", now, now + 100).isEmpty());
+        }
+    }
+
+    @Test
+    void deleteOlderThan_removesWholeExpiredSegments_keepsActiveSegment() throws Exception {
+        long now = System.currentTimeMillis();
+        try (EvidenceStore store = new EvidenceStore(directory, SEGMENT_SIZE, Duration.ofDays(1))) {
+            //four frames fill a segment, so the recent frame starts a new one
+            for (int i = 0; i < 12; i++) {
+                store.append("front door", now - Duration.ofHours(2).toMillis() + i, frame(i, 200));
+            }
+            store.append("front door", now, frame(99, 200));
+            int segments = store.getSegmentCount();
+
+            assertEquals(segments - 1, store.deleteOlderThan(Duration.ofHours(1)));
+            assertEquals(1, store.getSegmentCount());
+            List<StoredFrame> remaining = store.read("front door", 0, Long.MAX_VALUE);
+            assertEquals(1, remaining.size());
+            assertEquals(now, remaining.get(0).capturedAtMillis());
+        }
+    }
+
+    @Test
+    void cameraNameTooLongForHeader_rejectedWithoutWriting() throws Exception {
+        long now = System.currentTimeMillis();
+        try (EvidenceStore store = new EvidenceStore(directory, 1 << 20, Duration.ofDays(1))) {
+            assertThrows(IOException.class, () -> store.append("x".repeat(Short.MAX_VALUE + 1), now, frame(1, 100)));
+            store.append("front door", now, frame(2, 100));
+        }
+
+        try (EvidenceStore reopened = new EvidenceStore(directory, 1 << 20, Duration.ofDays(1))) {
+            assertEquals(Set.of("front door"), reopened.getCameraNames());
+            assertFrames(reopened.read("front door", now, now), now, 2, 1);
+        }
+    }
+
+    private static void assertFrames(List<StoredFrame> frames, long from, int firstMarker, int count) {
+        assertEquals(count, frames.size());
+        for (int i = 0; i < count; i++) {
+            StoredFrame frame = frames.get(i);
+            assertEquals(from + i, frame.capturedAtMillis());
+            assertTrue(frame.jpeg().isReadOnly());
+            assertEquals(100, frame.jpeg().remaining());
+            assertEquals((byte) (firstMarker + i), frame.jpeg().get(0));
+        }
+    }
+
+    private static ByteBuffer frame(int marker, int length) {
+        byte[] bytes = new byte[length];
+        Arrays.fill(bytes, (byte) marker);
+        return ByteBuffer.wrap(bytes);
+    }
+}
@@ -0,0 +1,122 @@
+package com.udacity.catpoint.security.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.imageio.ImageIO;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class FrameSourceTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void directory_deliversImagesInNameOrder_subsampledToMaxEdge() throws Exception {
+        Files.write(directory.resolve("b.png"), encode(frame(Color.GREEN, 400, 300), "png"));
+        Files.write(directory.resolve("a.png"), encode(frame(Color.RED, 400, 300), "png"));
+        Files.write(directory.resolve("notes.txt"), "not an image".getBytes(StandardCharsets.UTF_8));
+
+        try (DirectoryFrameSource source = new DirectoryFrameSource(directory, false, 200, 100, 2)) {
+            List<BufferedImage> frames = collect(source);
+
+            assertEquals(2, source.getFileCount());
+            assertEquals(2, frames.size());
+            assertEquals(Color.RED.getRGB(), frames.get(0).getRGB(0, 0));
+            assertEquals(Color.GREEN.getRGB(), frames.get(1).getRGB(0, 0));
+            //subsampled by 4, the largest factor that keeps at least 100 pixels
+            assertEquals(100, frames.get(0).getWidth());
+            assertEquals(75, frames.get(0).getHeight());
+        }
+    }
+
+    @Test
+    void directory_looping_passWithNoDecodableFiles_ends() throws Exception {
+        List<Path> files = new ArrayList<>();
+        for (String name : List.of("a.png", "b.png", "c.png")) {
+            files.add(Files.write(directory.resolve(name), encode(frame(Color.BLUE, 40, 30), "png")));
+        }
+
+        try (DirectoryFrameSource source = new DirectoryFrameSource(directory, true, 200, 0, 1)) {
+            //every later pass finds only unreadable files, even though earlier passes decoded frames
+            source.addFrameListener(frame -> {
+                for (Path file : files) {
+                    try {
+                        Files.write(file, "not an image".getBytes(StandardCharsets.UTF_8));
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }
+            });
+            collect(source);
+
+            assertTrue(source.getDecodedCount() >= 1);
+            assertTrue(source.getFailedCount() >= files.size());
+        }
+    }
+
+    @Test
+    void mjpeg_multipartStream_skipsHeadersAndMalformedFrames() throws Exception {
+        byte[] first = encode(frame(Color.WHITE, 64, 48), "jpg");
+        byte[] second = encode(frame(Color.BLACK, 64, 48), "jpg");
+        ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        part(stream, first);
+        //truncated frame, cut short by the next one
+        part(stream, Arrays.copyOf(first, first.length / 2));
+        part(stream, second);
+
+        try (MjpegFrameSource source = new MjpegFrameSource("test", new ByteArrayInputStream(stream.toByteArray()), 200, 0, 2)) {
+            List<BufferedImage> frames = collect(source);
+
+            assertEquals(2, frames.size());
+            assertEquals(1, source.getFailedCount());
+            assertEquals(255, frames.get(0).getRGB(32, 24) & 0xFF, 8);
+            assertEquals(0, frames.get(1).getRGB(32, 24) & 0xFF, 8);
+        }
+    }
+
+    private static List<BufferedImage> collect(FrameSource source) throws Exception {
+        List<BufferedImage> frames = new ArrayList<>();
+        source.addFrameListener(frames::add);
+        source.start();
+        source.getCompletion().get(10, TimeUnit.SECONDS);
+        return frames;
+    }
+
+    private static void part(ByteArrayOutputStream stream, byte[] jpeg) throws IOException {
+        stream.write(("--frame\r\nContent-Type: image/jpeg\r\nContent-Length: " + jpeg.length + "\r\n\r\n")
+                .getBytes(StandardCharsets.US_ASCII));
+        stream.write(jpeg);
+        stream.write("\r\n".getBytes(StandardCharsets.US_ASCII));
+    }
+
+    private static BufferedImage frame(Color color, int width, int height) {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = image.createGraphics();
+        graphics.setColor(color);
+        graphics.fillRect(0, 0, width, height);
+        graphics.dispose();
+        return image;
+    }
+
+    private static byte[] encode(BufferedImage image, String format) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, format, out);
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,62 @@
+package com.udacity.catpoint.security.service;
+
+import com.udacity.catpoint.image.service.ImageClassification;
+import com.udacity.catpoint.image.service.ImageLabel;
+import com.udacity.catpoint.image.service.ImageService;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.awt.image.BufferedImage;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RecordingImageServiceTest {
+
+    private static final ImageClassification CAT = new ImageClassification(List.of(new ImageLabel("Cat", 90.0f)));
+
+    private final ImageService delegate = image -> CAT;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void classifyAsync_storesFrameOnOwnThread_callerExecutorOnlyClassifies() throws Exception {
+        AtomicInteger tasks = new AtomicInteger();
+        Executor executor = task -> {
+            tasks.incrementAndGet();
+            task.run();
+        };
+        try (EvidenceStore store = new EvidenceStore(directory);
+             RecordingImageService service = new RecordingImageService(delegate, store, "front door")) {
+            assertSame(CAT, service.classifyAsync(new BufferedImage(64, 48, BufferedImage.TYPE_INT_RGB), executor).get(5, TimeUnit.SECONDS));
+            await(store::getAppendedFrameCount, 1);
+
+            assertEquals(1, tasks.get());
+            assertEquals(1, store.read("front door", 0, Long.MAX_VALUE).size());
+        }
+    }
+
+    @Test
+    void frameCannotBeStored_stillClassified_countedAsSkipped() throws Exception {
+        EvidenceStore store = new EvidenceStore(directory);
+        store.close();
+        try (RecordingImageService service = new RecordingImageService(delegate, store, "front door")) {
+            assertSame(CAT, service.classify(new BufferedImage(64, 48, BufferedImage.TYPE_INT_RGB)));
+            await(service::getSkippedCount, 1);
+        }
+    }
+
+    private static void await(LongSupplier count, long expected) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (count.getAsLong() < expected && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+        assertEquals(expected, count.getAsLong());
+    }
+}
@@ -0,0 +1,140 @@
+package com.udacity.catpoint.security.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ScanPipelineTest {
+
+    @Test
+    void dropOldest_keepsNewestFramesWhileScannerIsBusy() throws Exception {
+        List<BufferedImage> frames = frames(6);
+        List<BufferedImage> scannedFrames = scanWhileBlocked(OverflowPolicy.DROP_OLDEST, 2, frames);
+        //frame 0 was already being scanned, 1 to 3 were pushed out by 4 and 5
+        assertEquals(List.of(frames.get(0), frames.get(4), frames.get(5)), scannedFrames);
+    }
+
+    @Test
+    void dropNewest_rejectsArrivingFramesWhileQueueIsFull() throws Exception {
+        List<BufferedImage> frames = frames(6);
+        List<BufferedImage> scannedFrames = scanWhileBlocked(OverflowPolicy.DROP_NEWEST, 2, frames);
+        assertEquals(List.of(frames.get(0), frames.get(1), frames.get(2)), scannedFrames);
+    }
+
+    @Test
+    void latestOnly_scansOnlyMostRecentFrame() throws Exception {
+        List<BufferedImage> frames = frames(6);
+        List<BufferedImage> scannedFrames = scanWhileBlocked(OverflowPolicy.LATEST_ONLY, 4, frames);
+        assertEquals(List.of(frames.get(0), frames.get(5)), scannedFrames);
+    }
+
+    @Test
+    void failingScan_countedAndPipelineKeepsRunning() throws Exception {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        CountDownLatch done = new CountDownLatch(2);
+        BufferedImage bad = new BufferedImage(1, 1, BufferedImage.TYPE_INT_RGB);
+        try (ScanPipeline pipeline = new ScanPipeline("camera", 4, OverflowPolicy.DROP_OLDEST, executor, frame -> {
+            done.countDown();
+            if (frame == bad) {
+                throw new IllegalStateException("unreadable frame");
+            }
+        })) {
+            pipeline.submit(bad);
+            pipeline.submit(new BufferedImage(1, 1, BufferedImage.TYPE_INT_RGB));
+            assertTrue(done.await(5, TimeUnit.SECONDS));
+            awaitScanned(pipeline, 2);
+            assertEquals(1, pipeline.getFailedCount());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void cancelledScan_countedAsSupersededNotFailed() throws Exception {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        CompletableFuture<Void> cancelled = new CompletableFuture<>();
+        cancelled.cancel(false);
+        try (ScanPipeline pipeline = new ScanPipeline("camera", 4, OverflowPolicy.DROP_OLDEST, executor, frame -> {
+            if (frame.getWidth() == 1) {
+                cancelled.thenRun(() -> { }).join(); //a dependent stage wraps the cancellation
+            } else {
+                throw new CancellationException();
+            }
+        })) {
+            pipeline.submit(new BufferedImage(1, 1, BufferedImage.TYPE_INT_RGB));
+            pipeline.submit(new BufferedImage(2, 1, BufferedImage.TYPE_INT_RGB));
+            awaitScanned(pipeline, 2);
+            assertEquals(2, pipeline.getSupersededCount());
+            assertEquals(0, pipeline.getFailedCount());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Submits every frame while the scanner is stuck on the first one, then releases it.
+     */
+    private static List<BufferedImage> scanWhileBlocked(OverflowPolicy policy, int capacity, List<BufferedImage> frames) throws Exception {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        List<BufferedImage> scannedFrames = new ArrayList<>();
+        try (ScanPipeline pipeline = new ScanPipeline("camera", capacity, policy, executor, frame -> {
+            synchronized (scannedFrames) {
+                scannedFrames.add(frame);
+            }
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        })) {
+            pipeline.submit(frames.get(0));
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+            for (BufferedImage frame : frames.subList(1, frames.size())) {
+                pipeline.submit(frame);
+            }
+            assertTrue(pipeline.getQueueDepth() <= pipeline.getCapacity());
+            long expectedScans = 1 + pipeline.getQueueDepth();
+            assertEquals(frames.size() - expectedScans, pipeline.getDroppedCount());
+            release.countDown();
+
+            awaitScanned(pipeline, expectedScans);
+            assertEquals(frames.size(), pipeline.getSubmittedCount());
+            assertEquals(0, pipeline.getQueueDepth());
+            assertTrue(pipeline.getMaxLatencyMillis() >= pipeline.getAverageLatencyMillis());
+        } finally {
+            executor.shutdownNow();
+        }
+        synchronized (scannedFrames) {
+            return List.copyOf(scannedFrames);
+        }
+    }
+
+    private static void awaitScanned(ScanPipeline pipeline, long count) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (pipeline.getScannedCount() < count && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(count, pipeline.getScannedCount());
+    }
+
+    private static List<BufferedImage> frames(int count) {
+        List<BufferedImage> frames = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            frames.add(new BufferedImage(1, 1, BufferedImage.TYPE_INT_RGB));
+        }
+        return frames;
+    }
+}
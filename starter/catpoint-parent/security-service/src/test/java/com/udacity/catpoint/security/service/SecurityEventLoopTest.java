@@ -0,0 +1,109 @@
+package com.udacity.catpoint.security.service;
+
+import com.udacity.catpoint.image.service.ImageClassification;
+import com.udacity.catpoint.security.application.StatusListener;
+import com.udacity.catpoint.security.data.*;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class SecurityEventLoopTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void eventsFromManyProducers_appliedInBatches_repositoryMatchesFinalState() throws Exception {
+        int producers = 4;
+        int eventsPerProducer = 50_000;
+        try (WriteAheadLogSecurityRepositoryImpl repository = new WriteAheadLogSecurityRepositoryImpl(directory)) {
+            ConcurrentSecurityService service = new ConcurrentSecurityService(repository, image -> ImageClassification.EMPTY);
+            List<Sensor> sensors = new ArrayList<>();
+            for (int i = 0; i < producers * 16; i++) {
+                Sensor sensor = new Sensor("sensor " + i, SensorType.MOTION);
+                service.addSensor(sensor);
+                sensors.add(sensor);
+            }
+
+            SecurityEventLoop eventLoop = new SecurityEventLoop(service, 256);
+            eventLoop.submitArmingStatus(ArmingStatus.ARMED_AWAY);
+            List<Thread> threads = new ArrayList<>();
+            for (int p = 0; p < producers; p++) {
+                int producer = p;
+                Thread thread = new Thread(() -> {
+                    Random random = new Random(producer);
+                    for (int i = 0; i < eventsPerProducer; i++) {
+                        if (i % 100 == 0) {
+                            eventLoop.submitImageResult(random.nextBoolean());
+                        } else {
+                            //each producer owns every producers-th sensor so per-sensor order is preserved
+                            Sensor sensor = sensors.get(random.nextInt(16) * producers + producer);
+                            eventLoop.submitSensorActivation(sensor, random.nextBoolean());
+                        }
+                    }
+                });
+                threads.add(thread);
+                thread.start();
+            }
+            for (Thread thread : threads) {
+                thread.join();
+            }
+            eventLoop.close();
+
+            assertEquals(eventLoop.getSubmittedCount(), eventLoop.getProcessedCount());
+            assertEquals(1L + producers * eventsPerProducer, eventLoop.getProcessedCount());
+            assertTrue(eventLoop.getBatchCount() < eventLoop.getProcessedCount());
+            long active = repository.getSensors().stream().filter(Sensor::getActive).count();
+            assertEquals(active, service.getState().activeSensorCount());
+            assertEquals(service.getAlarmStatus(), repository.getAlarmStatus());
+            assertEquals(ArmingStatus.ARMED_AWAY, repository.getArmingStatus());
+        }
+    }
+
+    @Test
+    void listenerThrows_laterBatchesStillProcessed() throws Exception {
+        try (WriteAheadLogSecurityRepositoryImpl repository = new WriteAheadLogSecurityRepositoryImpl(directory)) {
+            ConcurrentSecurityService service = new ConcurrentSecurityService(repository, image -> ImageClassification.EMPTY);
+            AtomicInteger catResults = new AtomicInteger();
+            service.addStatusListener(new StatusListener() {
+                @Override
+                public void notify(AlarmStatus status) {
+                }
+
+                @Override
+                public void catDetected(boolean catDetected) {
+                    if (catResults.incrementAndGet() == 1) {
+                        throw new IllegalStateException("listener failure");
+                    }
+                }
+
+                @Override
+                public void sensorStatusChanged() {
+                }
+            });
+            Sensor sensor = new Sensor("door", SensorType.DOOR);
+            service.addSensor(sensor);
+
+            SecurityEventLoop eventLoop = new SecurityEventLoop(service, 4);
+            eventLoop.submitImageResult(true);
+            for (int i = 0; i < 100; i++) {
+                eventLoop.submitSensorActivation(sensor, i % 2 == 0);
+            }
+            eventLoop.submitImageResult(false);
+            eventLoop.close();
+
+            assertEquals(102, eventLoop.getProcessedCount());
+            assertTrue(catResults.get() >= 2);
+            assertFalse(repository.getSensors().iterator().next().getActive());
+        }
+    }
+}
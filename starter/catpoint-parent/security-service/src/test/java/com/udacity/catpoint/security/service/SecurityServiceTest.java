@@ -1,6 +1,9 @@
 package com.udacity.catpoint.security.service;
 
 import com.udacity.catpoint.image.service.FakeImageService;
+import com.udacity.catpoint.image.service.ImageClassification;
+import com.udacity.catpoint.image.service.ImageLabel;
+import com.udacity.catpoint.security.application.StatusListener;
 import com.udacity.catpoint.security.data.*;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -8,19 +11,27 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.EnumSource;
 import org.junit.jupiter.params.provider.ValueSource;
-import org.mockito.ArgumentMatchers;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
 import java.awt.image.BufferedImage;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -123,7 +134,7 @@ public class SecurityServiceTest {
     @Test
     void imageServiceIdentifiesImageContainCat_systemArmedHome_alarmStatusAlarm() {
         when(securityRepository.getArmingStatus()).thenReturn(ArmingStatus.ARMED_HOME);
-        when(imageService.imageContainsCat(any(), ArgumentMatchers.anyFloat())).thenReturn(true);
+        when(imageService.classify(any())).thenReturn(catClassification(90.0f));
         service.processImage(mock(BufferedImage.class));
 
         verify(securityRepository, times(1)).setAlarmStatus(AlarmStatus.ALARM);
@@ -136,7 +147,16 @@ public class SecurityServiceTest {
     void imageServiceIdentifiesImageNotContainCat_sensorInactive_alarmStatusNoLarm() {
         Set<Sensor> sensors = getAllSensors(false);
         when(securityRepository.getSensors()).thenReturn(sensors);
-        when(imageService.imageContainsCat(any(), ArgumentMatchers.anyFloat())).thenReturn(false);
+        when(imageService.classify(any())).thenReturn(catClassification(10.0f));
+        service.processImage(mock(BufferedImage.class));
+
+        verify(securityRepository, times(1)).setAlarmStatus(AlarmStatus.NO_ALARM);
+    }
+
+    @Test
+    void imageServiceIdentifiesImageNotContainCat_sensorsAddedInactiveThroughService_alarmStatusNoAlarm() {
+        getAllSensors(false).forEach(service::addSensor);
+        when(imageService.classify(any())).thenReturn(catClassification(10.0f));
         service.processImage(mock(BufferedImage.class));
 
         verify(securityRepository, times(1)).setAlarmStatus(AlarmStatus.NO_ALARM);
@@ -170,7 +190,7 @@ public class SecurityServiceTest {
      */
     @Test
     void systemArmedHomeWhileCameraShowsACat_alarmStatusAlarm() {
-        when(imageService.imageContainsCat(any(), anyFloat())).thenReturn(true);
+        when(imageService.classify(any())).thenReturn(catClassification(90.0f));
         when(securityRepository.getArmingStatus()).thenReturn(ArmingStatus.DISARMED);
         service.processImage(new BufferedImage(128, 128, BufferedImage.TYPE_INT_RGB));
         service.setArmingStatus(ArmingStatus.ARMED_HOME);
@@ -178,6 +198,148 @@ public class SecurityServiceTest {
         verify(securityRepository, times(1)).setAlarmStatus(AlarmStatus.ALARM);
     }
 
+    @Test
+    void systemArmed_activeSensorsPersistedInSingleBatch() {
+        Set<Sensor> sensors = getAllSensors(true);
+        when(securityRepository.getAlarmStatus()).thenReturn(AlarmStatus.PENDING_ALARM);
+        when(securityRepository.getSensors()).thenReturn(sensors);
+        service.setArmingStatus(ArmingStatus.ARMED_AWAY);
+
+        verify(securityRepository, times(1)).setAlarmStatus(AlarmStatus.NO_ALARM);
+        verify(securityRepository, times(1)).updateSensors(anyCollection());
+        verify(securityRepository, never()).updateSensor(any(Sensor.class));
+    }
+
+    @Test
+    void deactivateAllSensors_listenersNotifiedOnce() {
+        StatusListener listener = mock(StatusListener.class);
+        when(securityRepository.getAlarmStatus()).thenReturn(AlarmStatus.ALARM);
+        when(securityRepository.getSensors()).thenReturn(getAllSensors(true));
+        service.addStatusListener(listener);
+        service.deactivateAllSensors();
+
+        service.getSensors().forEach(sensor -> assertFalse(sensor.getActive()));
+        verify(securityRepository, never()).setAlarmStatus(any(AlarmStatus.class));
+        verify(listener, times(1)).sensorStatusChanged();
+    }
+
+    @Test
+    void imageServiceIdentifiesImageNotContainCat_sensorActive_alarmStatusUnchanged() {
+        when(securityRepository.getArmingStatus()).thenReturn(ArmingStatus.DISARMED);
+        service.addSensor(sensor);
+        service.changeSensorActivationStatus(sensor, Boolean.TRUE);
+        when(imageService.classify(any())).thenReturn(catClassification(10.0f));
+        service.processImage(mock(BufferedImage.class));
+
+        verify(securityRepository, never()).setAlarmStatus(AlarmStatus.NO_ALARM);
+    }
+
+    @Test
+    void sensorActivationChanges_activeCountsTrackedPerType() {
+        when(securityRepository.getArmingStatus()).thenReturn(ArmingStatus.DISARMED);
+        when(securityRepository.getAlarmStatus()).thenReturn(AlarmStatus.NO_ALARM);
+        Sensor window = new Sensor(uuid, SensorType.WINDOW);
+        service.addSensor(sensor);
+        service.addSensor(window);
+        service.changeSensorActivationStatus(sensor, Boolean.TRUE);
+        service.changeSensorActivationStatus(window, Boolean.TRUE);
+        service.changeSensorActivationStatus(window, Boolean.FALSE);
+
+        assertEquals(1, service.getActiveSensorCount());
+        assertEquals(1, service.getActiveSensorCount(SensorType.DOOR));
+        assertEquals(0, service.getActiveSensorCount(SensorType.WINDOW));
+
+        service.removeSensor(sensor);
+        assertTrue(service.allSensorsInactive());
+    }
+
+    @Test
+    void sensorActivatedInRepositoryDirectly_resync_alarmStatusUnchanged() {
+        service.addSensor(sensor);
+        sensor.setActive(Boolean.TRUE);
+        when(securityRepository.getSensors()).thenReturn(Set.of(sensor));
+        service.resyncSensorActivity();
+        when(imageService.classify(any())).thenReturn(catClassification(10.0f));
+        service.processImage(mock(BufferedImage.class));
+
+        assertEquals(1, service.getActiveSensorCount());
+        verify(securityRepository, never()).setAlarmStatus(AlarmStatus.NO_ALARM);
+    }
+
+    @Test
+    void processImageAsync_catDetectedWhileArmedHome_alarmStatusAlarm() {
+        when(securityRepository.getArmingStatus()).thenReturn(ArmingStatus.ARMED_HOME);
+        when(imageService.classifyAsync(any(), any())).thenReturn(CompletableFuture.completedFuture(catClassification(90.0f)));
+        service.processImageAsync(mock(BufferedImage.class)).join();
+
+        verify(securityRepository, times(1)).setAlarmStatus(AlarmStatus.ALARM);
+    }
+
+    @Test
+    void processImageAsync_newerScanSubmitted_olderScanCancelledAndNotApplied() {
+        CompletableFuture<ImageClassification> older = new CompletableFuture<>();
+        CompletableFuture<ImageClassification> newer = new CompletableFuture<>();
+        when(imageService.classifyAsync(any(), any())).thenReturn(older, newer);
+        StatusListener listener = mock(StatusListener.class);
+        service.addStatusListener(listener);
+        service.processImageAsync(mock(BufferedImage.class));
+        service.processImageAsync(mock(BufferedImage.class));
+        older.complete(catClassification(90.0f));
+        newer.complete(catClassification(10.0f));
+
+        assertTrue(older.isCancelled());
+        verify(listener, never()).catDetected(true);
+        verify(listener, times(1)).catDetected(false);
+    }
+
+    @Test
+    void close_defaultImageExecutorShutDown_laterScansRejected() {
+        AtomicReference<Executor> executor = new AtomicReference<>();
+        when(imageService.classifyAsync(any(), any())).thenAnswer(invocation -> {
+            executor.set(invocation.getArgument(1));
+            return CompletableFuture.completedFuture(catClassification(10.0f));
+        });
+        service.processImageAsync(mock(BufferedImage.class)).join();
+        service.close();
+
+        assertTrue(((ExecutorService) executor.get()).isShutdown());
+        assertThrows(IllegalStateException.class, () -> service.processImageAsync(mock(BufferedImage.class)));
+    }
+
+    @Test
+    void close_suppliedImageExecutorLeftRunning() {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            when(imageService.classifyAsync(any(), any())).thenReturn(CompletableFuture.completedFuture(catClassification(10.0f)));
+            service.setImageExecutor(executor);
+            service.processImageAsync(mock(BufferedImage.class)).join();
+            service.close();
+
+            verify(imageService, times(1)).classifyAsync(any(), eq(executor));
+            assertFalse(executor.isShutdown());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void catConfidenceBelowConfiguredThreshold_notTreatedAsCat() {
+        ImageClassification classification = catClassification(60.0f);
+        when(imageService.classify(any())).thenReturn(classification);
+        StatusListener listener = mock(StatusListener.class);
+        service.addStatusListener(listener);
+        service.setCatConfidenceThreshold(70.0f);
+        service.processImage(mock(BufferedImage.class));
+
+        verify(imageService, times(1)).classify(any());
+        verify(listener, times(1)).catDetected(false);
+        assertEquals(classification, service.getLastClassification());
+    }
+
+    private static ImageClassification catClassification(float confidence) {
+        return new ImageClassification(List.of(new ImageLabel("Cat", confidence)));
+    }
+
     private Set<Sensor> getAllSensors(boolean status) {
         HashSet<Sensor> sensors = IntStream
                 .range(0, 3)